@@ -0,0 +1,190 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hadoop.test.loadgenerator;
+
+import java.math.BigInteger;
+import java.util.random.RandomGenerator;
+
+/**
+ * How the load generator picks the file or directory an operation works
+ * on, parsed from one of these specifications:
+ * <ul>
+ * <li><code>uniform</code>: every entry equally likely, the default.
+ * <li><code>zipf:&lt;exponent&gt;</code>: the entry of rank k with
+ *     probability proportional to 1/k^exponent, ranked in the depth-first
+ *     order of the test space, so the hot entries sit together in its
+ *     first subtree.
+ * <li><code>scrambledzipf:&lt;exponent&gt;</code>: the same popularity,
+ *     but the ranks are spread over the whole test space.
+ * <li><code>hotset:&lt;fraction&gt;,&lt;probability&gt;</code>: that
+ *     fraction of the entries, spread over the test space, receives that
+ *     probability of the accesses, uniformly among them; the rest receive
+ *     the remainder.
+ * </ul>
+ * Ranks are spread by the permutation k -&gt; (k * m + c) mod n with m
+ * coprime to n and close to n / golden ratio, so that the first ranks of
+ * any length land evenly over the depth-first order. It depends only on n,
+ * so all threads and map tasks agree on which entries are hot.
+ */
+public class AccessPattern {
+  private static final int UNIFORM_KIND = 0;
+  private static final int ZIPF_KIND = 1;
+  private static final int HOTSET_KIND = 2;
+  private static final double GOLDEN_RATIO_CONJUGATE = 0.6180339887498949;
+  private static final long SCRAMBLE_OFFSET = 0x9E3779B97F4A7C15L;
+
+  /** Every entry equally likely */
+  public static final AccessPattern UNIFORM =
+      new AccessPattern("uniform", UNIFORM_KIND, 0, 0, false);
+
+  private final String spec;
+  private final int kind;
+  private final double p0;
+  private final double p1;
+  private final boolean scrambled;
+
+  private AccessPattern(String spec, int kind, double p0, double p1,
+      boolean scrambled) {
+    this.spec = spec;
+    this.kind = kind;
+    this.p0 = p0;
+    this.p1 = p1;
+    this.scrambled = scrambled;
+  }
+
+  /**
+   * Parse an access pattern specification.
+   *
+   * @param spec uniform, zipf:&lt;exponent&gt;,
+   *             scrambledzipf:&lt;exponent&gt; with a positive exponent or
+   *             hotset:&lt;fraction&gt;,&lt;probability&gt; with both in
+   *             [0, 1]
+   * @return the access pattern
+   * @throws IllegalArgumentException if the specification is not valid
+   */
+  public static AccessPattern parse(String spec) {
+    if (spec.equals("uniform")) {
+      return UNIFORM;
+    }
+    int colon = spec.indexOf(':');
+    if (colon < 0) {
+      throw new IllegalArgumentException(
+          "Expect uniform or <name>:<parameters>: " + spec);
+    }
+    String name = spec.substring(0, colon);
+    String[] params = spec.substring(colon + 1).split(",");
+    try {
+      if ((name.equals("zipf") || name.equals("scrambledzipf"))
+          && params.length == 1) {
+        double exponent = Double.parseDouble(params[0]);
+        if (!(exponent > 0) || Double.isInfinite(exponent)) {
+          throw new IllegalArgumentException(
+              "The exponent must be positive: " + spec);
+        }
+        return new AccessPattern(spec, ZIPF_KIND, exponent, 0,
+            name.equals("scrambledzipf"));
+      } else if (name.equals("hotset") && params.length == 2) {
+        double fraction = Double.parseDouble(params[0]);
+        double probability = Double.parseDouble(params[1]);
+        if (!(fraction >= 0 && fraction <= 1 &&
+            probability >= 0 && probability <= 1)) {
+          throw new IllegalArgumentException(
+              "The fraction and probability must be in [0, 1]: " + spec);
+        }
+        return new AccessPattern(spec, HOTSET_KIND, fraction, probability,
+            true);
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Illegal parameter: " + spec);
+    }
+    throw new IllegalArgumentException("Unknown access pattern: " + spec);
+  }
+
+  /**
+   * @param n number of entries, at least 1
+   * @return a picker of entries 0..n-1 following this pattern. It can
+   *         be shared by threads.
+   */
+  public Picker newPicker(int n) {
+    return new Picker(this, n);
+  }
+
+  /** @return the specification this pattern was parsed from */
+  @Override
+  public String toString() {
+    return spec;
+  }
+
+  /**
+   * Picks entries of a fixed range according to an access pattern in
+   * constant (expected) time without allocating.
+   */
+  public static class Picker {
+    private final int kind;
+    private final int n;
+    private final Distribution.Zipf zipf;
+    private final int numHot;
+    private final double hotProbability;
+    private final long multiplier;
+    private final long offset;
+
+    private Picker(AccessPattern pattern, int n) {
+      this.n = n;
+      int kind = pattern.kind;
+      zipf = kind == ZIPF_KIND ?
+          new Distribution.Zipf(pattern.spec, n, pattern.p0) : null;
+      numHot = (int) Math.round(pattern.p0 * n);
+      hotProbability = pattern.p1;
+      if (kind == HOTSET_KIND && (numHot == 0 || numHot == n)) {
+        kind = UNIFORM_KIND; // one of the sets is empty
+      }
+      this.kind = kind;
+      if (pattern.scrambled) {
+        BigInteger bigN = BigInteger.valueOf(n);
+        long m = Math.max(1, (long) (n * GOLDEN_RATIO_CONJUGATE));
+        while (!BigInteger.valueOf(m).gcd(bigN).equals(BigInteger.ONE)) {
+          m++;
+        }
+        multiplier = m;
+        offset = Math.floorMod(SCRAMBLE_OFFSET, (long) n);
+      } else {
+        multiplier = 1;
+        offset = 0;
+      }
+    }
+
+    /** @return an entry in 0..n-1 */
+    public int pick(RandomGenerator r) {
+      long rank;
+      switch (kind) {
+      case ZIPF_KIND:
+        rank = zipf.sampleRank(r) - 1;
+        break;
+      case HOTSET_KIND:
+        rank = r.nextDouble() < hotProbability ?
+            r.nextInt(numHot) : numHot + r.nextInt(n - numHot);
+        break;
+      default:
+        return r.nextInt(n);
+      }
+      return (int) ((rank * multiplier + offset) % n);
+    }
+  }
+}
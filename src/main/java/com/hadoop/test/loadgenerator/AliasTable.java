@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hadoop.test.loadgenerator;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Draws index <code>i</code> with probability
+ * <code>weights[i] / sum(weights)</code> in constant time, using Vose's
+ * alias method. Building the table takes O(n); a sample costs one random
+ * int, one random double and two array reads, and never allocates.
+ */
+public class AliasTable {
+  private final double[] prob;
+  private final int[] alias;
+
+  /**
+   * @param weights non-negative weights with a positive sum
+   * @throws IllegalArgumentException if the weights are not usable
+   */
+  public AliasTable(double[] weights) {
+    int n = weights.length;
+    double sum = 0;
+    for (double w : weights) {
+      if (w < 0 || Double.isNaN(w) || Double.isInfinite(w)) {
+        throw new IllegalArgumentException("Illegal weight: " + w);
+      }
+      sum += w;
+    }
+    if (sum <= 0) {
+      throw new IllegalArgumentException("The weights must not all be zero");
+    }
+    prob = new double[n];
+    alias = new int[n];
+    double[] scaled = new double[n];
+    int[] small = new int[n];
+    int[] large = new int[n];
+    int numSmall = 0;
+    int numLarge = 0;
+    for (int i = 0; i < n; i++) {
+      scaled[i] = weights[i] * n / sum;
+      alias[i] = i;
+      if (scaled[i] < 1) {
+        small[numSmall++] = i;
+      } else {
+        large[numLarge++] = i;
+      }
+    }
+    // Fill up every small column with the excess of a large one
+    while (numSmall > 0 && numLarge > 0) {
+      int s = small[--numSmall];
+      int l = large[--numLarge];
+      prob[s] = scaled[s];
+      alias[s] = l;
+      scaled[l] = scaled[l] + scaled[s] - 1;
+      if (scaled[l] < 1) {
+        small[numSmall++] = l;
+      } else {
+        large[numLarge++] = l;
+      }
+    }
+    // What is left is 1 up to rounding errors
+    while (numLarge > 0) {
+      prob[large[--numLarge]] = 1;
+    }
+    while (numSmall > 0) {
+      prob[small[--numSmall]] = 1;
+    }
+  }
+
+  /** @return an index drawn with probability proportional to its weight */
+  public int sample(RandomGenerator rand) {
+    int i = rand.nextInt(prob.length);
+    return rand.nextDouble() < prob[i] ? i : alias[i];
+  }
+
+  /** @return the number of entries in the table */
+  public int size() {
+    return prob.length;
+  }
+}
@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hadoop.test.loadgenerator;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * One line of a NameNode audit log, as written by the default layout
+ * <pre>
+ * 2024-05-01 10:00:00,123 INFO FSNamesystem.audit: allowed=true
+ *   ugi=alice (auth:SIMPLE)  ip=/10.0.0.1  cmd=open  src=/a/b  dst=null
+ *   perm=null  proto=rpc
+ * </pre>
+ * with the fields after the timestamp separated by tabs. Only the fields
+ * the replay needs are kept; a missing value ("null") is kept as null.
+ */
+public class AuditLogEntry {
+  private static final String TIMESTAMP_PATTERN = "yyyy-MM-dd HH:mm:ss,SSS";
+
+  /** Milliseconds since the epoch, reading the timestamp as UTC */
+  public final long time;
+  public final boolean allowed;
+  public final String ugi;
+  public final String ip;
+  public final String cmd;
+  public final String src;
+  public final String dst;
+  public final String perm;
+
+  private AuditLogEntry(long time, boolean allowed, String ugi, String ip,
+      String cmd, String src, String dst, String perm) {
+    this.time = time;
+    this.allowed = allowed;
+    this.ugi = ugi;
+    this.ip = ip;
+    this.cmd = cmd;
+    this.src = src;
+    this.dst = dst;
+    this.perm = perm;
+  }
+
+  /**
+   * Parse a line of an audit log.
+   *
+   * @return the entry, or null if the line is not an audit entry
+   */
+  public static AuditLogEntry parse(String line) {
+    int fields = line.indexOf("allowed=");
+    if (fields < TIMESTAMP_PATTERN.length()) {
+      return null;
+    }
+    long time = parseTimestamp(line);
+    if (time < 0) {
+      return null;
+    }
+    boolean allowed = true;
+    String ugi = null;
+    String ip = null;
+    String cmd = null;
+    String src = null;
+    String dst = null;
+    String perm = null;
+    int start = fields;
+    while (start < line.length()) {
+      int end = line.indexOf('\t', start);
+      if (end < 0) {
+        end = line.length();
+      }
+      int eq = line.indexOf('=', start);
+      if (eq > 0 && eq < end) {
+        String key = line.substring(start, eq);
+        String value = line.substring(eq + 1, end);
+        if (value.equals("null")) {
+          value = null;
+        }
+        switch (key) {
+        case "allowed":
+          allowed = !"false".equals(value);
+          break;
+        case "ugi":
+          ugi = value;
+          break;
+        case "ip":
+          ip = value;
+          break;
+        case "cmd":
+          cmd = value;
+          break;
+        case "src":
+          src = value;
+          break;
+        case "dst":
+          dst = value;
+          break;
+        case "perm":
+          perm = value;
+          break;
+        default:
+          break;
+        }
+      }
+      start = end + 1;
+    }
+    if (cmd == null) {
+      return null;
+    }
+    return new AuditLogEntry(time, allowed, ugi, ip, cmd, src, dst, perm);
+  }
+
+  /** @return the time of the line's yyyy-MM-dd HH:mm:ss,SSS prefix in
+   * milliseconds, or -1 if the line does not start with one */
+  private static long parseTimestamp(String line) {
+    int year = digits(line, 0, 4);
+    int month = digits(line, 5, 2);
+    int day = digits(line, 8, 2);
+    int hour = digits(line, 11, 2);
+    int minute = digits(line, 14, 2);
+    int second = digits(line, 17, 2);
+    int millis = digits(line, 20, 3);
+    if ((year | month | day | hour | minute | second | millis) < 0) {
+      return -1;
+    }
+    try {
+      return LocalDateTime.of(year, month, day, hour, minute, second)
+          .toEpochSecond(ZoneOffset.UTC) * 1000 + millis;
+    } catch (DateTimeException e) {
+      return -1;
+    }
+  }
+
+  /** @return the decimal number of <code>count</code> digits at
+   * <code>from</code>, or -1 if they are not all digits */
+  private static int digits(String line, int from, int count) {
+    int value = 0;
+    for (int i = from; i < from + count; i++) {
+      char c = line.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  /** @return the client that issued the call: its user and address */
+  public String getClient() {
+    return ugi + "@" + ip;
+  }
+}
@@ -0,0 +1,572 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hadoop.test.loadgenerator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.Options;
+import org.apache.hadoop.fs.Options.CreateOpts;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This program replays NameNode audit logs against a test space.
+ *
+ * The logs are streamed line by line, so they can be of any size; a log
+ * whose name ends with the extension of a compression codec, e.g. .gz, is
+ * decompressed on the fly. Every allowed entry whose command is one of
+ * CMD_NAMES is turned into the matching FileContext call on its paths,
+ * relocated under the root. An entry is due at its offset from the first
+ * entry divided by the speed-up, so the original inter-arrival times are
+ * kept, only scaled.
+ *
+ * The entries are dispatched to a pool of worker threads by their client,
+ * the user and address in the entry, so that the calls of every client are
+ * issued one after the other in their original order. A worker waits until
+ * its next entry is due and then runs it. How late it starts, the lag, is
+ * what shows whether the replay keeps up with the log: it grows when the
+ * file system answers too slowly for the pool, or a client issued more
+ * calls than one thread can replay in time. The rate, the failures and
+ * the lag of every report interval are printed while replaying; the
+ * latency of every command and the overall lag are printed at the end.
+ * Calls that fail, typically on paths that the log created before it
+ * starts, are counted per command and do not stop the replay. All calls
+ * are issued as the user running the program.
+ *
+ * The synopsis of the command is
+ * java AuditLogReplay
+ *   -auditLog <file>: audit log to replay, on the default file system unless
+ *                     it is qualified; may be given several times, the logs
+ *                     are then replayed one after the other.
+ *   -root <root>: the root that the paths in the log are relocated under.
+ *                 Its default value is "/testLoadSpace".
+ *   -stripPrefix <prefix>: only replay entries under this path and remove
+ *                 it before relocating the paths.
+ *   -speedup <factor>: divide the inter-arrival times by this factor,
+ *                 with a default value of 1.
+ *   -numOfThreads <numOfThreads>: size of the worker pool, with a default
+ *                 value of 100.
+ *   -reportInterval <intervalInSecs>: interval of the progress reports, with
+ *                 a default value of 10.
+ */
+public class AuditLogReplay {
+  public static final Logger LOG =
+      LoggerFactory.getLogger(AuditLogReplay.class);
+
+  /** The audit commands that are replayed */
+  final static String[] CMD_NAMES = {"open", "create", "delete", "rename",
+      "mkdirs", "listStatus", "getfileinfo", "setPermission", "setOwner",
+      "setTimes", "append", "contentSummary"};
+  private final static int OPEN = 0;
+  private final static int CREATE = 1;
+  private final static int DELETE = 2;
+  private final static int RENAME = 3;
+  private final static int MKDIRS = 4;
+  private final static int LIST_STATUS = 5;
+  private final static int GET_FILE_INFO = 6;
+  private final static int SET_PERMISSION = 7;
+  private final static int SET_OWNER = 8;
+  private final static int SET_TIMES = 9;
+  private final static int APPEND = 10;
+  private final static int CONTENT_SUMMARY = 11;
+
+  private final static int QUEUE_SIZE_PER_THREAD = 1024;
+  private final static FsPermission DEFAULT_FILE_PERMISSION =
+      new FsPermission((short) 0644);
+  private final static DateTimeFormatter LOG_TIME_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+  final static private String USAGE = "java AuditLogReplay " +
+      "-auditLog <file> [-auditLog <file> ...] " +
+      "-root <root> " +
+      "-stripPrefix <prefix> " +
+      "-speedup <factor> " +
+      "-numOfThreads <numOfThreads> " +
+      "-reportInterval <intervalInSecs>";
+
+  private final List<Path> auditLogs = new ArrayList<Path>();
+  private Path root = DataGenerator.DEFAULT_ROOT;
+  private String rootPrefix;
+  private String stripPrefix = null;
+  private double speedup = 1;
+  private int numOfThreads = 100;
+  private long reportInterval = 10;
+  private Configuration conf;
+  private FileContext fc;
+
+  private final OpStats stats = new OpStats(CMD_NAMES.length);
+  private final AtomicLongArray failures =
+      new AtomicLongArray(CMD_NAMES.length);
+  private final LatencyHistogram lag = new LatencyHistogram();
+  /** Number of entries not replayed, by reason; used by the reader only */
+  private final Map<String, Long> skipped = new TreeMap<String, Long>();
+  private long numOfLines = 0;
+  private long firstLogTime = -1;
+  private long startNanos;
+  private volatile long lastLogTime;
+
+  /** A call to replay */
+  private static class ReplayOp {
+    private final long due;
+    private final int cmd;
+    private final Path src;
+    private final Path dst;
+    private final String perm;
+    private final boolean overwrite;
+
+    private ReplayOp(long due, int cmd, Path src, Path dst, String perm,
+        boolean overwrite) {
+      this.due = due;
+      this.cmd = cmd;
+      this.src = src;
+      this.dst = dst;
+      this.perm = perm;
+      this.overwrite = overwrite;
+    }
+  }
+
+  /** Put into every queue after the last entry; compared by identity */
+  private static final ReplayOp END_OF_LOG =
+      new ReplayOp(0, -1, null, null, null, false);
+
+  /** Main function.
+   * It parses the command line arguments, streams the audit logs to the
+   * workers and prints the results when all calls have been replayed.
+   */
+  public int run(String[] args) throws Exception {
+    int exitCode = init(args);
+    if (exitCode != 0) {
+      return exitCode;
+    }
+    rootPrefix = fc.makeQualified(root).toString();
+    if (rootPrefix.endsWith("/")) {
+      rootPrefix = rootPrefix.substring(0, rootPrefix.length() - 1);
+    }
+    Worker[] workers = new Worker[numOfThreads];
+    for (int i = 0; i < numOfThreads; i++) {
+      workers[i] = new Worker(i);
+      workers[i].start();
+    }
+    long start = Time.monotonicNow();
+    ProgressReporter progress = new ProgressReporter(start);
+    progress.start();
+    try {
+      for (Path log : auditLogs) {
+        try (BufferedReader in = open(log)) {
+          String line;
+          while ((line = in.readLine()) != null) {
+            dispatch(line, workers);
+          }
+        }
+      }
+    } finally {
+      for (Worker worker : workers) {
+        worker.queue.put(END_OF_LOG);
+      }
+      for (Worker worker : workers) {
+        worker.join();
+      }
+      progress.interrupt();
+    }
+    printResults(System.out, Time.monotonicNow() - start);
+    return 0;
+  }
+
+  /** Parse the command line arguments and initialize the data */
+  private int init(String[] args) {
+    try { // initialize file system handle
+      conf = new Configuration();
+      fc = FileContext.getFileContext(conf);
+    } catch (IOException ioe) {
+      System.err.println("Can not initialize the file system: " +
+          ioe.getLocalizedMessage());
+      return -1;
+    }
+
+    try {
+      for (int i = 0; i < args.length; i++) { // parse command line
+        if (args[i].equals("-auditLog")) {
+          auditLogs.add(new Path(args[++i]));
+        } else if (args[i].equals("-root")) {
+          root = new Path(args[++i]);
+        } else if (args[i].equals("-stripPrefix")) {
+          stripPrefix = args[++i];
+          while (stripPrefix.endsWith("/")) {
+            stripPrefix = stripPrefix.substring(0, stripPrefix.length() - 1);
+          }
+        } else if (args[i].equals("-speedup")) {
+          speedup = Double.parseDouble(args[++i]);
+          if (!(speedup > 0)) {
+            System.err.println("The speed-up must be positive: " + speedup);
+            return -1;
+          }
+        } else if (args[i].equals("-numOfThreads")) {
+          numOfThreads = Integer.parseInt(args[++i]);
+          if (numOfThreads <= 0) {
+            System.err.println(
+                "Number of threads must be positive: " + numOfThreads);
+            return -1;
+          }
+        } else if (args[i].equals("-reportInterval")) {
+          reportInterval = Long.parseLong(args[++i]);
+          if (reportInterval <= 0) {
+            System.err.println(
+                "The report interval must be positive: " + reportInterval);
+            return -1;
+          }
+        } else {
+          System.err.println(USAGE);
+          return -1;
+        }
+      }
+    } catch (NumberFormatException e) {
+      System.err.println("Illegal parameter: " + e.getLocalizedMessage());
+      System.err.println(USAGE);
+      return -1;
+    }
+    if (auditLogs.isEmpty()) {
+      System.err.println(USAGE);
+      return -1;
+    }
+    return 0;
+  }
+
+  /** Open an audit log, decompressing it if its name says so */
+  private BufferedReader open(Path log) throws IOException {
+    InputStream in = fc.open(log);
+    CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(log);
+    if (codec != null) {
+      in = codec.createInputStream(in);
+    }
+    return new BufferedReader(
+        new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+  }
+
+  /** Turn a line of the log into a call and queue it to the worker of its
+   * client, or count why it is skipped */
+  private void dispatch(String line, Worker[] workers)
+      throws InterruptedException {
+    numOfLines++;
+    AuditLogEntry entry = AuditLogEntry.parse(line);
+    if (entry == null) {
+      skip("not an audit entry");
+      return;
+    }
+    int space = entry.cmd.indexOf(' '); // e.g. rename (options=[OVERWRITE])
+    String name = space < 0 ? entry.cmd : entry.cmd.substring(0, space);
+    int cmd = indexOf(name);
+    if (cmd < 0) {
+      skip("unsupported command " + name);
+      return;
+    }
+    if (!entry.allowed) {
+      skip("denied " + name);
+      return;
+    }
+    Path src = relocate(entry.src);
+    Path dst = cmd == RENAME ? relocate(entry.dst) : null;
+    if (src == null || (cmd == RENAME && dst == null)) {
+      skip(stripPrefix == null ? "bad path" : "bad path or not under " +
+          stripPrefix);
+      return;
+    }
+    if (firstLogTime < 0) {
+      firstLogTime = entry.time;
+      startNanos = Time.monotonicNowNanos();
+    }
+    long due = startNanos + (long) ((entry.time - firstLogTime) * 1e6 / speedup);
+    ReplayOp op = new ReplayOp(due, cmd, src, dst, entry.perm,
+        entry.cmd.contains("OVERWRITE"));
+    int worker = (entry.getClient().hashCode() & Integer.MAX_VALUE)
+        % workers.length;
+    workers[worker].queue.put(op);
+    lastLogTime = entry.time;
+  }
+
+  private static int indexOf(String cmd) {
+    for (int i = 0; i < CMD_NAMES.length; i++) {
+      if (CMD_NAMES[i].equals(cmd)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void skip(String reason) {
+    skipped.merge(reason, 1L, Long::sum);
+  }
+
+  /** @return the logged path under the root, or null if it has no path,
+   * is not under stripPrefix or is not a valid path */
+  private Path relocate(String path) {
+    if (path == null || !path.startsWith("/")) {
+      return null;
+    }
+    if (stripPrefix != null) {
+      if (!path.startsWith(stripPrefix) || (path.length() >
+          stripPrefix.length() && path.charAt(stripPrefix.length()) != '/')) {
+        return null;
+      }
+      path = path.substring(stripPrefix.length());
+    }
+    try {
+      return new Path(rootPrefix + path);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /** Replays the calls of the clients dispatched to it */
+  private class Worker extends Thread {
+    private final BlockingQueue<ReplayOp> queue =
+        new ArrayBlockingQueue<ReplayOp>(QUEUE_SIZE_PER_THREAD);
+
+    private Worker(int id) {
+      super("AuditLogReplay-" + id);
+      setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          ReplayOp op = queue.take();
+          if (op == END_OF_LOG) {
+            return;
+          }
+          long wait;
+          while ((wait = op.due - Time.monotonicNowNanos()) > 0) {
+            LockSupport.parkNanos(wait);
+            if (isInterrupted()) {
+              return;
+            }
+          }
+          long start = Time.monotonicNowNanos();
+          lag.record(start - op.due);
+          try {
+            replay(op);
+            stats.record(op.cmd, Time.monotonicNowNanos() - start);
+          } catch (IOException e) {
+            failures.incrementAndGet(op.cmd);
+            if (LOG.isDebugEnabled()) {
+              LOG.debug("Failed to replay " + CMD_NAMES[op.cmd] + " " +
+                  op.src, e);
+            }
+          }
+        }
+      } catch (InterruptedException e) {
+        // stop
+      }
+    }
+  }
+
+  /** Issue the FileContext call of a replayed audit command */
+  private void replay(ReplayOp op) throws IOException {
+    switch (op.cmd) {
+    case OPEN:
+      fc.open(op.src).close();
+      break;
+    case CREATE:
+      fc.create(op.src, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
+          CreateOpts.createParent()).close();
+      break;
+    case DELETE:
+      fc.delete(op.src, true);
+      break;
+    case RENAME:
+      fc.rename(op.src, op.dst, op.overwrite ?
+          Options.Rename.OVERWRITE : Options.Rename.NONE);
+      break;
+    case MKDIRS:
+      fc.mkdir(op.src, FileContext.DEFAULT_PERM, true);
+      break;
+    case LIST_STATUS: // one page, like the logged call
+      fc.listStatus(op.src).hasNext();
+      break;
+    case GET_FILE_INFO:
+      fc.getFileStatus(op.src);
+      break;
+    case SET_PERMISSION:
+      fc.setPermission(op.src, permission(op.perm));
+      break;
+    case SET_OWNER:
+      String[] owner = op.perm == null ? new String[0] : op.perm.split(":");
+      fc.setOwner(op.src, owner.length > 0 && !owner[0].isEmpty() ?
+          owner[0] : null, owner.length > 1 && !owner[1].isEmpty() ?
+          owner[1] : null);
+      break;
+    case SET_TIMES:
+      fc.setTimes(op.src, Time.now(), -1);
+      break;
+    case APPEND:
+      fc.create(op.src, EnumSet.of(CreateFlag.APPEND)).close();
+      break;
+    case CONTENT_SUMMARY:
+      fc.util().getContentSummary(op.src);
+      break;
+    default:
+      throw new IllegalArgumentException("Unknown command " + op.cmd);
+    }
+  }
+
+  /** @return the permission in an owner:group:rwxr-xr-x perm field, or
+   * rw-r--r-- if it has none */
+  static FsPermission permission(String perm) {
+    if (perm != null) {
+      String mode = perm.substring(perm.lastIndexOf(':') + 1);
+      if (mode.length() >= 9) {
+        try {
+          return FsPermission.valueOf("-" + mode.substring(0, 9));
+        } catch (IllegalArgumentException e) {
+          // use the default
+        }
+      }
+    }
+    return DEFAULT_FILE_PERMISSION;
+  }
+
+  private long numOfCompleted() {
+    long completed = 0;
+    for (int i = 0; i < CMD_NAMES.length; i++) {
+      completed += stats.getNumOfOps(i) + failures.get(i);
+    }
+    return completed;
+  }
+
+  private long numOfFailures() {
+    long failed = 0;
+    for (int i = 0; i < CMD_NAMES.length; i++) {
+      failed += failures.get(i);
+    }
+    return failed;
+  }
+
+  private static String formatLogTime(long time) {
+    return LocalDateTime.ofEpochSecond(Math.floorDiv(time, 1000L), 0,
+        ZoneOffset.UTC).format(LOG_TIME_FORMAT);
+  }
+
+  /** Print the rate, the failures and the lag of every report interval */
+  private class ProgressReporter extends Thread {
+    private long lastTime;
+    private long lastCompleted = 0;
+    private LatencyHistogram lastLag = new LatencyHistogram();
+
+    private ProgressReporter(long start) {
+      super("AuditLogReplay-progress");
+      setDaemon(true);
+      lastTime = start;
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        try {
+          Thread.sleep(reportInterval * 1000);
+        } catch (InterruptedException e) {
+          return;
+        }
+        long now = Time.monotonicNow();
+        long completed = numOfCompleted();
+        LatencyHistogram totalLag = new LatencyHistogram();
+        totalLag.add(lag);
+        LatencyHistogram interval = totalLag.minus(lastLag);
+        System.out.println(String.format("Replayed %d calls, %d ops/s, " +
+            "%d failed, log time %s, lag (ms): p50=%.3f p99=%.3f max=%.3f",
+            completed,
+            (completed - lastCompleted) * 1000 / Math.max(now - lastTime, 1),
+            numOfFailures(), lastLogTime == 0 ? "-" :
+            formatLogTime(lastLogTime),
+            interval.getValueAtPercentile(50) / 1e6,
+            interval.getValueAtPercentile(99) / 1e6, interval.getMax() / 1e6));
+        lastTime = now;
+        lastCompleted = completed;
+        lastLag = totalLag;
+      }
+    }
+  }
+
+  /** Print the summary of the replay */
+  private void printResults(PrintStream out, long elapsed) {
+    long completed = numOfCompleted();
+    out.println("Replayed " + completed + " calls of " + numOfLines +
+        " lines in " + elapsed + "ms (" +
+        completed * 1000 / Math.max(elapsed, 1) + " ops/s), " +
+        numOfFailures() + " failed");
+    if (firstLogTime >= 0) {
+      out.println("The log spans " + (lastLogTime - firstLogTime) +
+          "ms, " + (long) ((lastLogTime - firstLogTime) / speedup) +
+          "ms at a speed-up of " + speedup);
+    }
+    for (Map.Entry<String, Long> e : skipped.entrySet()) {
+      out.println("Skipped " + e.getValue() + " lines: " + e.getKey());
+    }
+    for (int i = 0; i < CMD_NAMES.length; i++) {
+      LatencyHistogram h = stats.getLatencies(i);
+      if (h.getCount() == 0 && failures.get(i) == 0) {
+        continue;
+      }
+      out.println(String.format("%s: %d calls, %d failed, latency (ms): " +
+          "p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f", CMD_NAMES[i],
+          h.getCount() + failures.get(i), failures.get(i),
+          h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(90) / 1e6,
+          h.getValueAtPercentile(99) / 1e6, h.getValueAtPercentile(99.9) / 1e6,
+          h.getMax() / 1e6));
+    }
+    out.println(String.format("lag (ms): p50=%.3f p90=%.3f p99=%.3f " +
+        "p99.9=%.3f max=%.3f", lag.getValueAtPercentile(50) / 1e6,
+        lag.getValueAtPercentile(90) / 1e6, lag.getValueAtPercentile(99) / 1e6,
+        lag.getValueAtPercentile(99.9) / 1e6, lag.getMax() / 1e6));
+  }
+
+  /** Main program.
+   *
+   * @param args Command line arguments
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    AuditLogReplay replay = new AuditLogReplay();
+    System.exit(replay.run(args));
+  }
+}
@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hadoop.test.loadgenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A small HTTP endpoint on the loopback interface through which a running
+ * load generator is controlled. Every request is answered in plain text
+ * with the status after it was handled:
+ * <ul>
+ * <li><code>/status</code>: only the status.
+ * <li><code>/set?key=value&amp;...</code>: change settings, all or none;
+ *     which keys there are is up to the target.
+ * <li><code>/pause</code>, <code>/resume</code> and <code>/stop</code>.
+ * </ul>
+ * Requests are handled one at a time on the server's dispatcher thread.
+ * All but <code>/status</code> change the load and must be POSTs, e.g.
+ * <code>curl -X POST 'localhost:port/set?threads=50'</code>; anything else
+ * gets 405. Listening on the loopback interface does not keep out a web
+ * page that a browser on the same host loads, so a request whose Host
+ * header is not localhost or 127.0.0.1 with this port gets 403, which
+ * defeats DNS rebinding.
+ */
+public class ControlEndpoint {
+  /** What the endpoint controls */
+  public interface Target {
+    /** @return the current settings and progress, one per line */
+    String getStatus();
+
+    /**
+     * Apply new settings.
+     * @throws IllegalArgumentException if any of them is not valid; then
+     *         none is applied
+     */
+    void set(Map<String, String> settings);
+
+    void pause();
+
+    void resume();
+
+    void stop();
+  }
+
+  private static final String USAGE = "Usage: /status, " +
+      "/set?<setting>=<value>[&<setting>=<value>...], " +
+      "/pause, /resume or /stop\n";
+  /** The requests that change the load */
+  private static final List<String> CHANGES =
+      Arrays.asList("/set", "/pause", "/resume", "/stop");
+  /** The host names a request may be addressed to */
+  private static final String[] LOCAL_HOSTS = {"localhost", "127.0.0.1"};
+
+  private final HttpServer server;
+
+  /**
+   * Start the endpoint.
+   * @param port the port to listen on, or 0 for any free one
+   */
+  public ControlEndpoint(int port, Target target) throws IOException {
+    server = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+    server.createContext("/", exchange -> handle(exchange, target,
+        getPort()));
+    server.start();
+  }
+
+  /** @return the port the endpoint listens on */
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /** Stop listening; a request in progress, such as the one that stopped
+   * the load, gets up to a second to complete */
+  public void close() {
+    server.stop(1);
+  }
+
+  private static void handle(HttpExchange exchange, Target target, int port)
+      throws IOException {
+    int code = 200;
+    String body;
+    try {
+      String path = exchange.getRequestURI().getPath();
+      if (!isLocalHost(exchange.getRequestHeaders().getFirst("Host"),
+          port)) {
+        code = 403;
+        body = "Only requests to localhost:" + port + " are served\n";
+      } else if (!CHANGES.contains(path) && !path.equals("/status")) {
+        code = 404;
+        body = USAGE;
+      } else if (CHANGES.contains(path) &&
+          !exchange.getRequestMethod().equals("POST")) {
+        code = 405;
+        body = path + " changes the load and must be a POST\n";
+        exchange.getResponseHeaders().set("Allow", "POST");
+      } else {
+        if (path.equals("/set")) {
+          target.set(parseQuery(exchange.getRequestURI().getRawQuery()));
+        } else if (path.equals("/pause")) {
+          target.pause();
+        } else if (path.equals("/resume")) {
+          target.resume();
+        } else if (path.equals("/stop")) {
+          target.stop();
+        }
+        body = target.getStatus();
+      }
+    } catch (IllegalArgumentException e) {
+      code = 400;
+      body = e.getMessage() + "\n";
+    }
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type",
+        "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(code, bytes.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(bytes);
+    }
+  }
+
+  /** @return whether a Host header names this endpoint by a local name */
+  static boolean isLocalHost(String host, int port) {
+    if (host == null) {
+      return false;
+    }
+    for (String name : LOCAL_HOSTS) {
+      if (host.equals(name) || host.equals(name + ":" + port)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** @return the parameters of a query in their order */
+  static Map<String, String> parseQuery(String query) {
+    Map<String, String> params = new LinkedHashMap<String, String>();
+    if (query == null || query.isEmpty()) {
+      throw new IllegalArgumentException("Nothing to set");
+    }
+    for (String param : query.split("&")) {
+      int eq = param.indexOf('=');
+      if (eq <= 0) {
+        throw new IllegalArgumentException("Expected <setting>=<value>: "
+            + param);
+      }
+      params.put(URLDecoder.decode(param.substring(0, eq),
+          StandardCharsets.UTF_8), URLDecoder.decode(param.substring(eq + 1),
+          StandardCharsets.UTF_8));
+    }
+    return params;
+  }
+}
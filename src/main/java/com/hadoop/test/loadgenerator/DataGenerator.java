@@ -23,6 +23,10 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.EnumSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.CreateFlag;
@@ -30,12 +34,20 @@ import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileContext;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.Options.CreateOpts;
+import org.apache.hadoop.util.Time;
 
 /**
  * This program reads the directory structure and file structure from
  * the input directory and creates the namespace in the file system
  * specified by the configuration in the specified root.
- * All the files are filled with 'a'.
+ * By default all the files are filled with 'a'.
+ *
+ * With more than one thread the structure files are streamed into a
+ * bounded queue and the worker threads create the entries concurrently.
+ * All directories are created before the first file, so every file finds
+ * its parent; apart from that the entries are created in no fixed order.
+ * The number of created entries and the creation rate are printed
+ * every 10 seconds.
  * 
  * The synopsis of the command is
  * java DataGenerator 
@@ -44,25 +56,55 @@ import org.apache.hadoop.fs.Options.CreateOpts;
  *   -root <root>: the name of the root directory which the new namespace 
  *                 is going to be placed under. 
  *                 Its default value is "/testLoadSpace".
+ *   -numOfThreads <numOfThreads>: number of threads creating entries
+ *                 concurrently. Its default value is 1.
+ *   -fileContent <content>: what the files are filled with: constant
+ *                 (all 'a', the default), random (incompressible) or
+ *                 compressible:ratio, where about that fraction of the
+ *                 data compresses away.
  */
 public class DataGenerator {
-  private File inDir = StructureGenerator.DEFAULT_STRUCTURE_DIRECTORY;
-  private Path root = DEFAULT_ROOT;
-  private FileContext fc;
+  protected File inDir = StructureGenerator.DEFAULT_STRUCTURE_DIRECTORY;
+  protected Path root = DEFAULT_ROOT;
+  protected FileContext fc;
+  protected int numOfThreads = 1;
+  protected FileContent content = FileContent.CONSTANT;
+  private final AtomicLong numDirs = new AtomicLong();
+  private final AtomicLong numFiles = new AtomicLong();
   final static private long BLOCK_SIZE = 10;
-  final static private String USAGE = "java DataGenerator " +
+  final static private int QUEUE_SIZE_PER_THREAD = 128;
+  final static private long PROGRESS_INTERVAL = 10000;
+  final static private String USAGE_CMD = "java DataGenerator ";
+  final static protected String USAGE_ARGS =
   		"-inDir <inDir> " +
-  		"-root <root>";
+  		"-root <root> " +
+  		"-numOfThreads <numOfThreads> " +
+  		"-fileContent <constant|random|compressible:ratio>";
+  final static private String USAGE = USAGE_CMD + USAGE_ARGS;
   
   /** default name of the root where the test namespace will be placed under */
   final static Path DEFAULT_ROOT = new Path("/testLoadSpace");
+
+  public DataGenerator() {
+  }
+
+  /** Create the entries of structure lines under <code>root</code>;
+   * used by the map tasks of DataGeneratorMR.
+   */
+  DataGenerator(FileContext fc, Path root, int numOfThreads,
+      FileContent content) {
+    this.fc = fc;
+    this.root = root;
+    this.numOfThreads = numOfThreads;
+    this.content = content;
+  }
   
   /** Main function.
    * It first parses the command line arguments.
    * It then reads the directory structure from the input directory 
    * structure file and creates directory structure in the file system
    * namespace. Afterwards it reads the file attributes and creates files 
-   * in the file. All file content is filled with 'a'.
+   * in the file. The file content is generated by the FileContent.
    */
   public int run(String[] args) throws Exception {
     int exitCode = 0;
@@ -70,13 +112,25 @@ public class DataGenerator {
     if (exitCode != 0) {
       return exitCode;
     }
-    genDirStructure();
-    genFiles();
+    long start = Time.monotonicNow();
+    ProgressReporter progress = new ProgressReporter(start);
+    progress.start();
+    try {
+      genDirStructure();
+      genFiles();
+    } finally {
+      progress.interrupt();
+    }
+    long elapsed = Math.max(Time.monotonicNow() - start, 1);
+    long numEntries = numDirs.get() + numFiles.get();
+    System.out.println("Created " + numDirs.get() + " directories and " +
+        numFiles.get() + " files in " + elapsed + "ms (" +
+        numEntries * 1000 / elapsed + " entries/s)");
     return exitCode;
   }
 
   /** Parse the command line arguments and initialize the data */
-  private int init(String[] args) {
+  protected int init(String[] args) {
     try { // initialize file system handle
       fc = FileContext.getFileContext(new Configuration());
     } catch (IOException ioe) {
@@ -90,6 +144,26 @@ public class DataGenerator {
         root = new Path(args[++i]);
       } else if (args[i].equals("-inDir")) {
         inDir = new File(args[++i]);
+      } else if (args[i].equals("-fileContent")) {
+        try {
+          content = FileContent.parse(args[++i]);
+        } catch (IllegalArgumentException e) {
+          System.err.println("Illegal file content: " + e.getMessage());
+          return -1;
+        }
+      } else if (args[i].equals("-numOfThreads")) {
+        try {
+          numOfThreads = Integer.parseInt(args[++i]);
+        } catch (NumberFormatException e) {
+          System.err.println("Illegal parameter: " + e.getLocalizedMessage());
+          System.err.println(USAGE);
+          return -1;
+        }
+        if (numOfThreads <= 0) {
+          System.err.println(
+              "Number of threads must be positive: " + numOfThreads);
+          return -1;
+        }
       } else {
         System.err.println(USAGE);
         return -1;
@@ -98,52 +172,200 @@ public class DataGenerator {
     return 0;
   }
   
-  /** Read directory structure file under the input directory.
-   * Create each directory under the specified root.
+  /** Read directory structure file, or its shards, under the input
+   * directory. Create each directory under the specified root.
    * The directory names are relative to the specified root.
    */
   private void genDirStructure() throws IOException {
-    BufferedReader in = new BufferedReader(
-        new FileReader(new File(inDir, 
-            StructureGenerator.DIR_STRUCTURE_FILE_NAME)));
-    String line;
-    while ((line=in.readLine()) != null) {
-      fc.mkdir(new Path(root+line), FileContext.DEFAULT_PERM, true);
+    for (File structure : StructureGenerator.structureFiles(inDir,
+        StructureGenerator.DIR_STRUCTURE_FILE_NAME)) {
+      BufferedReader in = new BufferedReader(new FileReader(structure));
+      try {
+        createAll(in, true);
+      } finally {
+        in.close();
+      }
     }
   }
 
-  /** Read file structure file under the input directory.
+  /** Read file structure file, or its shards, under the input directory.
    * Create each file under the specified root.
    * The file names are relative to the root.
    */
   private void genFiles() throws IOException {
-    BufferedReader in = new BufferedReader(
-        new FileReader(new File(inDir, 
-            StructureGenerator.FILE_STRUCTURE_FILE_NAME)));
-    String line;
-    while ((line=in.readLine()) != null) {
-      String[] tokens = line.split(" ");
-      if (tokens.length != 2) {
-        throw new IOException("Expect at most 2 tokens per line: " + line);
+    for (File structure : StructureGenerator.structureFiles(inDir,
+        StructureGenerator.FILE_STRUCTURE_FILE_NAME)) {
+      BufferedReader in = new BufferedReader(new FileReader(structure));
+      try {
+        createAll(in, false);
+      } finally {
+        in.close();
       }
-      String fileName = root+tokens[0];
-      long fileSize = (long)(BLOCK_SIZE*Double.parseDouble(tokens[1]));
-      genFile(new Path(fileName), fileSize);
     }
   }
-  
+
+  /** Create the entry of every line read from <code>in</code>.
+   * With one thread the lines are handled in order by the calling thread.
+   * Otherwise the calling thread feeds the lines into a bounded queue that
+   * numOfThreads workers drain, and returns once all of them are done.
+   * The first failure of any worker is rethrown.
+   */
+  void createAll(BufferedReader in, boolean isDir)
+      throws IOException {
+    if (numOfThreads == 1) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        create(line, isDir);
+      }
+      return;
+    }
+    BlockingQueue<String> queue =
+        new ArrayBlockingQueue<String>(QUEUE_SIZE_PER_THREAD * numOfThreads);
+    AtomicReference<IOException> failure = new AtomicReference<IOException>();
+    Thread[] workers = new Thread[numOfThreads];
+    for (int i = 0; i < numOfThreads; i++) {
+      workers[i] = new Thread(new Worker(queue, isDir, failure),
+          "DataGenerator-" + (isDir ? "dir-" : "file-") + i);
+      workers[i].start();
+    }
+    try {
+      String line;
+      while ((line = in.readLine()) != null && failure.get() == null) {
+        queue.put(line);
+      }
+      for (int i = 0; i < numOfThreads; i++) {
+        queue.put(END_OF_INPUT);
+      }
+      for (Thread worker : workers) {
+        worker.join();
+      }
+    } catch (InterruptedException e) {
+      for (Thread worker : workers) {
+        worker.interrupt();
+      }
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while creating the namespace", e);
+    }
+    if (failure.get() != null) {
+      throw failure.get();
+    }
+  }
+
+  /** Create the directory or the file described by one structure line */
+  private void create(String line, boolean isDir) throws IOException {
+    if (isDir) {
+      fc.mkdir(new Path(root+line), FileContext.DEFAULT_PERM, true);
+      numDirs.incrementAndGet();
+      return;
+    }
+    String[] tokens = line.split(" ");
+    if (tokens.length != 2) {
+      throw new IOException("Expect at most 2 tokens per line: " + line);
+    }
+    String fileName = root+tokens[0];
+    long fileSize = (long)(BLOCK_SIZE*Double.parseDouble(tokens[1]));
+    genFile(new Path(fileName), fileSize);
+    numFiles.incrementAndGet();
+  }
+
+  /** @return the number of directories created so far */
+  long getNumDirs() {
+    return numDirs.get();
+  }
+
+  /** @return the number of files created so far */
+  long getNumFiles() {
+    return numFiles.get();
+  }
+
+  /** Marks the end of the input for one worker; compared by identity */
+  private static final String END_OF_INPUT = new String("");
+
+  /** Takes structure lines from the queue and creates their entries.
+   * After a failure it keeps draining the queue without creating anything
+   * so that the reader never blocks on a full queue.
+   */
+  private class Worker implements Runnable {
+    private final BlockingQueue<String> queue;
+    private final boolean isDir;
+    private final AtomicReference<IOException> failure;
+
+    private Worker(BlockingQueue<String> queue, boolean isDir,
+        AtomicReference<IOException> failure) {
+      this.queue = queue;
+      this.isDir = isDir;
+      this.failure = failure;
+    }
+
+    @Override
+    public void run() {
+      try {
+        String line;
+        while ((line = queue.take()) != END_OF_INPUT) {
+          if (failure.get() != null) {
+            continue;
+          }
+          try {
+            create(line, isDir);
+          } catch (IOException e) {
+            failure.compareAndSet(null, e);
+          } catch (RuntimeException e) {
+            failure.compareAndSet(null, new IOException(
+                "Failed to create the entry of " + line, e));
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Prints the number of created entries and the creation rate
+   * periodically until it is interrupted.
+   */
+  private class ProgressReporter extends Thread {
+    private long lastTime;
+    private long lastEntries = 0;
+
+    private ProgressReporter(long start) {
+      super("DataGenerator-progress");
+      setDaemon(true);
+      lastTime = start;
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        try {
+          Thread.sleep(PROGRESS_INTERVAL);
+        } catch (InterruptedException e) {
+          return;
+        }
+        long now = Time.monotonicNow();
+        long entries = numDirs.get() + numFiles.get();
+        System.out.println("Created " + numDirs.get() + " directories and " +
+            numFiles.get() + " files, " +
+            (entries - lastEntries) * 1000 / Math.max(now - lastTime, 1) +
+            " entries/s");
+        lastTime = now;
+        lastEntries = entries;
+      }
+    }
+  }
+
   /** Create a file with the name <code>file</code> and 
-   * a length of <code>fileSize</code>. The file is filled with character 'a'.
+   * a length of <code>fileSize</code>. The file is filled with the content.
    */
   private void genFile(Path file, long fileSize) throws IOException {
     FSDataOutputStream out = fc.create(file,
         EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
         CreateOpts.createParent(), CreateOpts.bufferSize(4096),
         CreateOpts.repFac((short) 3));
-    for(long i=0; i<fileSize; i++) {
-      out.writeByte('a');
+    try {
+      content.write(out, fileSize);
+    } finally {
+      out.close();
     }
-    out.close();
   }
   
   /** Main program.
@@ -0,0 +1,254 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hadoop.test.loadgenerator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.Options.CreateOpts;
+import org.apache.hadoop.mapred.Counters;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RunningJob;
+import org.apache.hadoop.mapred.lib.NullOutputFormat;
+import org.apache.hadoop.util.Time;
+
+/** DataGeneratorMR creates the test namespace the way DataGenerator does,
+ * but with a MapReduce job, so that all nodes of a cluster create entries
+ * at once.
+ *
+ * The client splits the local structure files line by line, round robin,
+ * into one shard per map task and writes the shards to the work directory
+ * on the default file system. Each map task creates all directories of
+ * its shard before any of its files, with numOfThreads threads, and adds
+ * what it created and its creation rate to the job counters. That order
+ * only holds within a shard: the maps run at the same time, so a file may
+ * be created before the map that has its directory gets to it. Files and
+ * directories are therefore created with their missing parents, and a
+ * mkdir of a directory that already exists succeeds. The sum of
+ * the ENTRIES_PER_SEC counter is the cluster-wide creation rate while all
+ * maps run at once. The shards are deleted when the job is done.
+ *
+ * The synopsis of the command is
+ * java DataGeneratorMR
+ *   -mr <numMapTasks> <workDir>: number of map tasks and the directory
+ *                 the shards are written to [MUST be first 3 args]
+ *   the rest of the args are the same as the original DataGenerator.
+ */
+public class DataGeneratorMR extends DataGenerator {
+  /** Counters of the created entries, summed over all map tasks */
+  public static enum Counter {
+    DIRECTORIES_CREATED, FILES_CREATED, ENTRIES_PER_SEC
+  }
+
+  private int numMapTasks = 1;
+  private Path workDir;
+  private final Configuration conf;
+
+  final private static String USAGE_CMD = "java DataGeneratorMR ";
+  final private static String USAGE = USAGE_CMD
+      + "-mr <numMapTasks> <workDir> [MUST be first 3 args] " + USAGE_ARGS;
+
+  public DataGeneratorMR(Configuration conf) {
+    this.conf = conf;
+  }
+
+  /** Main function.
+   * It parses the command line arguments, shards the structure files and
+   * runs the job that creates the namespace.
+   */
+  @Override
+  public int run(String[] args) throws Exception {
+    int exitCode = parseArgsMR(args);
+    if (exitCode != 0) {
+      return exitCode;
+    }
+    Path shardDir = fc.makeQualified(new Path(workDir, "shards"));
+    writeShards(shardDir);
+    try {
+      return submitAsMapReduce(shardDir);
+    } finally {
+      fc.delete(shardDir, true);
+    }
+  }
+
+  /** Parse -mr <numMapTasks> <workDir>; the rest is parsed by DataGenerator */
+  int parseArgsMR(String[] args) {
+    try {
+      if (args.length >= 3 && args[0].equals("-mr")) {
+        numMapTasks = Integer.parseInt(args[1]);
+        workDir = new Path(args[2]);
+        if (args[2].startsWith("-")) {
+          System.err.println("Missing work directory parameter, instead got: "
+              + args[2]);
+          System.err.println(USAGE);
+          return -1;
+        }
+      } else {
+        System.err.println(USAGE);
+        return -1;
+      }
+    } catch (NumberFormatException e) {
+      System.err.println("Illegal parameter: " + e.getLocalizedMessage());
+      System.err.println(USAGE);
+      return -1;
+    }
+    if (numMapTasks <= 0) {
+      System.err.println(
+          "Number of map tasks must be positive: " + numMapTasks);
+      return -1;
+    }
+    String[] strippedArgs = new String[args.length - 3];
+    System.arraycopy(args, 3, strippedArgs, 0, strippedArgs.length);
+    int exitCode = init(strippedArgs);
+    if (exitCode != 0) {
+      return exitCode;
+    }
+    try { // the shards and the namespace go to the cluster file system
+      fc = FileContext.getFileContext(conf);
+    } catch (IOException ioe) {
+      System.err.println("Can not initialize the file system: " +
+          ioe.getLocalizedMessage());
+      return -1;
+    }
+    return 0;
+  }
+
+  /** @return the directory structure shard of map task <code>i</code> */
+  static Path dirShard(Path shardDir, int i) {
+    return new Path(shardDir,
+        StructureGenerator.DIR_STRUCTURE_FILE_NAME + "." + i);
+  }
+
+  /** @return the file structure shard of map task <code>i</code> */
+  static Path fileShard(Path shardDir, int i) {
+    return new Path(shardDir,
+        StructureGenerator.FILE_STRUCTURE_FILE_NAME + "." + i);
+  }
+
+  /** Deal the lines of both structure files round robin into the shards */
+  void writeShards(Path shardDir) throws IOException {
+    System.out.println("Writing " + numMapTasks + " shards of " + inDir +
+        " to " + shardDir);
+    writeShards(StructureGenerator.structureFiles(inDir,
+        StructureGenerator.DIR_STRUCTURE_FILE_NAME), shardDir, true);
+    writeShards(StructureGenerator.structureFiles(inDir,
+        StructureGenerator.FILE_STRUCTURE_FILE_NAME), shardDir, false);
+  }
+
+  private void writeShards(List<File> structure, Path shardDir,
+      boolean isDir) throws IOException {
+    Writer[] shards = new Writer[numMapTasks];
+    try {
+      for (int i = 0; i < numMapTasks; i++) {
+        Path shard = isDir ? dirShard(shardDir, i) : fileShard(shardDir, i);
+        shards[i] = new BufferedWriter(new OutputStreamWriter(
+            fc.create(shard, EnumSet.of(CreateFlag.CREATE,
+                CreateFlag.OVERWRITE), CreateOpts.createParent()),
+            StandardCharsets.UTF_8));
+      }
+      long n = 0;
+      for (File file : structure) {
+        BufferedReader in = new BufferedReader(new FileReader(file));
+        try {
+          String line;
+          for (; (line = in.readLine()) != null; n++) {
+            Writer shard = shards[(int) (n % numMapTasks)];
+            shard.write(line);
+            shard.write('\n');
+          }
+        } finally {
+          in.close();
+        }
+      }
+    } finally {
+      for (Writer shard : shards) {
+        if (shard != null) {
+          shard.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * Run the job with one map task per shard and print its counters.
+   * @return exitCode for job submission
+   */
+  private int submitAsMapReduce(Path shardDir) throws IOException {
+    System.out.println("Running as a MapReduce job with " +
+        numMapTasks + " mapTasks");
+    JobConf jobConf = new JobConf(conf, DataGenerator.class);
+    jobConf.setJobName("DataGeneratorViaMR");
+    jobConf.set(LGConstants.DG_ROOT, fc.makeQualified(root).toString());
+    jobConf.setInt(LGConstants.DG_NUMOFTHREADS, numOfThreads);
+    jobConf.set(LGConstants.DG_FILECONTENT, content.toString());
+    jobConf.setInt(LGConstants.DG_NUMMAPTASKS, numMapTasks);
+    jobConf.set(LGConstants.DG_SHARDDIR, shardDir.toString());
+
+    jobConf.setNumMapTasks(numMapTasks);
+    jobConf.setNumReduceTasks(0);
+    jobConf.setMapperClass(com.hadoop.test.loadgenerator.MapperThatRunsDataGenerator.class);
+    jobConf.setInputFormat(com.hadoop.test.loadgenerator.StructureShardInputFormat.class);
+    // The maps only report counters
+    jobConf.setOutputFormat(NullOutputFormat.class);
+    // A second attempt of a shard would race with the first one
+    jobConf.setSpeculativeExecution(false);
+
+    long start = Time.monotonicNow();
+    RunningJob job;
+    try {
+      job = JobClient.runJob(jobConf);
+    } catch (IOException e) {
+      System.err.println("Failed to run job: " + e.getMessage());
+      return -1;
+    }
+    long elapsed = Math.max(Time.monotonicNow() - start, 1);
+    Counters counters = job.getCounters();
+    long dirs = counters.getCounter(Counter.DIRECTORIES_CREATED);
+    long files = counters.getCounter(Counter.FILES_CREATED);
+    System.out.println("Created " + dirs + " directories and " + files +
+        " files in " + elapsed + "ms (" + (dirs + files) * 1000 / elapsed +
+        " entries/s including job startup, " +
+        counters.getCounter(Counter.ENTRIES_PER_SEC) +
+        " entries/s summed over the maps)");
+    return 0;
+  }
+
+  /** Main program
+   *
+   * @param args command line arguments
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    DataGeneratorMR dgmr = new DataGeneratorMR(new Configuration());
+    System.exit(dgmr.run(args));
+  }
+}
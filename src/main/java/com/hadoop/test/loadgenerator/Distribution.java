@@ -0,0 +1,365 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hadoop.test.loadgenerator;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * A distribution of random numbers, parsed from a specification of the
+ * form <code>name:parameters</code>:
+ * <ul>
+ * <li><code>constant:v</code>
+ * <li><code>uniform:min,max</code>; as a count, the integers min..max
+ * <li><code>gaussian:mean,stddev</code>
+ * <li><code>lognormal:mu,sigma</code>: exp of gaussian:mu,sigma, so the
+ *     median is exp(mu)
+ * <li><code>pareto:scale,shape</code>: at least scale, with a tail that
+ *     gets heavier as shape gets smaller
+ * <li><code>zipf:n,exponent</code>: ranks 1..n, rank k with probability
+ *     proportional to 1/k^exponent
+ * <li><code>empirical:file</code>: the inverse of a cumulative distribution
+ *     function read from a local file with one "value probability" point
+ *     per line, in increasing order and ending with probability 1.
+ *     Values between the points are interpolated linearly.
+ * </ul>
+ * Sampling takes constant (expected) time and does not allocate, except
+ * for the empirical distribution, which takes a binary search.
+ */
+public abstract class Distribution {
+  private final String spec;
+
+  private Distribution(String spec) {
+    this.spec = spec;
+  }
+
+  /** @return a random number of this distribution */
+  public abstract double sample(RandomGenerator r);
+
+  /** @return a random count: the sample rounded to the nearest
+   * non-negative integer */
+  public long sampleCount(RandomGenerator r) {
+    return Math.max(0, Math.round(sample(r)));
+  }
+
+  /** @return the specification this distribution was parsed from */
+  @Override
+  public String toString() {
+    return spec;
+  }
+
+  /**
+   * Parse a distribution specification.
+   *
+   * @param spec the specification; see the class documentation
+   * @return the distribution
+   * @throws IllegalArgumentException if the specification is not valid
+   * @throws IOException if the file of an empirical distribution cannot
+   *                     be read
+   */
+  public static Distribution parse(String spec) throws IOException {
+    int colon = spec.indexOf(':');
+    if (colon < 0) {
+      throw new IllegalArgumentException("Expect <name>:<parameters>: " + spec);
+    }
+    String name = spec.substring(0, colon);
+    String arg = spec.substring(colon + 1);
+    if (name.equals("empirical")) {
+      return new Empirical(spec, arg);
+    }
+    String[] tokens = arg.split(",");
+    double[] p = new double[tokens.length];
+    for (int i = 0; i < tokens.length; i++) {
+      p[i] = Double.parseDouble(tokens[i].trim());
+    }
+    if (name.equals("constant")) {
+      checkParameters(spec, p, 1);
+      return new Constant(spec, p[0]);
+    } else if (name.equals("uniform")) {
+      checkParameters(spec, p, 2);
+      check(spec, p[0] <= p[1], "min must not be bigger than max");
+      return new Uniform(spec, p[0], p[1]);
+    } else if (name.equals("gaussian")) {
+      checkParameters(spec, p, 2);
+      check(spec, p[1] >= 0, "stddev must not be negative");
+      return new Gaussian(spec, p[0], p[1]);
+    } else if (name.equals("lognormal")) {
+      checkParameters(spec, p, 2);
+      check(spec, p[1] >= 0, "sigma must not be negative");
+      return new LogNormal(spec, p[0], p[1]);
+    } else if (name.equals("pareto")) {
+      checkParameters(spec, p, 2);
+      check(spec, p[0] > 0 && p[1] > 0, "scale and shape must be positive");
+      return new Pareto(spec, p[0], p[1]);
+    } else if (name.equals("zipf")) {
+      checkParameters(spec, p, 2);
+      check(spec, p[0] >= 1 && p[0] == Math.floor(p[0]),
+          "n must be a positive integer");
+      check(spec, p[1] > 0, "exponent must be positive");
+      return new Zipf(spec, (long) p[0], p[1]);
+    }
+    throw new IllegalArgumentException("Unknown distribution: " + spec);
+  }
+
+  private static void checkParameters(String spec, double[] p, int count) {
+    check(spec, p.length == count, "expect " + count + " parameters");
+    for (double v : p) {
+      check(spec, !Double.isNaN(v) && !Double.isInfinite(v),
+          "parameters must be finite");
+    }
+  }
+
+  private static void check(String spec, boolean condition, String message) {
+    if (!condition) {
+      throw new IllegalArgumentException(message + ": " + spec);
+    }
+  }
+
+  private static class Constant extends Distribution {
+    private final double value;
+
+    private Constant(String spec, double value) {
+      super(spec);
+      this.value = value;
+    }
+
+    @Override
+    public double sample(RandomGenerator r) {
+      return value;
+    }
+  }
+
+  private static class Uniform extends Distribution {
+    private final double min;
+    private final double max;
+
+    private Uniform(String spec, double min, double max) {
+      super(spec);
+      this.min = min;
+      this.max = max;
+    }
+
+    @Override
+    public double sample(RandomGenerator r) {
+      return min + (max - min) * r.nextDouble();
+    }
+
+    @Override
+    public long sampleCount(RandomGenerator r) {
+      long from = Math.max(0, (long) Math.ceil(min));
+      long to = (long) Math.floor(max);
+      return to < from ? from : from + r.nextLong(to - from + 1);
+    }
+  }
+
+  private static class Gaussian extends Distribution {
+    private final double mean;
+    private final double stddev;
+
+    private Gaussian(String spec, double mean, double stddev) {
+      super(spec);
+      this.mean = mean;
+      this.stddev = stddev;
+    }
+
+    @Override
+    public double sample(RandomGenerator r) {
+      return mean + stddev * r.nextGaussian();
+    }
+  }
+
+  private static class LogNormal extends Distribution {
+    private final double mu;
+    private final double sigma;
+
+    private LogNormal(String spec, double mu, double sigma) {
+      super(spec);
+      this.mu = mu;
+      this.sigma = sigma;
+    }
+
+    @Override
+    public double sample(RandomGenerator r) {
+      return Math.exp(mu + sigma * r.nextGaussian());
+    }
+  }
+
+  private static class Pareto extends Distribution {
+    private final double scale;
+    private final double shape;
+
+    private Pareto(String spec, double scale, double shape) {
+      super(spec);
+      this.scale = scale;
+      this.shape = shape;
+    }
+
+    @Override
+    public double sample(RandomGenerator r) {
+      return scale * Math.pow(1 - r.nextDouble(), -1 / shape);
+    }
+  }
+
+  /** Zipf distribution sampled by rejection-inversion (Hörmann and
+   * Derflinger, "Rejection-inversion to generate variates from monotone
+   * discrete distributions"), which needs neither a table nor the
+   * normalization constant.
+   */
+  static class Zipf extends Distribution {
+    private final long n;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralN;
+    private final double s;
+
+    Zipf(String spec, long n, double exponent) {
+      super(spec);
+      this.n = n;
+      this.exponent = exponent;
+      hIntegralX1 = hIntegral(1.5) - 1;
+      hIntegralN = hIntegral(n + 0.5);
+      s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    /** @return a rank in 1..n */
+    long sampleRank(RandomGenerator r) {
+      while (true) {
+        double u = hIntegralN + r.nextDouble() * (hIntegralX1 - hIntegralN);
+        double x = hIntegralInverse(u);
+        long k = (long) (x + 0.5);
+        if (k < 1) {
+          k = 1;
+        } else if (k > n) {
+          k = n;
+        }
+        if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+          return k;
+        }
+      }
+    }
+
+    @Override
+    public double sample(RandomGenerator r) {
+      return sampleRank(r);
+    }
+
+    @Override
+    public long sampleCount(RandomGenerator r) {
+      return sampleRank(r);
+    }
+
+    /** h(x) = 1/x^exponent */
+    private double h(double x) {
+      return Math.exp(-exponent * Math.log(x));
+    }
+
+    /** An integral of h, (x^(1-exponent) - 1) / (1-exponent) */
+    private double hIntegral(double x) {
+      double logX = Math.log(x);
+      return helper2((1 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+      double t = x * (1 - exponent);
+      if (t < -1) {
+        t = -1; // limit the value to the domain of the log
+      }
+      return Math.exp(helper1(t) * x);
+    }
+
+    /** log(1+x)/x, also near 0 */
+    private static double helper1(double x) {
+      if (Math.abs(x) > 1e-8) {
+        return Math.log1p(x) / x;
+      }
+      return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    /** (exp(x)-1)/x, also near 0 */
+    private static double helper2(double x) {
+      if (Math.abs(x) > 1e-8) {
+        return Math.expm1(x) / x;
+      }
+      return 1 + x * 0.5 * (1 + x * (1.0 / 3) * (1 + 0.25 * x));
+    }
+  }
+
+  private static class Empirical extends Distribution {
+    private final double[] values;
+    private final double[] probs;
+
+    private Empirical(String spec, String file) throws IOException {
+      super(spec);
+      List<double[]> points = new ArrayList<double[]>();
+      try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+        String line;
+        while ((line = in.readLine()) != null) {
+          line = line.trim();
+          if (line.isEmpty() || line.startsWith("#")) {
+            continue;
+          }
+          String[] tokens = line.split("\\s+");
+          check(spec, tokens.length == 2, "expect \"value probability\" in "
+              + line);
+          points.add(new double[] {Double.parseDouble(tokens[0]),
+              Double.parseDouble(tokens[1])});
+        }
+      }
+      check(spec, !points.isEmpty(), "no points");
+      values = new double[points.size()];
+      probs = new double[points.size()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = points.get(i)[0];
+        probs[i] = points.get(i)[1];
+        check(spec, probs[i] >= 0 && probs[i] <= 1,
+            "probabilities must be in [0, 1]");
+        check(spec, i == 0 ||
+            (values[i] >= values[i - 1] && probs[i] >= probs[i - 1]),
+            "points must be in increasing order");
+      }
+      check(spec, probs[probs.length - 1] == 1,
+          "the last probability must be 1");
+    }
+
+    @Override
+    public double sample(RandomGenerator r) {
+      double u = r.nextDouble();
+      int lo = 0;
+      int hi = probs.length - 1;
+      while (lo < hi) { // the first point with a probability above u
+        int mid = (lo + hi) >>> 1;
+        if (probs[mid] > u) {
+          hi = mid;
+        } else {
+          lo = mid + 1;
+        }
+      }
+      if (lo == 0) {
+        return values[0];
+      }
+      double p0 = probs[lo - 1];
+      return values[lo - 1] +
+          (values[lo] - values[lo - 1]) * (u - p0) / (probs[lo] - p0);
+    }
+  }
+}
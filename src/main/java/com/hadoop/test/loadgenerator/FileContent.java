@@ -0,0 +1,135 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hadoop.test.loadgenerator;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The content written into the files of the test space. The bytes are
+ * generated once into a buffer that every write is copied from, so
+ * writing a file costs a few bulk writes instead of one call per byte.
+ * <ul>
+ * <li><code>constant</code>: every byte is 'a', as the tools always did.
+ * <li><code>random</code>: xorshift output that does not compress.
+ * <li><code>compressible:&lt;ratio&gt;</code>: every 256 bytes start with
+ *     <code>ratio * 256</code> bytes of 'a' followed by random bytes, so
+ *     that about that fraction of the data compresses away.
+ * </ul>
+ * The random buffer is 1MB, larger than the window of the common
+ * compression codecs, and every write starts at a different offset in it,
+ * so files do not repeat each other byte for byte either.
+ * The instances are thread safe.
+ */
+public class FileContent {
+  /** All 'a' */
+  public static final FileContent CONSTANT = new FileContent("constant", 1);
+
+  private static final int CONSTANT_BUFFER_SIZE = 64 * 1024;
+  private static final int RANDOM_BUFFER_SIZE = 1024 * 1024;
+  /** Granularity at which constant and random bytes are mixed */
+  private static final int STRIPE = 256;
+  /** Distance between the start offsets of consecutive writes */
+  private static final int START_STRIDE = 4099;
+  private static final long SEED = 0x9E3779B97F4A7C15L;
+
+  private final String spec;
+  /** Whether the buffer holds random bytes, so that every write starts
+   * at a different offset in it */
+  private final boolean random;
+  private final byte[] buffer;
+  private final AtomicInteger nextStart = new AtomicInteger();
+
+  private FileContent(String spec, double compressibility) {
+    this.spec = spec;
+    this.random = compressibility < 1;
+    if (!random) {
+      buffer = new byte[CONSTANT_BUFFER_SIZE];
+      Arrays.fill(buffer, (byte) 'a');
+      return;
+    }
+    buffer = new byte[RANDOM_BUFFER_SIZE];
+    long x = SEED;
+    for (int i = 0; i < buffer.length; i += 8) {
+      x ^= x << 13;
+      x ^= x >>> 7;
+      x ^= x << 17;
+      for (int j = 0; j < 8; j++) {
+        buffer[i + j] = (byte) (x >>> (j << 3));
+      }
+    }
+    int constantBytes = (int) Math.round(compressibility * STRIPE);
+    if (constantBytes > 0) {
+      for (int i = 0; i < buffer.length; i += STRIPE) {
+        Arrays.fill(buffer, i, i + constantBytes, (byte) 'a');
+      }
+    }
+  }
+
+  /**
+   * Parse a content specification.
+   *
+   * @param spec constant, random or compressible:&lt;ratio&gt; with a
+   *             ratio in [0, 1]
+   * @return the content
+   * @throws IllegalArgumentException if the specification is not valid
+   */
+  public static FileContent parse(String spec) {
+    if (spec.equals("constant")) {
+      return CONSTANT;
+    } else if (spec.equals("random")) {
+      return new FileContent(spec, 0);
+    } else if (spec.startsWith("compressible:")) {
+      double ratio;
+      try {
+        ratio = Double.parseDouble(spec.substring("compressible:".length()));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Illegal ratio: " + spec);
+      }
+      if (!(ratio >= 0 && ratio <= 1)) {
+        throw new IllegalArgumentException(
+            "The ratio must be in [0, 1]: " + spec);
+      }
+      return new FileContent(spec, ratio);
+    }
+    throw new IllegalArgumentException("Unknown file content: " + spec);
+  }
+
+  /** Write <code>length</code> bytes of this content to <code>out</code> */
+  public void write(OutputStream out, long length) throws IOException {
+    int start = 0;
+    if (random) {
+      start = Math.floorMod(nextStart.getAndAdd(START_STRIDE), buffer.length);
+    }
+    while (length > 0) {
+      int n = (int) Math.min(length, buffer.length - start);
+      out.write(buffer, start, n);
+      length -= n;
+      start = 0;
+    }
+  }
+
+  /** @return the specification this content was parsed from */
+  @Override
+  public String toString() {
+    return spec;
+  }
+}
@@ -13,8 +13,54 @@ public class LGConstants {
   public static final Text NUMOPS_CREATE = new Text("NumOpsCreate");
   public static final Text WRITE_CLOSE_EXECTIME = new Text("WriteCloseExecutionTime");
   public static final Text NUMOPS_WRITE_CLOSE = new Text("NumOpsWriteClose");
+  public static final Text GET_FILE_INFO_EXECTIME = new Text("GetFileInfoExecutionTime");
+  public static final Text NUMOPS_GET_FILE_INFO = new Text("NumOpsGetFileInfo");
+  public static final Text RENAME_EXECTIME = new Text("RenameExecutionTime");
+  public static final Text NUMOPS_RENAME = new Text("NumOpsRename");
+  public static final Text MKDIRS_EXECTIME = new Text("MkdirsExecutionTime");
+  public static final Text NUMOPS_MKDIRS = new Text("NumOpsMkdirs");
+  public static final Text SET_PERMISSION_EXECTIME = new Text("SetPermissionExecutionTime");
+  public static final Text NUMOPS_SET_PERMISSION = new Text("NumOpsSetPermission");
+  public static final Text SET_TIMES_EXECTIME = new Text("SetTimesExecutionTime");
+  public static final Text NUMOPS_SET_TIMES = new Text("NumOpsSetTimes");
+  public static final Text APPEND_EXECTIME = new Text("AppendExecutionTime");
+  public static final Text NUMOPS_APPEND = new Text("NumOpsAppend");
+  public static final Text GET_CONTENT_SUMMARY_EXECTIME = new Text("GetContentSummaryExecutionTime");
+  public static final Text NUMOPS_GET_CONTENT_SUMMARY = new Text("NumOpsGetContentSummary");
+  public static final Text FIRST_BYTE_EXECTIME = new Text("FirstByteExecutionTime");
+  public static final Text NUMOPS_FIRST_BYTE = new Text("NumOpsFirstByte");
+  public static final Text READ_DATA_EXECTIME = new Text("ReadDataExecutionTime");
+  public static final Text NUMOPS_READ_DATA = new Text("NumOpsReadData");
+  public static final Text READ_BYTES = new Text("ReadBytes");
   public static final Text ELAPSED_TIME = new Text("ElapsedTime");
   public static final Text TOTALOPS = new Text("TotalOps");
+  public static final Text NUM_MAPS = new Text("NumMaps");
+  public static final Text NUM_FAILED_MAPS = new Text("NumFailedMaps");
+  public static final Text WARMUP_OPS = new Text("WarmUpOps");
+  public static final Text WARMUP_TIME = new Text("WarmUpTime");
+  /** Prefix of the keys of the failed operations by the exception class */
+  public static final String NUM_ERRORS_BY_CAUSE = "NumErrorsBy:";
+
+  /** Execution time keys, indexed by the LoadGenerator operation type */
+  static final Text[] EXECTIME_KEYS = {OPEN_EXECTIME, LIST_EXECTIME,
+      CREATE_EXECTIME, WRITE_CLOSE_EXECTIME, DELETE_EXECTIME,
+      GET_FILE_INFO_EXECTIME, RENAME_EXECTIME, MKDIRS_EXECTIME,
+      SET_PERMISSION_EXECTIME, SET_TIMES_EXECTIME, APPEND_EXECTIME,
+      GET_CONTENT_SUMMARY_EXECTIME, FIRST_BYTE_EXECTIME, READ_DATA_EXECTIME};
+  /** Operation count keys, indexed by the LoadGenerator operation type */
+  static final Text[] NUMOPS_KEYS = {NUMOPS_OPEN, NUMOPS_LIST,
+      NUMOPS_CREATE, NUMOPS_WRITE_CLOSE, NUMOPS_DELETE, NUMOPS_GET_FILE_INFO,
+      NUMOPS_RENAME, NUMOPS_MKDIRS, NUMOPS_SET_PERMISSION, NUMOPS_SET_TIMES,
+      NUMOPS_APPEND, NUMOPS_GET_CONTENT_SUMMARY, NUMOPS_FIRST_BYTE,
+      NUMOPS_READ_DATA};
+  /** Failed operation count keys, indexed by the operation type */
+  static final Text[] NUMERRORS_KEYS = new Text[NUMOPS_KEYS.length];
+  static {
+    for (int i = 0; i < NUMOPS_KEYS.length; i++) {
+      NUMERRORS_KEYS[i] = new Text("NumErrors"
+          + NUMOPS_KEYS[i].toString().substring("NumOps".length()));
+    }
+  }
 
   public static final String LG_ROOT = "LG.root";
   public static final String LG_SCRIPTFILE = "LG.scriptFile";
@@ -22,9 +68,37 @@ public class LGConstants {
   public static final String LG_NUMOFTHREADS = "LG.numOfThreads";
   public static final String LG_READPR = "LG.readPr";
   public static final String LG_WRITEPR = "LG.writePr";
+  public static final String LG_OPWEIGHTS = "LG.opWeights";
   public static final String LG_SEED = "LG.r";
   public static final String LG_NUMMAPTASKS = "LG.numMapTasks";
   public static final String LG_ELAPSEDTIME = "LG.elapsedTime";
   public static final String LG_STARTTIME = "LG.startTime";
   public static final String LG_FLAGFILE = "LG.flagFile";
+  public static final String LG_PERTHREADRANDOM = "LG.perThreadRandom";
+  public static final String LG_TARGETOPSPERSEC = "LG.targetOpsPerSec";
+  public static final String LG_TARGETOPRATES = "LG.targetOpRates";
+  public static final String LG_POISSONARRIVALS = "LG.poissonArrivals";
+  public static final String LG_USEVIRTUALTHREADS = "LG.useVirtualThreads";
+  public static final String LG_TIMESERIESFILE = "LG.timeSeriesFile";
+  public static final String LG_SAMPLEINTERVAL = "LG.sampleInterval";
+  public static final String LG_CRAWLTHREADS = "LG.crawlThreads";
+  public static final String LG_NAMESPACEINDEX = "LG.namespaceIndex";
+  public static final String LG_FILECONTENT = "LG.fileContent";
+  public static final String LG_ACCESSPATTERN = "LG.accessPattern";
+  public static final String LG_METRICS = "LG.metrics";
+  public static final String LG_WARMUP = "LG.warmUp";
+  public static final String LG_CONTINUEONERROR = "LG.continueOnError";
+  public static final String LG_ERRORBACKOFF = "LG.errorBackoff";
+  public static final String LG_MAXERRORBACKOFF = "LG.maxErrorBackoff";
+  public static final String LG_READMODE = "LG.readMode";
+  public static final String LG_READBUFFERSIZE = "LG.readBufferSize";
+
+  public static final String DG_ROOT = "DG.root";
+  public static final String DG_NUMOFTHREADS = "DG.numOfThreads";
+  public static final String DG_FILECONTENT = "DG.fileContent";
+  public static final String DG_NUMMAPTASKS = "DG.numMapTasks";
+  public static final String DG_SHARDDIR = "DG.shardDir";
+  /** Name of the distributed cache copy of the namespace index in the
+   * working directory of a map task */
+  public static final String NAMESPACE_INDEX_LINK = "lgNamespaceIndex";
 }
@@ -0,0 +1,158 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hadoop.test.loadgenerator;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A log-bucketed histogram of latencies in nanoseconds.
+ *
+ * Values are grouped by the position of their highest set bit and every
+ * power-of-two range is split into <code>2^SUB_BUCKET_BITS</code> linear
+ * sub-buckets, so a reported percentile is never more than 1/64 (about 1.6%)
+ * above the true value. All counters live in one array allocated up front;
+ * recording a value never allocates.
+ *
+ * Recording is lock-free and may happen from several threads at once, so a
+ * group of clients can share one histogram and it can be read while it is
+ * being written. Histograms are merged with {@link #add(LatencyHistogram)}.
+ */
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 6;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  /** Values of 2^37ns (about 137 seconds) or more share the last bucket */
+  private static final int MAX_VALUE_BITS = 37;
+  static final long MAX_TRACKABLE_VALUE = (1L << MAX_VALUE_BITS) - 1;
+  private static final int NUM_BUCKETS =
+      (MAX_VALUE_BITS - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+  private final AtomicLong totalCount = new AtomicLong();
+  private final AtomicLong maxValue = new AtomicLong();
+
+  /** Record one latency of <code>nanos</code> nanoseconds */
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    if (nanos > maxValue.get()) {
+      maxValue.accumulateAndGet(nanos, Math::max);
+    }
+    counts.incrementAndGet(bucketIndex(Math.min(nanos, MAX_TRACKABLE_VALUE)));
+    totalCount.incrementAndGet();
+  }
+
+  /** Add all the values recorded by <code>other</code> to this histogram */
+  public void add(LatencyHistogram other) {
+    long added = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      long count = other.counts.get(i);
+      if (count != 0) {
+        counts.addAndGet(i, count);
+        added += count;
+      }
+    }
+    totalCount.addAndGet(added);
+    maxValue.accumulateAndGet(other.maxValue.get(), Math::max);
+  }
+
+  /**
+   * Get the values recorded since <code>earlier</code>, which must be an
+   * older copy of this histogram, e.g. the sum of the same sources taken at
+   * the start of an interval. The maximum of the result is the upper bound
+   * of its highest non-empty bucket since the exact one is not known.
+   */
+  public LatencyHistogram minus(LatencyHistogram earlier) {
+    LatencyHistogram interval = new LatencyHistogram();
+    long total = 0;
+    int highest = -1;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      long count = counts.get(i) - earlier.counts.get(i);
+      if (count > 0) {
+        interval.counts.set(i, count);
+        total += count;
+        highest = i;
+      }
+    }
+    interval.totalCount.set(total);
+    if (highest >= 0) {
+      interval.maxValue.set(
+          Math.min(highestEquivalentValue(highest), maxValue.get()));
+    }
+    return interval;
+  }
+
+  /** @return the number of recorded values */
+  public long getCount() {
+    return totalCount.get();
+  }
+
+  /** @return the largest recorded value in nanoseconds, exact */
+  public long getMax() {
+    return maxValue.get();
+  }
+
+  /**
+   * Get the value at the given percentile.
+   *
+   * @param percentile a percentile in (0, 100]
+   * @return the highest value that falls into the same bucket as the value at
+   *         <code>percentile</code>, capped by the recorded maximum, or 0 if
+   *         nothing has been recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    long total = totalCount.get();
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(percentile / 100 * total);
+    rank = Math.max(1, Math.min(rank, total));
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return Math.min(highestEquivalentValue(i), maxValue.get());
+      }
+    }
+    // values recorded while walking the buckets may not be counted yet
+    return maxValue.get();
+  }
+
+  /** Map a value in [0, MAX_TRACKABLE_VALUE] to its bucket */
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    // (value >>> shift) is in [SUB_BUCKET_COUNT, 2 * SUB_BUCKET_COUNT)
+    return (shift + 1) * SUB_BUCKET_COUNT
+        + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+  }
+
+  /** The largest value that maps to bucket <code>index</code> */
+  static long highestEquivalentValue(int index) {
+    if (index < SUB_BUCKET_COUNT) {
+      return index;
+    }
+    int shift = index / SUB_BUCKET_COUNT - 1;
+    long lowest = (long) (index % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << shift;
+    return lowest + (1L << shift) - 1;
+  }
+}
@@ -18,31 +18,46 @@
 
 package com.hadoop.test.loadgenerator;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.DataInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.Map;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+import java.util.random.RandomGenerator;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.conf.Configured;
 import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileContext;
-import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Options;
 import org.apache.hadoop.fs.Options.CreateOpts;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.UnsupportedFileSystemException;
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.apache.hadoop.hdfs.client.HdfsClientConfigKeys;
+import org.apache.hadoop.hdfs.client.HdfsDataInputStream;
 import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.metrics2.MetricsSystem;
+import org.apache.hadoop.metrics2.lib.DefaultMetricsSystem;
 import org.apache.hadoop.util.Time;
 import org.apache.hadoop.util.Preconditions;
 
@@ -78,6 +93,15 @@ import org.slf4j.LoggerFactory;
  * 
  * The script takes the form of lines of duration in seconds, read
  * probability and write probability, each separated by white space.
+ * A line may leave out the probabilities and may add any of these
+ * settings for its phase:
+ *   threads=<n>[..<m>]: number of active clients, ramped linearly from n
+ *      to m over the phase; the default is numOfThreads
+ *   rate=<opsPerSec>[..<opsPerSec>]: open-loop arrival rate, likewise
+ *      ramped; the default is targetOpsPerSec
+ *   ops=<op>=<weight>,...: op mix of the phase, as in -opWeights
+ *   dirs=<dir>: only use files and directories under root/dir
+ * Phase changes and ramp steps take effect within a few milliseconds.
  * Blank lines and lines starting with # (comments) are ignored. If load
  * generator is run as a MapReduce program then the script file needs to be
  * accessible on the the Map task as a HDFS file.
@@ -99,6 +123,12 @@ import org.slf4j.LoggerFactory;
  * from the test space.
  * While listing, it randomly picks a directory in the test space and
  * list the directory content.
+ * With -opWeights the thread instead chooses among a wider mix of
+ * operations in proportion to their weights: besides read, write and list
+ * it can get the status of a file, rename its own scratch file into a
+ * random directory, create and delete a directory, set the permission or
+ * the times of a file, append a block to its scratch file, and get the
+ * content summary of a directory.
  * Between two consecutive operations, the thread pauses for a random
  * amount of time in the range of [0, maxDelayBetweenOps] 
  * if the specified max delay is not zero.
@@ -107,7 +137,10 @@ import org.slf4j.LoggerFactory;
  * executed, if using a script.
  * Before exiting, the program prints the average execution for 
  * each kind of NameNode operations, and the number of requests
- * served by the NameNode.
+ * served by the NameNode. Every operation is also timed with nanosecond
+ * resolution into a per-thread latency histogram; the histograms are merged
+ * when the threads are joined and their p50, p90, p99, p99.9 and maximum
+ * are printed along with the averages.
  *
  * The synopsis of the command is
  * java LoadGenerator
@@ -115,6 +148,9 @@ import org.slf4j.LoggerFactory;
  *                                        with a default value of 0.3333. 
  *   -writeProbability <write probability>: write probability [0, 1]
  *                                         with a default value of 0.3333.
+ *   -opWeights <op>=<weight>,...: weighted mix of read, write, list,
+ *      getFileInfo, rename, mkdirs, setPermission, setTimes, append and
+ *      getContentSummary; replaces the read and write probabilities
  *   -root <root>: test space with a default value of /testLoadSpace
  *   -maxDelayBetweenOps <maxDelayBetweenOpsInMillis>: 
  *      Max delay in the unit of milliseconds between two operations with a 
@@ -126,52 +162,247 @@ import org.slf4j.LoggerFactory;
  *      indicating running forever
  *   -startTime <startTimeInMillis> : when the threads start to run.
  *   -scriptFile <file name>: text file to parse for scripted operation
+ *   -seed <seed>: random number generator seed; default is the current time.
+ *      It is mixed with the host name and, in a map task, the task id.
+ *   -targetOpsPerSec <opsPerSec>: run open-loop. Operations arrive at this
+ *      rate regardless of how fast the NameNode answers, the kind of each
+ *      one is chosen by the read/write probabilities, and the threads act
+ *      as a worker pool that serves the arrivals. Latency is measured from
+ *      the time an operation was due, which corrects for coordinated
+ *      omission. maxDelayBetweenOps is ignored in this mode.
+ *   -targetOpRates <op>=<rate>,...: open-loop arrival rates of
+ *      individual kinds of operation; may be combined with -targetOpsPerSec
+ *   -arrivalProcess <fixed|poisson>: evenly spaced (default) or Poisson
+ *      arrivals in open-loop mode
+ *   -useVirtualThreads: run the numOfThreads clients on virtual threads
+ *      (Java 21 or later) so that one process can emulate tens of thousands
+ *      of concurrent clients. Clients then share their statistics in a few
+ *      stripes per processor, and the report includes how often and where
+ *      the carrier threads were pinned.
+ *   -timeSeriesFile <localFile>: while running, append the throughput and
+ *      latency percentiles of each type of operation in every sample
+ *      interval to this local file, as CSV or as JSON lines if the name
+ *      ends with .json or .jsonl. The file is flushed every interval.
+ *      A map task inserts its task attempt id into the file name before
+ *      the extension and into every row.
+ *   -sampleInterval <intervalInSecs>: length of a sample interval with a
+ *      default value of 10.
+ *   -crawlThreads <n>: number of directories listed in parallel when the
+ *      test space is discovered at startup, with a default value of 16.
+ *   -namespaceIndex <indexFile>: take the directories and files of the
+ *      test space from an index built by NamespaceIndexGenerator instead
+ *      of crawling root. A local index is memory-mapped.
+ *   -fileContent <content>: what created and appended files are filled
+ *      with: constant (all 'a', the default), random (incompressible) or
+ *      compressible:ratio, where about that fraction of the data
+ *      compresses away.
+ *   -accessPattern <pattern>: how the file or directory of an operation is
+ *      picked: uniform (the default), zipf:s with the popularity of the
+ *      entry of rank k proportional to 1/k^s, scrambledzipf:s with the
+ *      same popularity spread over the test space, or hotset:fraction,p
+ *      where that fraction of the entries gets p of the accesses. See
+ *      AccessPattern.
+ *   -controlPort <port>: listen on this port of the loopback interface
+ *      (0 for any free one) for requests that change the number of
+ *      threads, the open-loop rate and the op mix, or pause, resume or
+ *      stop the load while it runs; see ControlEndpoint. The flag file is
+ *      then only checked if -flagFile is given. Not available as a
+ *      MapReduce job.
+ *   -metrics: register a metrics2 source named LoadGenerator that
+ *      exposes, per type of operation, the counts and errors and the rate
+ *      and latency percentiles of the last sample interval, as well as the
+ *      number of active and failed clients, to the configured metrics
+ *      sinks (prefix loadgenerator) and JMX. See LoadGeneratorMetrics.
+ *   -warmUp <secs|auto[:cv,windowSecs]>: leave the operations that start
+ *      in the first secs seconds, or before the load reaches a steady
+ *      state, out of the results and report them separately. The load is
+ *      steady once the coefficient of variation of both the throughput and
+ *      the mean latency, sampled every second over the last windowSecs
+ *      seconds (10 by default), is at most cv (0.05 by default). The
+ *      warm-up is part of elapsedTime and of the first phases of a script.
+ *   -saturationSearch <threads|rate>:<start>,<max>: instead of running
+ *      phases, search for the highest throughput the NameNode sustains by
+ *      raising the number of clients or the open-loop rate from start
+ *      towards max, doubling and then bisecting; see SaturationSearch. Each
+ *      step waits up to three windows for the load to settle, as -warmUp
+ *      auto detects it with its cv and windowSecs, and is then measured
+ *      for stepTime. The report holds the throughput/latency curve and the max
+ *      sustainable ops/s.
+ *   -sloP99 <millis>: with -saturationSearch, a search step whose p99
+ *      latency over all operations is above this is not sustainable.
+ *   -stepTime <secs>: with -saturationSearch, how long a search step is
+ *      measured, 30 by default.
+ *   -continueOnError: count a failed operation, time it by the class of
+ *      its exception, e.g. RetriableException, StandbyException or
+ *      SocketTimeoutException, and go on, instead of stopping the thread.
+ *      The report then holds the error rates and error latencies.
+ *   -errorBackoff <baseMillis>[,<maxMillis>]: with -continueOnError, sleep
+ *      for a random time up to baseMillis, doubled with every failure in a
+ *      row but at most maxMillis (10000 by default), after a failure.
+ *   -readMode <mode>: how a read operation reads the file it opened:
+ *      stream reads it all through the stream (the default), pread reads
+ *      one random range of readBufferSize bytes with a positional read,
+ *      bytebuffer reads it all into a direct ByteBuffer and
+ *      hedged[:thresholdMillis] is pread with HDFS hedged reads, which
+ *      start a second read from another DataNode after thresholdMillis
+ *      (500 by default). Besides the open, the first byte and the whole
+ *      read are timed from the end of the open, and the bytes are counted.
+ *   -readBufferSize <bytes>: the buffer of every client, 1024 by default.
+ *   -maxThreads <maxThreads>: number of clients to start, at least as many
+ *      as any phase uses, so that the control endpoint can activate more.
+ *   -perThreadRandom: give every thread its own SplittableRandom stream
+ *      derived from the seed, the host name and the thread id instead of
+ *      sharing one java.util.Random. This removes the contention on the
+ *      shared seed and makes the op sequence of each thread reproducible.
  */
 public class LoadGenerator extends Configured {
   public static final Logger LOG = LoggerFactory.getLogger(LoadGenerator.class);
   
   private volatile static boolean shouldRun = true;
   protected static Path root = DataGenerator.DEFAULT_ROOT;
-  private static FileContext fc;
+  protected static FileContext fc;
   protected static int maxDelayBetweenOps = 0;
   protected static int numOfThreads = 200;
   protected static long [] durations = {0};
   protected static double [] readProbs = {0.3333};
   protected static double [] writeProbs = {0.3333};
+  /** Weights of the kinds of operation given by -opWeights, if any */
+  protected static double [] opWeights = null;
+  /** Per phase settings of a script; null entries use the defaults */
+  protected static double [][] phaseOpWeights = {null};
+  protected static int [][] phaseThreads = {null};
+  protected static double [][] phaseRates = {null};
+  protected static String [] phaseDirs = {null};
+  /** The op mix of each step of the script, or of the whole run */
+  private static AliasTable [] opTables;
+  /** The file and directory table ranges of each phase, or null for all */
+  private static int [][] fileRanges;
+  private static int [][] dirRanges;
+  /** Pickers of a file and a directory of each phase's ranges */
+  private static AccessPattern.Picker [] filePickers;
+  private static AccessPattern.Picker [] dirPickers;
   private static volatile int currentIndex = 0;
+  /** Clients with an id at or above this are parked */
+  private static volatile int activeThreads;
+  private static Thread [] clientThreads;
+  /** How often ramps are advanced */
+  private static final long RAMP_STEP_MILLIS = 10;
+  /** How often the flag file is looked up on the file system */
+  private static final long FLAG_CHECK_MILLIS = 2000;
   protected static long totalTime = 0;
   protected static long startTime = Time.now()+10000;
   final static private int BLOCK_SIZE = 10;
-  private static ArrayList<String> files = new ArrayList<String>();  // a table of file names
-  private static ArrayList<String> dirs = new ArrayList<String>(); // a table of directory names
+  private static NamespaceTable namespace; // the directories and files
   protected static Random r = null;
   protected static long seed = 0;
+  protected static boolean perThreadRandom = false;
+  /** The id of the map task this runs in, or null outside MapReduce */
+  protected static String taskId = null;
+  protected static String taskAttemptId = null;
+  protected static double targetOpsPerSec = 0;
+  protected static double [] targetOpRates = null;
+  protected static boolean poissonArrivals = false;
+  protected static boolean useVirtualThreads = false;
+  protected static String timeSeriesFile = null;
+  protected static long sampleInterval = 10;
+  protected static int crawlThreads = 16;
+  protected static FileContent fileContent = FileContent.CONSTANT;
+  protected static AccessPattern accessPattern = AccessPattern.UNIFORM;
+  protected static String namespaceIndex = null;
+  private static volatile OpenLoopScheduler scheduler = null;
+  protected static int controlPort = -1;
+  protected static boolean exposeMetrics = false;
+  protected static int maxThreads = 0;
+  /** The -warmUp setting as given, or null for no warm-up */
+  protected static String warmUp = null;
+  /** The length of a fixed warm-up in seconds */
+  private static long warmUpSecs = 0;
+  /** Ends the warm-up at the steady state if it is not of fixed length */
+  private static SteadyStateDetector steadyState = null;
+  /** Operations that start while this is set are warm-up */
+  private static volatile boolean warmingUp = false;
+  /** How often the load is sampled for the steady state detection */
+  private static final long WARM_UP_SAMPLE_MILLIS = 1000;
+  /** The steady state a warm-up or search step waits for */
+  private static double steadyStateCV = 0.05;
+  private static int steadyStateWindow = 10;
+  /** The -saturationSearch setting, or null to run the phases */
+  protected static String saturationSearch = null;
+  protected static double sloP99Millis = 0;
+  protected static long stepTime = 30;
+  private static SaturationSearch search = null;
+  protected static boolean continueOnError = false;
+  /** The client-side backoff after a failure in milliseconds, or 0 */
+  protected static long errorBackoffMillis = 0;
+  protected static long maxErrorBackoffMillis = 10000;
+  /** How a read operation reads the data of the file it opened */
+  protected enum ReadMode { STREAM, PREAD, BYTEBUFFER, HEDGED }
+  protected static ReadMode readMode = ReadMode.STREAM;
+  protected static long hedgedReadThresholdMillis =
+      HdfsClientConfigKeys.HedgedRead.THRESHOLD_MILLIS_DEFAULT;
+  protected static int readBufferSize = 1024;
+  /** How many steady state windows a search step may take to settle */
+  private static final int SETTLE_WINDOWS = 3;
+  /** Settings changed through the control endpoint. They override those
+   * of the command line and the script until they are reset. */
+  private static volatile int threadsOverride = -1;
+  private static volatile double rateOverride = -1;
+  private static volatile double[] opMixOverride = null;
+  private static volatile AliasTable opTableOverride = null;
+  private static volatile boolean paused = false;
+  /** The thread that steps through the phases */
+  private static volatile Thread controller;
+  /** The open-loop mix rate the controller last applied */
+  private static volatile double currentRate;
+  private static OpStats[] clientStats;
   protected static String scriptFile = null;
   protected static final String FLAGFILE_DEFAULT = "/tmp/flagFile";
   protected static Path flagFile = new Path(FLAGFILE_DEFAULT);
+  private static boolean flagFileGiven = false;
   protected String hostname;
   final private static String USAGE_CMD = "java LoadGenerator\n";
   final protected static String USAGE_ARGS = 
 	  "-readProbability <read probability>\n" +
       "-writeProbability <write probability>\n" +
+      "-opWeights <op>=<weight>[,<op>=<weight>...]\n" +
       "-root <root>\n" +
       "-maxDelayBetweenOps <maxDelayBetweenOpsInMillis>\n" +
       "-numOfThreads <numOfThreads>\n" +
       "-elapsedTime <elapsedTimeInSecs>\n" +
       "-startTime <startTimeInMillis>\n" +
       "-scriptFile <filename>\n" +
+      "-seed <seed>\n" +
+      "-perThreadRandom\n" +
+      "-targetOpsPerSec <opsPerSec>\n" +
+      "-targetOpRates <op>=<opsPerSec>[,<op>=<opsPerSec>...]\n" +
+      "-arrivalProcess <fixed|poisson>\n" +
+      "-useVirtualThreads\n" +
+      "-timeSeriesFile <localFile>\n" +
+      "-sampleInterval <intervalInSecs>\n" +
+      "-crawlThreads <numOfListingsInFlight>\n" +
+      "-namespaceIndex <indexFile>\n" +
+      "-fileContent <constant|random|compressible:ratio>\n" +
+      "-accessPattern <uniform|zipf:s|scrambledzipf:s|hotset:fraction,p>\n" +
+      "-controlPort <port>\n" +
+      "-metrics\n" +
+      "-warmUp <secs|auto[:cv,windowSecs]>\n" +
+      "-saturationSearch <threads|rate>:<start>,<max>\n" +
+      "-sloP99 <millis>\n" +
+      "-stepTime <secs>\n" +
+      "-continueOnError\n" +
+      "-errorBackoff <baseMillis>[,<maxMillis>]\n" +
+      "-readMode <stream|pread|bytebuffer|hedged[:thresholdMillis]>\n" +
+      "-readBufferSize <bytes>\n" +
+      "-maxThreads <maxThreads>\n" +
       "-flagFile <filename>";
   final private static String USAGE = USAGE_CMD + USAGE_ARGS;
   
-  private final byte[] WRITE_CONTENTS = new byte[4096];
-
   private static final int ERR_TEST_FAILED = 2;
 
   /** Constructor */
   public LoadGenerator() throws IOException, UnknownHostException {
     InetAddress addr = InetAddress.getLocalHost();
     hostname = addr.getHostName();
-    Arrays.fill(WRITE_CONTENTS, (byte) 'a');
   }
   
   public LoadGenerator(Configuration conf) throws IOException, UnknownHostException {
@@ -184,21 +415,95 @@ public class LoadGenerator extends Configured {
   protected final static int CREATE = 2;
   protected final static int WRITE_CLOSE = 3;
   protected final static int DELETE = 4;
-  protected final static int TOTAL_OP_TYPES =5;
+  protected final static int GET_FILE_INFO = 5;
+  protected final static int RENAME = 6;
+  protected final static int MKDIRS = 7;
+  protected final static int SET_PERMISSION = 8;
+  protected final static int SET_TIMES = 9;
+  protected final static int APPEND = 10;
+  protected final static int GET_CONTENT_SUMMARY = 11;
+  /** The types from here on time the data phases of a read after its
+   * open; they are not counted as operations of their own */
+  protected final static int COUNTED_OP_TYPES = 12;
+  protected final static int FIRST_BYTE = 12;
+  protected final static int READ_DATA = 13;
+  protected final static int TOTAL_OP_TYPES =14;
+  protected final static String[] OP_NAMES =
+      {"open", "list", "create", "write_close", "delete", "getFileInfo",
+       "rename", "mkdirs", "setPermission", "setTimes", "append",
+       "getContentSummary", "first_byte", "read_data"};
+
+  /** The kinds of operation a thread chooses between */
+  protected final static int READ_OP = 0;
+  protected final static int WRITE_OP = 1;
+  protected final static int LIST_OP = 2;
+  protected final static int GET_FILE_INFO_OP = 3;
+  protected final static int RENAME_OP = 4;
+  protected final static int MKDIRS_OP = 5;
+  protected final static int SET_PERMISSION_OP = 6;
+  protected final static int SET_TIMES_OP = 7;
+  protected final static int APPEND_OP = 8;
+  protected final static int GET_CONTENT_SUMMARY_OP = 9;
+  protected final static String[] OP_KIND_NAMES =
+      {"read", "write", "list", "getFileInfo", "rename", "mkdirs",
+       "setPermission", "setTimes", "append", "getContentSummary"};
+  /** The type of the first call of each kind of operation, which its
+   * errors are counted against */
+  private final static int[] OP_KIND_TYPES =
+      {OPEN, CREATE, LIST, GET_FILE_INFO, RENAME, MKDIRS, SET_PERMISSION,
+       SET_TIMES, APPEND, GET_CONTENT_SUMMARY};
+  /** Start timestamp of an operation that is timed from when it is issued */
+  final static long NOT_SCHEDULED = Long.MIN_VALUE;
+  private final static FsPermission FILE_PERMISSION =
+      new FsPermission((short) 0644);
+  /** Accumulated execution time of each type of operation in nanoseconds */
   protected static long [] executionTime = new long[TOTAL_OP_TYPES];
   protected static long [] numOfOps = new long[TOTAL_OP_TYPES];
+  protected static LatencyHistogram [] latencies = newHistograms();
   protected static long totalOps = 0; // across all of types
+  /** Failed operations, counted against the first type of their kind */
+  protected static long [] numOfErrors = new long[TOTAL_OP_TYPES];
+  /** Bytes transferred, so far only by the reads */
+  protected static long [] numOfBytes = new long[TOTAL_OP_TYPES];
+  /** Failed operations and their latencies by the class of the exception */
+  protected static Map<String, Long> numOfErrorsByCause =
+      new TreeMap<String, Long>();
+  protected static Map<String, LatencyHistogram> errorLatencies =
+      new TreeMap<String, LatencyHistogram>();
+  /** The statistics of the warm-up, which the ones above leave out */
+  protected static long [] warmUpExecutionTime = new long[TOTAL_OP_TYPES];
+  protected static long [] warmUpNumOfOps = new long[TOTAL_OP_TYPES];
+  protected static LatencyHistogram [] warmUpLatencies = newHistograms();
+  protected static long warmUpOps = 0;
+  protected static long warmUpTime = 0;
+  /** How the warm-up ended, for the report */
+  private static String warmUpEnd = null;
+  private static PinningMonitor pinningMonitor = null;
+
+  private static LatencyHistogram[] newHistograms() {
+    LatencyHistogram[] histograms = new LatencyHistogram[TOTAL_OP_TYPES];
+    for (int i=0; i<TOTAL_OP_TYPES; i++) {
+      histograms[i] = new LatencyHistogram();
+    }
+    return histograms;
+  }
+
+  /** Virtual-thread clients share this many OpStats per carrier thread;
+   * a separate set per client would not fit in the heap at 50k clients.
+   */
+  private static final int STATS_STRIPES_PER_CARRIER = 4;
   
   /** A thread sends a stream of requests to the NameNode.
    * At each iteration, it first decides if it is going to read a file,
    * create a file, or listing a directory following the read
    * and write probabilities.
    * When reading, it randomly picks a file in the test space and reads
-   * the entire file. When writing, it randomly picks a directory in the
-   * test space and creates a file whose name consists of the current 
-   * machine's host name and the thread id. The length of the file
-   * follows Gaussian distribution with an average size of 2 blocks and
-   * the standard deviation of 1 block. The new file is filled with 'a'.
+   * the entire file, or a random range of it, as the read mode says.
+   * When writing, it randomly picks a directory in the test space and
+   * creates a file whose name consists of the current machine's host
+   * name and the thread id. The length of the file follows Gaussian
+   * distribution with an average size of 2 blocks and the standard
+   * deviation of 1 block. The new file is filled with 'a'.
    * Immediately after the file creation completes, the file is deleted
    * from the test space.
    * While listing, it randomly picks a directory in the test space and
@@ -208,25 +513,61 @@ public class LoadGenerator extends Configured {
    * if the specified max delay is not zero.
    * A thread runs for the specified elapsed time if the time isn't zero.
    * Otherwise, it runs forever.
+   * In open-loop mode the thread does not pace itself. It takes operations
+   * from the OpenLoopScheduler when they are due and times each one from
+   * its intended start, not from when a thread became free to run it.
+   * The loop runs on a platform thread by default, or on a virtual thread
+   * with -useVirtualThreads.
    */
-  private class DFSClientThread extends Thread {
-    private int id;
-    private long [] executionTime = new long[TOTAL_OP_TYPES];
-    private long [] totalNumOfOps = new long[TOTAL_OP_TYPES];
-    private byte[] buffer = new byte[1024];
-    private boolean failed;
-
-    private DFSClientThread(int id) {
+  class DFSClientThread implements Runnable {
+    private final int id;
+    private final RandomGenerator rand;
+    private final OpStats stats;
+    /** Where the operations of the warm-up are counted as well */
+    private final OpStats warmUpStats;
+    /** warmUpStats if the current operation started in the warm-up */
+    private OpStats opWarmUpStats;
+    private byte[] buffer = new byte[readBufferSize];
+    /** The buffer of the bytebuffer read mode, allocated on first use */
+    private ByteBuffer directBuffer;
+    private volatile boolean failed;
+    /** A file that only this thread renames and appends to */
+    private Path scratchFile;
+    private final String scratchName;
+    private int numOfRenames;
+    /** Failures in a row, for the backoff */
+    private int consecutiveErrors = 0;
+
+    DFSClientThread(int id, RandomGenerator rand, OpStats stats,
+        OpStats warmUpStats) {
       this.id = id;
+      this.scratchName = hostname + id + "_" + UUID.randomUUID();
+      this.rand = rand;
+      this.stats = stats;
+      this.warmUpStats = warmUpStats;
     }
     
     /** Main loop for each thread
-     * Each iteration decides what's the next operation and then pauses.
+     * Each iteration decides what's the next operation and then pauses,
+     * or in open-loop mode runs the next operation that is due.
      */
     @Override
     public void run() {
       try {
         while (shouldRun) {
+          if (id >= activeThreads) {
+            // wait for a phase that runs more clients
+            LockSupport.park(this);
+            continue;
+          }
+          if (scheduler != null && isOpenLoop(currentIndex)) {
+            OpenLoopScheduler.Arrival arrival = scheduler.poll(100);
+            if (arrival != null) {
+              runOp(arrival.opKind == OpenLoopScheduler.ANY_OP ?
+                  pickOp() : arrival.opKind, arrival.intendedStart);
+            }
+            continue;
+          }
           nextOp();
           delay();
         }
@@ -234,6 +575,8 @@ public class LoadGenerator extends Configured {
         System.err.println(ioe.getLocalizedMessage());
         ioe.printStackTrace();
         failed = true;
+      } finally {
+        deleteScratchFile();
       }
     }
     
@@ -242,7 +585,7 @@ public class LoadGenerator extends Configured {
      */
     private void delay() throws InterruptedException {
       if (maxDelayBetweenOps>0) {
-        int delay = r.nextInt(maxDelayBetweenOps);
+        int delay = rand.nextInt(maxDelayBetweenOps);
         Thread.sleep(delay);
       }
     }
@@ -253,31 +596,206 @@ public class LoadGenerator extends Configured {
      * operation could be either read, write, or list.
      */
     private void nextOp() throws IOException {
-      double rn = r.nextDouble();
+      runOp(pickOp(), NOT_SCHEDULED);
+    }
+
+    /** Choose the kind of the next operation from the current op mix */
+    private int pickOp() {
       int i = currentIndex;
       
       if(LOG.isDebugEnabled())
         LOG.debug("Thread " + this.id + " moving to index " + i);
       
-      if (rn < readProbs[i]) {
-        read();
-      } else if (rn < readProbs[i] + writeProbs[i]) {
-        write();
-      } else {
-        list();
+      AliasTable table = opTableOverride;
+      return (table != null ? table : opTables[i]).sample(rand);
+    }
+
+    /** Run an operation of the given kind. Its first NameNode call is
+     * timed from <code>intendedStart</code> unless that is NOT_SCHEDULED.
+     */
+    private void runOp(int opKind, long intendedStart) throws IOException {
+      // All the calls of an operation that starts in the warm-up are
+      // warm-up, so every operation is on the same side of the cut
+      opWarmUpStats = warmingUp ? warmUpStats : null;
+      long startTimestamp = startOf(intendedStart);
+      try {
+        issueOp(opKind, intendedStart);
+        consecutiveErrors = 0;
+      } catch (IOException e) {
+        long elapsed = Time.monotonicNowNanos() - startTimestamp;
+        String cause = errorCause(e);
+        stats.recordError(OP_KIND_TYPES[opKind], cause, elapsed);
+        if (opWarmUpStats != null) {
+          opWarmUpStats.recordError(OP_KIND_TYPES[opKind], cause, elapsed);
+        }
+        if (!continueOnError) {
+          throw e;
+        }
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Thread " + id + " failed to " + OP_KIND_NAMES[opKind], e);
+        }
+        if (opKind == RENAME_OP || opKind == APPEND_OP) {
+          // The scratch file may be gone or still open; start a new one
+          deleteScratchFile();
+          scratchFile = null;
+        }
+        backOff();
       }
     }
+
+    /** Sleep for a random time up to errorBackoffMillis, doubled with every
+     * failure in a row but at most maxErrorBackoffMillis */
+    private void backOff() {
+      consecutiveErrors++;
+      if (errorBackoffMillis > 0) {
+        long cap = Math.min(maxErrorBackoffMillis,
+            errorBackoffMillis << Math.min(consecutiveErrors - 1, 20));
+        LockSupport.parkNanos((long) (rand.nextDouble() * cap * 1000000L));
+      }
+    }
+
+    private void issueOp(int opKind, long intendedStart) throws IOException {
+      switch (opKind) {
+      case READ_OP:
+        read(intendedStart);
+        break;
+      case WRITE_OP:
+        write(intendedStart);
+        break;
+      case LIST_OP:
+        list(intendedStart);
+        break;
+      case GET_FILE_INFO_OP:
+        getFileInfo(intendedStart);
+        break;
+      case RENAME_OP:
+        rename(intendedStart);
+        break;
+      case MKDIRS_OP:
+        mkdirs(intendedStart);
+        break;
+      case SET_PERMISSION_OP:
+        setPermission(intendedStart);
+        break;
+      case SET_TIMES_OP:
+        setTimes(intendedStart);
+        break;
+      case APPEND_OP:
+        append(intendedStart);
+        break;
+      case GET_CONTENT_SUMMARY_OP:
+        getContentSummary(intendedStart);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown op kind " + opKind);
+      }
+    }
+
+    private long startOf(long intendedStart) {
+      return intendedStart == NOT_SCHEDULED ?
+          Time.monotonicNowNanos() : intendedStart;
+    }
     
     /** Read operation randomly picks a file in the test space and reads
      * the entire file */
-    private void read() throws IOException {
-      String fileName = files.get(r.nextInt(files.size()));
-      long startTimestamp = Time.monotonicNow();
-      InputStream in = fc.open(new Path(fileName));
-      executionTime[OPEN] += (Time.monotonicNow() - startTimestamp);
-      totalNumOfOps[OPEN]++;
-      while (in.read(buffer) != -1) {}
-      in.close();
+    void read(long intendedStart) throws IOException {
+      Path file = randomFile();
+      long startTimestamp = startOf(intendedStart);
+      FSDataInputStream in = fc.open(file);
+      recordOp(OPEN, startTimestamp);
+      try {
+        long bytes;
+        if (readMode == ReadMode.PREAD || readMode == ReadMode.HEDGED) {
+          bytes = readRange(in, fileLength(file, in));
+        } else if (readMode == ReadMode.BYTEBUFFER) {
+          bytes = readByteBuffers(in);
+        } else {
+          bytes = readStream(in);
+        }
+        stats.recordBytes(READ_DATA, bytes);
+        if (opWarmUpStats != null) {
+          opWarmUpStats.recordBytes(READ_DATA, bytes);
+        }
+      } finally {
+        in.close();
+      }
+    }
+
+    /** Read the whole stream through the buffer
+     * @return the number of bytes read */
+    long readStream(FSDataInputStream in) throws IOException {
+      long startTimestamp = Time.monotonicNowNanos();
+      long bytes = 0;
+      int n = in.read(buffer);
+      if (n > 0) {
+        recordOp(FIRST_BYTE, startTimestamp);
+      }
+      while (n != -1) {
+        bytes += n;
+        n = in.read(buffer);
+      }
+      recordOp(READ_DATA, startTimestamp);
+      return bytes;
+    }
+
+    /** Read the whole stream into a direct ByteBuffer
+     * @return the number of bytes read */
+    long readByteBuffers(FSDataInputStream in) throws IOException {
+      if (directBuffer == null) {
+        directBuffer = ByteBuffer.allocateDirect(readBufferSize);
+      }
+      long startTimestamp = Time.monotonicNowNanos();
+      long bytes = 0;
+      try {
+        directBuffer.clear();
+        int n = in.read(directBuffer);
+        if (n > 0) {
+          recordOp(FIRST_BYTE, startTimestamp);
+        }
+        while (n != -1) {
+          bytes += n;
+          directBuffer.clear();
+          n = in.read(directBuffer);
+        }
+      } catch (UnsupportedOperationException e) {
+        // e.g. the checksummed local file system; fail the operation only
+        throw new IOException(e.getMessage(), e);
+      }
+      recordOp(READ_DATA, startTimestamp);
+      return bytes;
+    }
+
+    /** Read a random range of up to a buffer of a file of length
+     * <code>length</code> with positional reads
+     * @return the number of bytes read */
+    long readRange(FSDataInputStream in, long length)
+        throws IOException {
+      int len = (int) Math.min(buffer.length, length);
+      long position = length > len ? rand.nextLong(length - len + 1) : 0;
+      long startTimestamp = Time.monotonicNowNanos();
+      int bytes = 0;
+      do {
+        int n = len == 0 ? 0 :
+            in.read(position + bytes, buffer, bytes, len - bytes);
+        if (bytes == 0 && n > 0) {
+          recordOp(FIRST_BYTE, startTimestamp);
+        }
+        if (n <= 0) {
+          break;
+        }
+        bytes += n;
+      } while (bytes < len);
+      recordOp(READ_DATA, startTimestamp);
+      return bytes;
+    }
+
+    /** The length of an HDFS file comes with its open; elsewhere it costs
+     * a getFileStatus, which is not timed. */
+    private long fileLength(Path file, FSDataInputStream in)
+        throws IOException {
+      return in instanceof HdfsDataInputStream ?
+          ((HdfsDataInputStream) in).getVisibleLength() :
+          fc.getFileStatus(file).getLen();
     }
     
     /** The write operation randomly picks a directory in the
@@ -288,35 +806,161 @@ public class LoadGenerator extends Configured {
      * Immediately after the file creation completes, the file is deleted
      * from the test space.
      */
-    private void write() throws IOException {
-      String dirName = dirs.get(r.nextInt(dirs.size()));
+    private void write(long intendedStart) throws IOException {
       Path file =
-          new Path(dirName, hostname + id + UUID.randomUUID().toString());
+          new Path(randomDir(), hostname + id + UUID.randomUUID().toString());
       double fileSize = 0;
-      while ((fileSize = r.nextGaussian()+2)<=0) {}
-      genFile(file, (long)(fileSize*BLOCK_SIZE));
-      long startTimestamp = Time.monotonicNow();
+      while ((fileSize = rand.nextGaussian()+2)<=0) {}
+      genFile(file, (long)(fileSize*BLOCK_SIZE), intendedStart);
+      long startTimestamp = Time.monotonicNowNanos();
       fc.delete(file, true);
-      executionTime[DELETE] += (Time.monotonicNow() - startTimestamp);
-      totalNumOfOps[DELETE]++;
+      recordOp(DELETE, startTimestamp);
     }
     
     /** The list operation randomly picks a directory in the test space and
      * list the directory content.
      */
-    private void list() throws IOException {
-      String dirName = dirs.get(r.nextInt(dirs.size()));
-      long startTimestamp = Time.monotonicNow();
-      fc.listStatus(new Path(dirName));
-      executionTime[LIST] += (Time.monotonicNow() - startTimestamp);
-      totalNumOfOps[LIST]++;
+    private void list(long intendedStart) throws IOException {
+      Path dir = randomDir();
+      long startTimestamp = startOf(intendedStart);
+      fc.listStatus(dir);
+      recordOp(LIST, startTimestamp);
+    }
+
+    /** Pick a file of the current phase's part of the test space */
+    private Path randomFile() {
+      int i = currentIndex;
+      int[] range = fileRanges[i];
+      int file = filePickers[i].pick(rand);
+      return namespace.getFilePath(range == null ? file : range[0] + file);
+    }
+
+    /** Pick a directory of the current phase's part of the test space */
+    private Path randomDir() {
+      int i = currentIndex;
+      int[] range = dirRanges[i];
+      int dir = dirPickers[i].pick(rand);
+      return namespace.getDirPath(range == null ? dir : range[0] + dir);
+    }
+
+    /** Get the status of a randomly picked file */
+    private void getFileInfo(long intendedStart) throws IOException {
+      Path file = randomFile();
+      long startTimestamp = startOf(intendedStart);
+      fc.getFileStatus(file);
+      recordOp(GET_FILE_INFO, startTimestamp);
+    }
+
+    /** Move this thread's scratch file into a randomly picked directory.
+     * The name alternates between two suffixes so that the source and the
+     * destination always differ.
+     */
+    private void rename(long intendedStart) throws IOException {
+      Path src = scratchFile();
+      Path dst = new Path(randomDir(),
+          scratchName + "_" + (++numOfRenames % 2));
+      long startTimestamp = startOf(intendedStart);
+      fc.rename(src, dst, Options.Rename.OVERWRITE);
+      recordOp(RENAME, startTimestamp);
+      scratchFile = dst;
+    }
+
+    /** Create a new directory under a randomly picked directory and
+     * delete it again. The delete only cleans up and is not recorded.
+     */
+    private void mkdirs(long intendedStart) throws IOException {
+      Path dir = new Path(randomDir(),
+          hostname + id + UUID.randomUUID().toString());
+      long startTimestamp = startOf(intendedStart);
+      fc.mkdir(dir, FileContext.DEFAULT_PERM, true);
+      recordOp(MKDIRS, startTimestamp);
+      fc.delete(dir, true);
+    }
+
+    /** Set the permission of a randomly picked file to rw-r--r-- */
+    private void setPermission(long intendedStart) throws IOException {
+      Path file = randomFile();
+      long startTimestamp = startOf(intendedStart);
+      fc.setPermission(file, FILE_PERMISSION);
+      recordOp(SET_PERMISSION, startTimestamp);
+    }
+
+    /** Set the modification time of a randomly picked file to now */
+    private void setTimes(long intendedStart) throws IOException {
+      Path file = randomFile();
+      long startTimestamp = startOf(intendedStart);
+      fc.setTimes(file, Time.now(), -1);
+      recordOp(SET_TIMES, startTimestamp);
+    }
+
+    /** Append one block to this thread's scratch file */
+    private void append(long intendedStart) throws IOException {
+      Path file = scratchFile();
+      long startTimestamp = startOf(intendedStart);
+      FSDataOutputStream out = fc.create(file, EnumSet.of(CreateFlag.APPEND));
+      recordOp(APPEND, startTimestamp);
+      boolean isOutClosed = false;
+      try {
+        fileContent.write(out, BLOCK_SIZE);
+        startTimestamp = Time.monotonicNowNanos();
+        out.close();
+        recordOp(WRITE_CLOSE, startTimestamp);
+        isOutClosed = true;
+      } finally {
+        if (!isOutClosed) {
+          out.close();
+        }
+      }
+    }
+
+    /** Get the content summary of a randomly picked directory */
+    private void getContentSummary(long intendedStart) throws IOException {
+      Path dir = randomDir();
+      long startTimestamp = startOf(intendedStart);
+      fc.util().getContentSummary(dir);
+      recordOp(GET_CONTENT_SUMMARY, startTimestamp);
+    }
+
+    /** Renames and appends work on a file private to the thread, so that
+     * they never race with another thread. It is created on first use.
+     */
+    private Path scratchFile() throws IOException {
+      if (scratchFile == null) {
+        Path file = new Path(randomDir(),
+            scratchName + "_0");
+        genFile(file, BLOCK_SIZE, NOT_SCHEDULED);
+        scratchFile = file;
+      }
+      return scratchFile;
+    }
+
+    private void deleteScratchFile() {
+      if (scratchFile != null) {
+        try {
+          fc.delete(scratchFile, false);
+        } catch (IOException e) {
+          LOG.warn("Cannot delete scratch file " + scratchFile, e);
+        }
+      }
+    }
+
+    /** Account for one completed operation of type <code>op</code> that
+     * was issued at <code>startTimestamp</code> (in nanoseconds).
+     */
+    private void recordOp(int op, long startTimestamp) {
+      long elapsed = Time.monotonicNowNanos() - startTimestamp;
+      stats.record(op, elapsed);
+      if (opWarmUpStats != null) {
+        opWarmUpStats.record(op, elapsed);
+      }
     }
 
     /** Create a file with a length of <code>fileSize</code>.
-     * The file is filled with 'a'.
+     * The file is filled with fileContent.
      */
-    private void genFile(Path file, long fileSize) throws IOException {
-      long startTimestamp = Time.monotonicNow();
+    private void genFile(Path file, long fileSize, long intendedStart)
+        throws IOException {
+      long startTimestamp = startOf(intendedStart);
       FSDataOutputStream out = null;
       boolean isOutClosed = false;
       try {
@@ -324,20 +968,13 @@ public class LoadGenerator extends Configured {
             EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
             CreateOpts.createParent(), CreateOpts.bufferSize(4096),
             CreateOpts.repFac((short) 3));
-        executionTime[CREATE] += (Time.monotonicNow() - startTimestamp);
-        numOfOps[CREATE]++;
+        recordOp(CREATE, startTimestamp);
 
-        long i = fileSize;
-        while (i > 0) {
-          long s = Math.min(fileSize, WRITE_CONTENTS.length);
-          out.write(WRITE_CONTENTS, 0, (int) s);
-          i -= s;
-        }
+        fileContent.write(out, fileSize);
 
-        startTime = Time.monotonicNow();
+        startTimestamp = Time.monotonicNowNanos();
         out.close();
-        executionTime[WRITE_CLOSE] += (Time.monotonicNow() - startTime);
-        numOfOps[WRITE_CLOSE]++;
+        recordOp(WRITE_CLOSE, startTimestamp);
         isOutClosed = true;
       } finally {
         if (!isOutClosed && out != null) {
@@ -382,58 +1019,166 @@ public class LoadGenerator extends Configured {
   * It stops all the threads when the specified elapsed time is passed.
   */
   protected int generateLoadOnNN() throws InterruptedException {
-    int hostHashCode = hostname.hashCode();
-    if (seed == 0) {
-      r = new Random(System.currentTimeMillis()+hostHashCode);
-    } else {
-      r = new Random(seed+hostHashCode);
-    }
+    long baseSeed = baseSeed(seed == 0 ? System.currentTimeMillis() : seed,
+        hostname, taskId);
+    r = new Random(baseSeed);
     try {
-      fc = FileContext.getFileContext(getConf());
+      Configuration conf = getConf();
+      if (readMode == ReadMode.HEDGED) {
+        conf = new Configuration(conf);
+        conf.setLong(HdfsClientConfigKeys.HedgedRead.THRESHOLD_MILLIS_KEY,
+            hedgedReadThresholdMillis);
+        if (conf.getInt(
+            HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY, 0) <= 0) {
+          // let every client hedge one read at a time
+          conf.setInt(HdfsClientConfigKeys.HedgedRead.THREADPOOL_SIZE_KEY,
+              Math.max(numOfThreads, maxThreads));
+        }
+      }
+      fc = FileContext.getFileContext(conf);
     } catch (IOException ioe) {
       System.err.println("Can not initialize the file system: " + 
           ioe.getLocalizedMessage());
       return -1;
     }
     
-    int status = initFileDirTables();
+    int status = initOpTables();
+    if (status != 0) {
+      return status;
+    }
+    status = initFileDirTables();
+    if (status != 0) {
+      return status;
+    }
+    status = initPhaseRanges();
     if (status != 0) {
       return status;
     }
     barrier();
     
-    DFSClientThread[] threads = new DFSClientThread[numOfThreads];
-    for (int i=0; i<numOfThreads; i++) {
-      threads[i] = new DFSClientThread(i); 
-      threads[i].start();
+    // Enough clients for the busiest phase; the others are parked
+    int poolSize = 0;
+    for (int i = 0; i < durations.length; i++) {
+      poolSize = Math.max(poolSize, phaseThreads[i] == null ? numOfThreads :
+          Math.max(phaseThreads[i][0], phaseThreads[i][1]));
     }
-    
-    if (durations[0] > 0) {
-      if (durations.length == 1) {// There is a fixed run time
-        while (shouldRun) {
-          Thread.sleep(2000);
-          totalTime += 2;
-          if (totalTime >= durations[0] || stopFileCreated()) {
-            shouldRun = false;
-          }
+    poolSize = Math.max(poolSize, maxThreads);
+    if (search != null && search.getMode() == SaturationSearch.Mode.THREADS) {
+      poolSize = Math.max(poolSize, (int) search.getMax());
+    }
+    ThreadFactory threadFactory;
+    OpStats[] stats;
+    if (useVirtualThreads) {
+      try {
+        threadFactory = virtualThreadFactory();
+      } catch (ReflectiveOperationException e) {
+        System.err.println("Virtual threads require Java 21 or later: " + e);
+        return -1;
+      }
+      stats = new OpStats[Math.min(poolSize, STATS_STRIPES_PER_CARRIER
+          * Runtime.getRuntime().availableProcessors())];
+      pinningMonitor = new PinningMonitor();
+      pinningMonitor.start();
+    } else {
+      threadFactory = new ThreadFactory() {
+        private int count = 0;
+        @Override
+        public Thread newThread(Runnable task) {
+          return new Thread(task, "DFSClientThread-" + count++);
         }
-      } else {
-        // script run
+      };
+      stats = new OpStats[poolSize];
+    }
+    // A search waits for every step to settle instead
+    OpStats[] warmUpStats = warmUp == null || search != null ? null :
+        new OpStats[stats.length];
+    for (int i=0; i<stats.length; i++) {
+      stats[i] = new OpStats(TOTAL_OP_TYPES);
+      if (warmUpStats != null) {
+        warmUpStats[i] = new OpStats(TOTAL_OP_TYPES);
+      }
+    }
+    clientStats = stats;
+    warmingUp = warmUpStats != null;
+    SplittableRandom[] streams =
+        perThreadRandom ? perThreadStreams(baseSeed, poolSize) : null;
+    DFSClientThread[] clients = new DFSClientThread[poolSize];
+    Thread[] threads = new Thread[poolSize];
+    for (int i=0; i<poolSize; i++) {
+      clients[i] = new DFSClientThread(i,
+          perThreadRandom ? streams[i] : r, stats[i % stats.length],
+          warmUpStats == null ? null : warmUpStats[i % stats.length]);
+      threads[i] = threadFactory.newThread(clients[i]);
+    }
+    clientThreads = threads;
+    activeThreads = search != null
+        && search.getMode() == SaturationSearch.Mode.THREADS ?
+        (int) search.nextLevel() : phaseThreadCount(0, 0);
+    boolean openLoop = false;
+    for (int i = 0; i < durations.length; i++) {
+      openLoop = openLoop || isOpenLoop(i);
+    }
+    if (openLoop) {
+      // Before the clients start, so that none of them runs closed-loop
+      scheduler = new OpenLoopScheduler(phaseRate(0, 0), targetOpRates,
+          poissonArrivals, new SplittableRandom(~baseSeed));
+      scheduler.start();
+    }
+    for (int i=0; i<poolSize; i++) {
+      threads[i].start();
+    }
+    TimeSeriesSampler sampler = null;
+    if (timeSeriesFile != null) {
+      try {
+        sampler = new TimeSeriesSampler(stats, OP_NAMES,
+            TimeSeriesSampler.taskFile(new File(timeSeriesFile),
+                taskAttemptId), sampleInterval, taskAttemptId);
+        sampler.start();
+      } catch (IOException e) {
+        LOG.error("Cannot open the time series file " + timeSeriesFile, e);
+      }
+    }
 
-        while (shouldRun) {
-          Thread.sleep(durations[currentIndex] * 1000);
-          totalTime += durations[currentIndex];
-          // Are we on the final line of the script?
-          if ((currentIndex + 1) == durations.length || stopFileCreated()) {
-            shouldRun = false;
-          } else {
-            if (LOG.isDebugEnabled()) {
-              LOG.debug("Moving to index " + currentIndex + ": r = "
-                  + readProbs[currentIndex] + ", w = " + writeProbs
-                  + " for duration " + durations[currentIndex]);
-            }
-            currentIndex++;
-          }
+    if (exposeMetrics) {
+      DefaultMetricsSystem.initialize("LoadGenerator");
+      DefaultMetricsSystem.instance().register(
+          LoadGeneratorMetrics.RECORD_NAME, "Load generated on the NameNode",
+          new LoadGeneratorMetrics(stats, OP_NAMES, () -> activeThreads, () -> {
+                int failedClients = 0;
+                for (DFSClientThread client : clients) {
+                  failedClients += client.failed ? 1 : 0;
+                }
+                return failedClients;
+              }, sampleInterval));
+    }
+    ControlEndpoint endpoint = null;
+    if (controlPort >= 0) {
+      try {
+        endpoint = new ControlEndpoint(controlPort, new Controller());
+        System.out.println("Control endpoint listening on http://" +
+            "localhost:" + endpoint.getPort() + "/");
+      } catch (IOException e) {
+        LOG.error("Cannot start the control endpoint on port " + controlPort,
+            e);
+      }
+    }
+    try {
+      if (search != null) {
+        runSearch();
+      } else {
+        runPhases();
+      }
+    } finally {
+      if (endpoint != null) {
+        endpoint.close();
+      }
+      if (exposeMetrics) {
+        MetricsSystem metricsSystem = DefaultMetricsSystem.instance();
+        metricsSystem.publishMetricsNow();
+        metricsSystem.unregisterSource(LoadGeneratorMetrics.RECORD_NAME);
+        // In a map task the metrics system belongs to the task
+        if (taskId == null) {
+          DefaultMetricsSystem.shutdown();
         }
       }
     }
@@ -442,56 +1187,649 @@ public class LoadGenerator extends Configured {
       LOG.debug("Done with testing.  Waiting for threads to finish.");
     }
     
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+    for (Thread t : threads) {
+      LockSupport.unpark(t);
+    }
     boolean failed = false;
-    for (DFSClientThread thread : threads) {
-      thread.join();
-      for (int i=0; i<TOTAL_OP_TYPES; i++) {
-        executionTime[i] += thread.executionTime[i];
-        numOfOps[i] += thread.totalNumOfOps[i];
-      }
-      failed = failed || thread.failed;
+    for (int t=0; t<poolSize; t++) {
+      threads[t].join();
+      failed = failed || clients[t].failed;
     }
+    if (pinningMonitor != null) {
+      pinningMonitor.close();
+    }
+    if (sampler != null) {
+      sampler.shutdown();
+    }
+    collectStats(stats, warmUpStats);
     int exitCode = 0;
     if (failed) {
       exitCode = -ERR_TEST_FAILED;
     }
+    return exitCode;
+  }
+
+  /** Add what the clients recorded to the results. The stats include the
+   * warm-up, if there was one, and warmUpStats hold just the warm-up,
+   * which is moved to the warm-up results.
+   */
+  static void collectStats(OpStats[] stats, OpStats[] warmUpStats) {
+    for (OpStats s : stats) {
+      for (int i=0; i<TOTAL_OP_TYPES; i++) {
+        executionTime[i] += s.getExecutionTime(i);
+        numOfOps[i] += s.getNumOfOps(i);
+        latencies[i].add(s.getLatencies(i));
+      }
+    }
+    for (OpStats s : stats) {
+      for (int i=0; i<TOTAL_OP_TYPES; i++) {
+        numOfErrors[i] += s.getNumOfErrors(i);
+        numOfBytes[i] += s.getNumOfBytes(i);
+      }
+      addErrorLatencies(errorLatencies, s);
+    }
+    if (warmUpStats != null) {
+      // The totals include the warm-up; leave it out of the results
+      Map<String, LatencyHistogram> warmUpErrors =
+          new TreeMap<String, LatencyHistogram>();
+      for (OpStats s : warmUpStats) {
+        for (int i=0; i<TOTAL_OP_TYPES; i++) {
+          warmUpExecutionTime[i] += s.getExecutionTime(i);
+          warmUpNumOfOps[i] += s.getNumOfOps(i);
+          warmUpLatencies[i].add(s.getLatencies(i));
+          numOfErrors[i] -= s.getNumOfErrors(i);
+          numOfBytes[i] -= s.getNumOfBytes(i);
+        }
+        addErrorLatencies(warmUpErrors, s);
+      }
+      for (int i=0; i<TOTAL_OP_TYPES; i++) {
+        executionTime[i] -= warmUpExecutionTime[i];
+        numOfOps[i] -= warmUpNumOfOps[i];
+        latencies[i] = latencies[i].minus(warmUpLatencies[i]);
+      }
+      for (Map.Entry<String, LatencyHistogram> e : warmUpErrors.entrySet()) {
+        LatencyHistogram measured =
+            errorLatencies.get(e.getKey()).minus(e.getValue());
+        if (measured.getCount() == 0) {
+          errorLatencies.remove(e.getKey());
+        } else {
+          errorLatencies.put(e.getKey(), measured);
+        }
+      }
+    }
+    for (Map.Entry<String, LatencyHistogram> e : errorLatencies.entrySet()) {
+      numOfErrorsByCause.put(e.getKey(), e.getValue().getCount());
+    }
 
     totalOps = 0;
-    for (int i=0; i<TOTAL_OP_TYPES; i++) {
+    warmUpOps = 0;
+    for (int i=0; i<COUNTED_OP_TYPES; i++) {
       totalOps += numOfOps[i];
+      warmUpOps += warmUpNumOfOps[i];
     }
-    return exitCode;
   }
   
+  /** Step through the phases until the last one is over or the flag file
+   * shows up. A phase of duration 0 runs until the flag file shows up.
+   * The controller sleeps until the next phase boundary, ramp step or
+   * flag file check, so phases switch within milliseconds; a change made
+   * through the control endpoint wakes it up at once. The phase clock
+   * stops while the load is paused. With a control endpoint the flag file
+   * is only checked if it was given explicitly. The controller also ends
+   * the warm-up, after its fixed length or once the load is steady; the
+   * warm-up clock stops while the load is paused as well.
+   */
+  private void runPhases() throws InterruptedException {
+    controller = Thread.currentThread();
+    boolean checkFlagFile = controlPort < 0 || flagFileGiven;
+    long start = Time.monotonicNow();
+    long phaseStart = start;
+    long nextFlagCheck = start + FLAG_CHECK_MILLIS;
+    long pausedAt = -1;
+    long pausedMillis = 0;
+    double rate = phaseRate(0, 0);
+    long warmUpMillis = 0;
+    long lastSample = start;
+    long[] lastTotals = sumOfOps();
+    while (shouldRun) {
+      long now = Time.monotonicNow();
+      if (paused != (pausedAt >= 0)) {
+        if (pausedAt < 0) {
+          pausedAt = now;
+          LOG.info("Paused the load");
+        } else {
+          phaseStart += now - pausedAt;
+          pausedMillis += now - pausedAt;
+          pausedAt = -1;
+          LOG.info("Resumed the load");
+          if (steadyState != null) { // the load has to settle again
+            steadyState.reset();
+            lastSample = now;
+            lastTotals = sumOfOps();
+          }
+        }
+        if (scheduler != null) {
+          scheduler.setPaused(pausedAt >= 0);
+        }
+      }
+      if (warmingUp && pausedAt < 0) {
+        if (steadyState == null) {
+          if (now - start - pausedMillis >= warmUpSecs * 1000) {
+            warmUpMillis = endWarmUp(now - start - pausedMillis, "fixed");
+          }
+        } else if (now - lastSample >= WARM_UP_SAMPLE_MILLIS) {
+          long[] totals = sumOfOps();
+          long ops = totals[0] - lastTotals[0];
+          double avgLatency =
+              ops == 0 ? 0 : (double) (totals[1] - lastTotals[1]) / ops;
+          if (steadyState.addSample(ops * 1000.0 / (now - lastSample),
+              avgLatency)) {
+            warmUpMillis = endWarmUp(now - start - pausedMillis, String.format(
+                "steady state: throughput CV %.3f, latency CV %.3f",
+                steadyState.getThroughputCV(), steadyState.getLatencyCV()));
+          }
+          lastSample = now;
+          lastTotals = totals;
+        }
+      }
+      long phaseNow = pausedAt >= 0 ? pausedAt : now;
+      int i = currentIndex;
+      long phaseMillis = durations[i] * 1000;
+      if (phaseMillis > 0 && phaseNow - phaseStart >= phaseMillis) {
+        // Are we on the final line of the script?
+        if (i + 1 == durations.length) {
+          shouldRun = false;
+          break;
+        }
+        phaseStart += phaseMillis;
+        currentIndex = i + 1;
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("Moving to index " + currentIndex + ": r = "
+              + readProbs[currentIndex] + ", w = " + writeProbs[currentIndex]
+              + " for duration " + durations[currentIndex]);
+        }
+        continue;
+      }
+      double fraction =
+          phaseMillis > 0 ? (double) (phaseNow - phaseStart) / phaseMillis : 0;
+      int threads = threadsOverride;
+      setActiveThreads(pausedAt >= 0 ? 0 :
+          threads >= 0 ? threads : phaseThreadCount(i, fraction));
+      double targetRate = rateOverride;
+      if (targetRate < 0) {
+        targetRate = phaseRate(i, fraction);
+      }
+      if (scheduler != null && targetRate != rate) {
+        rate = targetRate;
+        scheduler.setMixRate(rate);
+      }
+      currentRate = rate;
+      if (checkFlagFile && now >= nextFlagCheck) {
+        if (stopFileCreated()) {
+          shouldRun = false;
+          break;
+        }
+        nextFlagCheck += FLAG_CHECK_MILLIS;
+      }
+      long wakeUp = checkFlagFile ? nextFlagCheck : now + FLAG_CHECK_MILLIS;
+      if (warmingUp && pausedAt < 0) {
+        wakeUp = Math.min(wakeUp, steadyState == null ?
+            start + pausedMillis + warmUpSecs * 1000 :
+            lastSample + WARM_UP_SAMPLE_MILLIS);
+      }
+      if (phaseMillis > 0 && pausedAt < 0) {
+        wakeUp = Math.min(wakeUp, phaseStart + phaseMillis);
+        if (isRamping(i)) {
+          wakeUp = Math.min(wakeUp, now + RAMP_STEP_MILLIS);
+        }
+      }
+      long sleep = wakeUp - Time.monotonicNow();
+      if (sleep > 0) {
+        LockSupport.parkNanos(sleep * 1000000L);
+      }
+    }
+    long end = Time.monotonicNow();
+    if (pausedAt >= 0) {
+      pausedMillis += end - pausedAt;
+    }
+    if (warmingUp) {
+      warmUpMillis = endWarmUp(end - start - pausedMillis,
+          steadyState == null ? "the run ended first" :
+          "no steady state reached");
+    }
+    warmUpTime = Math.round(warmUpMillis / 1000.0);
+    totalTime = Math.round((end - start - pausedMillis - warmUpMillis) / 1000.0);
+  }
+
+  /** Run the steps of the saturation search instead of the phases. Every
+   * step sets its level, waits up to three steady state windows for the
+   * load to become steady and then measures it for stepTime. A step cut
+   * short by the flag file is left out.
+   */
+  private void runSearch() throws InterruptedException {
+    long start = Time.monotonicNow();
+    search.printHeader(System.out);
+    double level;
+    while (shouldRun && (level = search.nextLevel()) >= 0) {
+      if (search.getMode() == SaturationSearch.Mode.THREADS) {
+        setActiveThreads((int) level);
+      } else {
+        scheduler.setMixRate(level);
+        currentRate = level;
+      }
+      SteadyStateDetector detector =
+          new SteadyStateDetector(steadyStateWindow, steadyStateCV);
+      long lastSample = Time.monotonicNow();
+      long settleEnd = lastSample
+          + SETTLE_WINDOWS * steadyStateWindow * WARM_UP_SAMPLE_MILLIS;
+      long[] lastTotals = sumOfOps();
+      boolean steady = false;
+      while (!steady && lastSample < settleEnd
+          && holdUntil(lastSample + WARM_UP_SAMPLE_MILLIS)) {
+        long now = Time.monotonicNow();
+        long[] totals = sumOfOps();
+        long ops = totals[0] - lastTotals[0];
+        steady = detector.addSample(ops * 1000.0 / (now - lastSample),
+            ops == 0 ? 0 : (double) (totals[1] - lastTotals[1]) / ops);
+        lastSample = now;
+        lastTotals = totals;
+      }
+      long measureStart = Time.monotonicNow();
+      long[] before = sumOfOps();
+      LatencyHistogram latenciesBefore = sumOfLatencies();
+      if (!holdUntil(measureStart + stepTime * 1000)) {
+        break;
+      }
+      double secs = (Time.monotonicNow() - measureStart) / 1000.0;
+      long[] after = sumOfOps();
+      LatencyHistogram latencies = sumOfLatencies().minus(latenciesBefore);
+      long ops = after[0] - before[0];
+      SaturationSearch.Step step = search.record(steady, ops / secs,
+          ops == 0 ? 0 : (after[1] - before[1]) / 1e6 / ops,
+          latencies.getValueAtPercentile(50) / 1e6,
+          latencies.getValueAtPercentile(99) / 1e6);
+      search.printStep(System.out, step);
+    }
+    shouldRun = false;
+    totalTime = Math.round((Time.monotonicNow() - start) / 1000.0);
+  }
+
+  /** Wait until <code>deadline</code>, looking for the flag file meanwhile
+   * @return false if the test is to stop
+   */
+  private boolean holdUntil(long deadline) throws InterruptedException {
+    long now;
+    while (shouldRun && (now = Time.monotonicNow()) < deadline) {
+      Thread.sleep(Math.min(deadline - now, FLAG_CHECK_MILLIS));
+      if (stopFileCreated()) {
+        shouldRun = false;
+      }
+    }
+    return shouldRun;
+  }
+
+  /** @return the latencies of all types of operation issued so far */
+  private static LatencyHistogram sumOfLatencies() {
+    LatencyHistogram sum = new LatencyHistogram();
+    for (OpStats s : clientStats) {
+      for (int op = 0; op < COUNTED_OP_TYPES; op++) {
+        sum.add(s.getLatencies(op));
+      }
+    }
+    return sum;
+  }
+
+  /** Add the error latencies of <code>stats</code> to <code>sum</code> */
+  private static void addErrorLatencies(Map<String, LatencyHistogram> sum,
+      OpStats stats) {
+    for (Map.Entry<String, LatencyHistogram> e :
+        stats.getErrorLatencies().entrySet()) {
+      sum.computeIfAbsent(e.getKey(), c -> new LatencyHistogram())
+          .add(e.getValue());
+    }
+  }
+
+  /** @return the class of the exception, or of the one a RemoteException
+   * stands for, as the cause of a failed operation
+   */
+  static String errorCause(IOException e) {
+    return e instanceof RemoteException ?
+        ((RemoteException) e).getClassName() : e.getClass().getName();
+  }
+
+  /** Let the operations that start from now on count as measured
+   * @return the length of the warm-up in milliseconds, <code>millis</code>
+   */
+  private static long endWarmUp(long millis, String how) {
+    warmingUp = false;
+    warmUpEnd = how;
+    LOG.info("Warm-up ended after " + millis + "ms (" + how + ")");
+    return millis;
+  }
+
+  /** @return the seed of the random streams of this process: the given
+   * seed plus the hash of the host name, and in a map task mixed with the
+   * task id as well, so that maps that run on the same host do not issue
+   * the same operations
+   */
+  static long baseSeed(long seed, String hostname, String taskId) {
+    long baseSeed = seed + hostname.hashCode();
+    return taskId == null ? baseSeed : baseSeed * 31 + taskId.hashCode();
+  }
+
+  /** With per-thread streams, thread i always gets the i-th split of a
+   * generator seeded with <code>baseSeed</code>, so its op sequence is the
+   * same in every run with the same seed no matter how the threads
+   * interleave.
+   */
+  static SplittableRandom[] perThreadStreams(long baseSeed, int n) {
+    SplittableRandom root = new SplittableRandom(baseSeed);
+    SplittableRandom[] streams = new SplittableRandom[n];
+    for (int i = 0; i < n; i++) {
+      streams[i] = root.split();
+    }
+    return streams;
+  }
+
+  /** @return the number of operations issued so far and their accumulated
+   * execution time in nanoseconds */
+  private static long[] sumOfOps() {
+    long[] totals = new long[2];
+    for (OpStats s : clientStats) {
+      for (int op = 0; op < COUNTED_OP_TYPES; op++) {
+        totals[0] += s.getNumOfOps(op);
+        totals[1] += s.getExecutionTime(op);
+      }
+    }
+    return totals;
+  }
+
+  /** The number of active clients <code>fraction</code> of the way
+   * through phase <code>i</code>
+   */
+  static int phaseThreadCount(int i, double fraction) {
+    int[] t = phaseThreads[i];
+    return t == null ? numOfThreads :
+        (int) Math.round(t[0] + (t[1] - t[0]) * fraction);
+  }
+
+  /** The open-loop mix rate <code>fraction</code> of the way through
+   * phase <code>i</code>
+   */
+  static double phaseRate(int i, double fraction) {
+    double[] rate = phaseRates[i];
+    return rate == null ? targetOpsPerSec :
+        rate[0] + (rate[1] - rate[0]) * fraction;
+  }
+
+  /** Phases without a rate run closed-loop unless the whole run is open */
+  private static boolean isOpenLoop(int i) {
+    return targetOpsPerSec > 0 || targetOpRates != null
+        || phaseRates[i] != null || rateOverride >= 0;
+  }
+
+  private static boolean isRamping(int i) {
+    return (phaseThreads[i] != null && phaseThreads[i][0] != phaseThreads[i][1])
+        || (phaseRates[i] != null && phaseRates[i][0] != phaseRates[i][1]);
+  }
+
+  /** Let the first <code>n</code> clients run. The others park themselves
+   * before their next operation; newly activated ones are woken up.
+   */
+  private static void setActiveThreads(int n) {
+    int previous = activeThreads;
+    if (n == previous) {
+      return;
+    }
+    activeThreads = n;
+    for (int t = previous; t < n; t++) {
+      LockSupport.unpark(clientThreads[t]);
+    }
+  }
+
+  /** Applies the requests of the control endpoint. The new settings take
+   * effect when the controller thread wakes up, which it is told to.
+   */
+  private static class Controller implements ControlEndpoint.Target {
+    @Override
+    public String getStatus() {
+      long ops = sumOfOps()[0];
+      int i = currentIndex;
+      double rate = rateOverride;
+      double[] mix = opMixOverride;
+      return "state: " + (!shouldRun ? "stopping" : paused ? "paused" :
+          warmingUp ? "warming up" : "running") + "\n" +
+          "phase: " + (i + 1) + " of " + durations.length + "\n" +
+          "threads: " + activeThreads + " active of " + clientThreads.length +
+          (threadsOverride >= 0 ? " (set)" : " (script)") + "\n" +
+          "rate: " + (scheduler == null || !isOpenLoop(i) ? "closed-loop" :
+              currentRate + " ops/s" + (rate >= 0 ? " (set)" : " (script)"))
+          + "\n" +
+          "ops: " + (mix != null ? formatOpMix(mix) + " (set)" : "script") +
+          "\n" +
+          "operations: " + ops + "\n";
+    }
+
+    @Override
+    public synchronized void set(Map<String, String> settings) {
+      int threads = threadsOverride;
+      double rate = rateOverride;
+      double[] mix = opMixOverride;
+      AliasTable table = opTableOverride;
+      for (Map.Entry<String, String> e : settings.entrySet()) {
+        String value = e.getValue();
+        boolean reset = value.equals("script");
+        try {
+          if (e.getKey().equals("threads")) {
+            threads = reset ? -1 : Integer.parseInt(value);
+            if (!reset && (threads < 0 || threads > clientThreads.length)) {
+              throw new IllegalArgumentException("threads must be between 0 "
+                  + "and " + clientThreads.length + "; start with -maxThreads "
+                  + "to allow more");
+            }
+          } else if (e.getKey().equals("rate")) {
+            if (!reset && scheduler == null) {
+              throw new IllegalArgumentException("The load is closed-loop; "
+                  + "start with -targetOpsPerSec, -targetOpRates or a rate= "
+                  + "phase to control the rate");
+            }
+            rate = reset ? -1 : Double.parseDouble(value);
+            if (!reset && !(rate >= 0)) {
+              throw new IllegalArgumentException(
+                  "The rate must not be negative: " + value);
+            }
+          } else if (e.getKey().equals("ops")) {
+            mix = reset ? null : parseOpMix(value);
+            if (!reset && mix == null) {
+              throw new IllegalArgumentException("Illegal op mix: " + value);
+            }
+            table = reset ? null : new AliasTable(mix);
+          } else {
+            throw new IllegalArgumentException("Unknown setting " + e.getKey()
+                + "; expected threads, rate or ops");
+          }
+        } catch (NumberFormatException ex) {
+          throw new IllegalArgumentException("Illegal value of " + e.getKey()
+              + ": " + value);
+        }
+      }
+      threadsOverride = threads;
+      rateOverride = rate;
+      opTableOverride = table;
+      opMixOverride = mix;
+      LOG.info("Control endpoint set " + settings);
+      wakeController();
+    }
+
+    @Override
+    public void pause() {
+      paused = true;
+      wakeController();
+    }
+
+    @Override
+    public void resume() {
+      paused = false;
+      wakeController();
+    }
+
+    @Override
+    public void stop() {
+      LOG.info("Stopping the test through the control endpoint.");
+      shouldRun = false;
+      wakeController();
+    }
+
+    private static void wakeController() {
+      Thread c = controller;
+      if (c != null) {
+        LockSupport.unpark(c);
+      }
+    }
+  }
+
+  /** Obtain <code>Thread.ofVirtual().name(...).factory()</code> through
+   * reflection so that the tool still builds and runs on Java 17.
+   */
+  private static ThreadFactory virtualThreadFactory()
+      throws ReflectiveOperationException {
+    Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+    Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+    builder = builderClass.getMethod("name", String.class, long.class)
+        .invoke(builder, "DFSClientVirtualThread-", 0L);
+    return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+  }
+
   protected static void printResults(PrintStream out) throws UnsupportedFileSystemException {
     out.println("Result of running LoadGenerator against fileSystem: " + 
     FileContext.getFileContext().getDefaultFileSystem().getUri());
     if (numOfOps[OPEN] != 0) {
       out.println("Average open execution time: " + 
-          (double)executionTime[OPEN]/numOfOps[OPEN] + "ms");
+          averageMillis(OPEN) + "ms");
     }
     if (numOfOps[LIST] != 0) {
       out.println("Average list execution time: " + 
-          (double)executionTime[LIST]/numOfOps[LIST] + "ms");
+          averageMillis(LIST) + "ms");
     }
     if (numOfOps[DELETE] != 0) {
       out.println("Average deletion execution time: " + 
-          (double)executionTime[DELETE]/numOfOps[DELETE] + "ms");
+          averageMillis(DELETE) + "ms");
       out.println("Average create execution time: " + 
-          (double)executionTime[CREATE]/numOfOps[CREATE] + "ms");
+          averageMillis(CREATE) + "ms");
       out.println("Average write_close execution time: " + 
-          (double)executionTime[WRITE_CLOSE]/numOfOps[WRITE_CLOSE] + "ms");
+          averageMillis(WRITE_CLOSE) + "ms");
+    }
+    for (int i=GET_FILE_INFO; i<TOTAL_OP_TYPES; i++) {
+      if (numOfOps[i] != 0) {
+        out.println("Average " + OP_NAMES[i] + " execution time: " +
+            averageMillis(i) + "ms");
+      }
     }
     if (totalTime != 0) { 
       out.println("Average operations per second: " + 
           (double)totalOps/totalTime +"ops/s");
     }
+    printLatencyPercentiles(out);
+    if (numOfBytes[READ_DATA] != 0) {
+      // The rate of one client while it reads, and of all of them
+      out.println("Read bandwidth: " +
+          (double)numOfBytes[READ_DATA]/executionTime[READ_DATA]*1e9 +
+          "bytes/s per reading thread" + (totalTime == 0 ? "" : ", " +
+          (double)numOfBytes[READ_DATA]/totalTime + "bytes/s in total") +
+          " (" + readMode.toString().toLowerCase() + " reads, " +
+          numOfBytes[READ_DATA] + " bytes)");
+    }
+    printErrors(out);
+    if (warmUpOps != 0 || warmUpTime != 0) {
+      out.println("Warm-up left out of the above: " + warmUpTime + "s, " +
+          warmUpOps + " operations, " +
+          (warmUpTime == 0 ? 0 : (double)warmUpOps/warmUpTime) + "ops/s" +
+          (warmUpEnd == null ? "" : " (" + warmUpEnd + ")"));
+      printLatencyPercentiles(out, "warm-up ", warmUpLatencies);
+    }
+    if (search != null) {
+      search.printResults(out);
+    }
+    if (scheduler != null) {
+      long runTime = totalTime + warmUpTime;
+      out.println("Open-loop arrivals (" +
+          (poissonArrivals ? "poisson" : "fixed") + "): scheduled " +
+          scheduler.getScheduledOps() + ", offered " +
+          (runTime == 0 ? 0 : (double)scheduler.getScheduledOps()/runTime) +
+          "ops/s, max backlog " + scheduler.getMaxBacklog() +
+          ", not started at stop " + scheduler.getBacklog());
+    }
+    if (pinningMonitor != null) {
+      pinningMonitor.printResults(out);
+    }
     out.println();
   }
+
+  /** Print the error rate of each type of operation that failed and the
+   * count and latencies of each cause */
+  private static void printErrors(PrintStream out) {
+    long totalErrors = 0;
+    for (int i=0; i<TOTAL_OP_TYPES; i++) {
+      totalErrors += numOfErrors[i];
+    }
+    if (totalErrors == 0) {
+      return;
+    }
+    out.println("Failed operations: " + totalErrors + " (" +
+        percentage(totalErrors, totalOps + totalErrors) + "%)" +
+        (totalTime == 0 ? "" : ", " + (double)totalErrors/totalTime +
+            "errors/s"));
+    for (int i=0; i<TOTAL_OP_TYPES; i++) {
+      if (numOfErrors[i] != 0) {
+        out.println(OP_NAMES[i] + " failures: " + numOfErrors[i] + " (" +
+            percentage(numOfErrors[i], numOfOps[i] + numOfErrors[i]) + "%)");
+      }
+    }
+    for (Map.Entry<String, Long> e : numOfErrorsByCause.entrySet()) {
+      LatencyHistogram h = errorLatencies.get(e.getKey());
+      out.println(e.getKey() + ": " + e.getValue() + (h == null ? "" :
+          String.format(", latency (ms): p50=%.3f p99=%.3f max=%.3f",
+              h.getValueAtPercentile(50) / 1e6,
+              h.getValueAtPercentile(99) / 1e6, h.getMax() / 1e6)));
+    }
+  }
+
+  private static String percentage(long part, long whole) {
+    return String.format("%.2f", 100.0 * part / whole);
+  }
+
+  private static double averageMillis(int op) {
+    return numOfOps[op] == 0 ? 0 : (double)executionTime[op]/numOfOps[op]/1e6;
+  }
+
+  /** Print p50/p90/p99/p99.9/max of each type of operation in milliseconds */
+  protected static void printLatencyPercentiles(PrintStream out) {
+    printLatencyPercentiles(out, "", latencies);
+  }
+
+  private static void printLatencyPercentiles(PrintStream out, String prefix,
+      LatencyHistogram[] histograms) {
+    for (int i=0; i<TOTAL_OP_TYPES; i++) {
+      LatencyHistogram h = histograms[i];
+      if (h.getCount() == 0) {
+        continue;
+      }
+      out.println(String.format(
+          "%s%s latency (ms): p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f",
+          prefix, OP_NAMES[i], h.getValueAtPercentile(50) / 1e6,
+          h.getValueAtPercentile(90) / 1e6, h.getValueAtPercentile(99) / 1e6,
+          h.getValueAtPercentile(99.9) / 1e6, h.getMax() / 1e6));
+    }
+  }
     
 
   /** Parse the command line arguments and initialize the data */
   protected int parseArgs(boolean runAsMapReduce, String[] args) throws IOException {
+   boolean readOrWriteProbGiven = false;
+   boolean searchSettingGiven = false;
    try {
       for (int i = 0; i < args.length; i++) { // parse command line
         if (args[i].equals("-scriptFile")) {
@@ -500,11 +1838,30 @@ public class LoadGenerator extends Configured {
             System.err.println("Can't specify elapsedTime and use script.");
             return -1;
           }
+          if (opWeights != null) {
+            System.err.println("Can't specify op weights and use script.");
+            return -1;
+          }
+        } else if (args[i].equals("-opWeights")) {
+          if (scriptFile != null || readOrWriteProbGiven) {
+            System.err.println(
+                "Can't specify op weights and probabilities or script.");
+            return -1;
+          }
+          opWeights = parseOpMix(args[++i]);
+          if (opWeights == null) {
+            return -1;
+          }
         } else if (args[i].equals("-readProbability")) {
+          readOrWriteProbGiven = true;
           if (scriptFile != null) {
             System.err.println("Can't specify probabilities and use script.");
             return -1;
           }
+          if (opWeights != null) {
+            System.err.println("Can't specify probabilities and op weights.");
+            return -1;
+          }
           readProbs[0] = Double.parseDouble(args[++i]);
           if (readProbs[0] < 0 || readProbs[0] > 1) {
             System.err.println( 
@@ -512,10 +1869,15 @@ public class LoadGenerator extends Configured {
             return -1;
           }
         } else if (args[i].equals("-writeProbability")) {
+          readOrWriteProbGiven = true;
           if (scriptFile != null) {
             System.err.println("Can't specify probabilities and use script.");
             return -1;
           }
+          if (opWeights != null) {
+            System.err.println("Can't specify probabilities and op weights.");
+            return -1;
+          }
           writeProbs[0] = Double.parseDouble(args[++i]);
           if (writeProbs[0] < 0 || writeProbs[0] > 1) {
             System.err.println( 
@@ -544,9 +1906,126 @@ public class LoadGenerator extends Configured {
         } else if (args[i].equals("-seed")) {
           seed = Long.parseLong(args[++i]);
           r = new Random(seed);
+        } else if (args[i].equals("-perThreadRandom")) {
+          perThreadRandom = true;
+        } else if (args[i].equals("-targetOpsPerSec")) {
+          targetOpsPerSec = Double.parseDouble(args[++i]);
+          if (targetOpsPerSec <= 0) {
+            System.err.println(
+                "The target rate must be positive: " + targetOpsPerSec);
+            return -1;
+          }
+        } else if (args[i].equals("-targetOpRates")) {
+          targetOpRates = parseOpMix(args[++i]);
+          if (targetOpRates == null) {
+            return -1;
+          }
+        } else if (args[i].equals("-arrivalProcess")) {
+          String process = args[++i];
+          if (!process.equals("fixed") && !process.equals("poisson")) {
+            System.err.println("Unknown arrival process: " + process);
+            return -1;
+          }
+          poissonArrivals = process.equals("poisson");
+        } else if (args[i].equals("-useVirtualThreads")) {
+          useVirtualThreads = true;
+        } else if (args[i].equals("-timeSeriesFile")) {
+          timeSeriesFile = args[++i];
+        } else if (args[i].equals("-sampleInterval")) {
+          sampleInterval = Long.parseLong(args[++i]);
+          if (sampleInterval <= 0) {
+            System.err.println(
+                "The sample interval must be positive: " + sampleInterval);
+            return -1;
+          }
+        } else if (args[i].equals("-crawlThreads")) {
+          crawlThreads = Integer.parseInt(args[++i]);
+          if (crawlThreads <= 0) {
+            System.err.println(
+                "Number of crawl threads must be positive: " + crawlThreads);
+            return -1;
+          }
+        } else if (args[i].equals("-namespaceIndex")) {
+          namespaceIndex = args[++i];
+        } else if (args[i].equals("-fileContent")) {
+          try {
+            fileContent = FileContent.parse(args[++i]);
+          } catch (IllegalArgumentException e) {
+            System.err.println("Illegal file content: " + e.getMessage());
+            return -1;
+          }
+        } else if (args[i].equals("-accessPattern")) {
+          try {
+            accessPattern = AccessPattern.parse(args[++i]);
+          } catch (IllegalArgumentException e) {
+            System.err.println("Illegal access pattern: " + e.getMessage());
+            return -1;
+          }
+        } else if (args[i].equals("-controlPort")) {
+          controlPort = Integer.parseInt(args[++i]);
+          if (controlPort < 0 || controlPort > 65535) {
+            System.err.println("Illegal control port: " + controlPort);
+            return -1;
+          }
+        } else if (args[i].equals("-metrics")) {
+          exposeMetrics = true;
+        } else if (args[i].equals("-saturationSearch")) {
+          saturationSearch = args[++i];
+        } else if (args[i].equals("-sloP99")) {
+          sloP99Millis = Double.parseDouble(args[++i]);
+          searchSettingGiven = true;
+          if (!(sloP99Millis > 0)) {
+            System.err.println("The SLO must be positive: " + sloP99Millis);
+            return -1;
+          }
+        } else if (args[i].equals("-stepTime")) {
+          stepTime = Long.parseLong(args[++i]);
+          searchSettingGiven = true;
+          if (stepTime <= 0) {
+            System.err.println("The step time must be positive: " + stepTime);
+            return -1;
+          }
+        } else if (args[i].equals("-continueOnError")) {
+          continueOnError = true;
+        } else if (args[i].equals("-errorBackoff")) {
+          String[] backoff = args[++i].split(",");
+          errorBackoffMillis = Long.parseLong(backoff[0]);
+          if (backoff.length > 1) {
+            maxErrorBackoffMillis = Long.parseLong(backoff[1]);
+          }
+          if (errorBackoffMillis <= 0 || backoff.length > 2
+              || maxErrorBackoffMillis < errorBackoffMillis) {
+            System.err.println("Illegal error backoff: " + args[i]);
+            return -1;
+          }
+        } else if (args[i].equals("-readMode")) {
+          if (!parseReadMode(args[++i])) {
+            System.err.println("Illegal read mode: " + args[i]);
+            return -1;
+          }
+        } else if (args[i].equals("-readBufferSize")) {
+          readBufferSize = Integer.parseInt(args[++i]);
+          if (readBufferSize <= 0) {
+            System.err.println(
+                "The read buffer size must be positive: " + readBufferSize);
+            return -1;
+          }
+        } else if (args[i].equals("-warmUp")) {
+          if (!parseWarmUp(args[++i])) {
+            System.err.println("Illegal warm-up: " + args[i]);
+            return -1;
+          }
+        } else if (args[i].equals("-maxThreads")) {
+          maxThreads = Integer.parseInt(args[++i]);
+          if (maxThreads <= 0) {
+            System.err.println(
+                "Number of threads must be positive: " + maxThreads);
+            return -1;
+          }
         }  else if (args[i].equals("-flagFile")) {
           LOG.info("got flagFile:" + flagFile);
           flagFile = new Path(args[++i]);
+          flagFileGiven = true;
         }else { 
           System.err.println(USAGE);
           return -1;
@@ -558,6 +2037,37 @@ public class LoadGenerator extends Configured {
       return -1;
     }
     
+    if (errorBackoffMillis > 0 && !continueOnError) {
+      System.err.println("The error backoff needs -continueOnError.");
+      return -1;
+    }
+    if (searchSettingGiven && saturationSearch == null) {
+      System.err.println("-sloP99 and -stepTime need -saturationSearch.");
+      return -1;
+    }
+    if (saturationSearch != null) {
+      if (runAsMapReduce || scriptFile != null || durations[0] > 0
+          || controlPort >= 0) {
+        System.err.println("A saturation search runs in a single process and "
+            + "can't be combined with a script, elapsedTime or a control "
+            + "port.");
+        return -1;
+      }
+      search = SaturationSearch.parse(saturationSearch, sloP99Millis);
+      if (search == null) {
+        System.err.println("Illegal saturation search: " + saturationSearch);
+        return -1;
+      }
+      if (search.getMode() == SaturationSearch.Mode.RATE) {
+        if (targetOpsPerSec > 0) {
+          System.err.println("Can't specify targetOpsPerSec and search the "
+              + "rate.");
+          return -1;
+        }
+        targetOpsPerSec = search.nextLevel();
+      }
+    }
+
     // Load Script File if not MR; for MR scriptFile is loaded by Mapper
     if (!runAsMapReduce && scriptFile != null) { 
       if(loadScriptFile(scriptFile, true) == -1)
@@ -575,19 +2085,137 @@ public class LoadGenerator extends Configured {
     return 0;
   }
 
+  /** Parse a -readMode setting: stream, pread, bytebuffer or
+   * <code>hedged[:thresholdMillis]</code>
+   * @return false if the setting cannot be parsed
+   */
+  static boolean parseReadMode(String spec) {
+    String[] parts = spec.split(":", 2);
+    try {
+      ReadMode mode = ReadMode.valueOf(parts[0].toUpperCase());
+      if (parts.length > 1) {
+        if (mode != ReadMode.HEDGED) {
+          return false;
+        }
+        long threshold = Long.parseLong(parts[1]);
+        if (threshold <= 0) {
+          return false;
+        }
+        hedgedReadThresholdMillis = threshold;
+      }
+      readMode = mode;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    return true;
+  }
+
+  /** @return the -readMode setting that parseReadMode takes back */
+  static String formatReadMode() {
+    return readMode.toString().toLowerCase() + (readMode == ReadMode.HEDGED ?
+        ":" + hedgedReadThresholdMillis : "");
+  }
+
+  /** Parse a -warmUp setting, either a number of seconds or
+   * <code>auto[:cv,windowSecs]</code> for a warm-up that lasts until the
+   * load is steady.
+   * @return false if the setting cannot be parsed
+   */
+  static boolean parseWarmUp(String spec) {
+    try {
+      if (spec.equals("auto") || spec.startsWith("auto:")) {
+        double cv = 0.05;
+        int window = 10;
+        if (spec.length() > "auto".length()) {
+          String[] params = spec.substring("auto:".length()).split(",");
+          if (params.length != 2) {
+            return false;
+          }
+          cv = Double.parseDouble(params[0]);
+          window = Integer.parseInt(params[1]);
+        }
+        // one sample per second
+        steadyState = new SteadyStateDetector(window, cv);
+        steadyStateCV = cv;
+        steadyStateWindow = window;
+        warmUpSecs = 0;
+      } else {
+        warmUpSecs = Long.parseLong(spec);
+        if (warmUpSecs <= 0) {
+          return false;
+        }
+        steadyState = null;
+      }
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+    warmUp = spec;
+    return true;
+  }
+
+  /** Parse per-kind values such as rates or weights of the form
+   * <code>read=100,write=10,list=50</code>. Kinds that are not mentioned
+   * get 0.
+   * @return the values indexed by op kind, or null if they cannot be parsed
+   */
+  protected static double[] parseOpMix(String spec) {
+    double[] values = new double[OP_KIND_NAMES.length];
+    double total = 0;
+    for (String entry : spec.split(",")) {
+      String[] kv = entry.split("=");
+      int kind = kv.length == 2 ?
+          Arrays.asList(OP_KIND_NAMES).indexOf(kv[0].trim()) : -1;
+      if (kind < 0) {
+        System.err.println("Illegal op entry: " + entry + ", expected one of "
+            + Arrays.toString(OP_KIND_NAMES) + "=<value>");
+        return null;
+      }
+      values[kind] = Double.parseDouble(kv[1].trim());
+      if (values[kind] < 0) {
+        System.err.println("The value of " + kv[0] + " must not be negative");
+        return null;
+      }
+      total += values[kind];
+    }
+    if (total <= 0) {
+      System.err.println("At least one op value must be positive: " + spec);
+      return null;
+    }
+    return values;
+  }
+
+  /** The inverse of {@link #parseOpMix(String)} */
+  protected static String formatOpMix(double[] values) {
+    StringBuilder spec = new StringBuilder();
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] > 0) {
+        spec.append(spec.length() == 0 ? "" : ",").append(OP_KIND_NAMES[i])
+            .append('=').append(values[i]);
+      }
+    }
+    return spec.toString();
+  }
+
   private static void parseScriptLine(String line, ArrayList<Long> duration,
-      ArrayList<Double> readProb, ArrayList<Double> writeProb) {
-    String[] a = line.split("\\s");
+      ArrayList<Double> readProb, ArrayList<Double> writeProb,
+      ArrayList<double[]> opWeight, ArrayList<int[]> threads,
+      ArrayList<double[]> rate, ArrayList<String> dir) {
+    String[] a = line.trim().split("\\s+");
 
-    if (a.length != 3) {
+    // The probabilities are optional, the settings come after them
+    int numOfProbs = 0;
+    while (1 + numOfProbs < a.length && !a[1 + numOfProbs].contains("=")) {
+      numOfProbs++;
+    }
+    if (numOfProbs != 0 && numOfProbs != 2) {
       throw new IllegalArgumentException("Incorrect number of parameters: "
           + line);
     }
 
     try {
       long d = Long.parseLong(a[0]);
-      double r = Double.parseDouble(a[1]);
-      double w = Double.parseDouble(a[2]);
+      double r = numOfProbs == 2 ? Double.parseDouble(a[1]) : readProbs[0];
+      double w = numOfProbs == 2 ? Double.parseDouble(a[2]) : writeProbs[0];
 
       Preconditions.checkArgument(d >= 0, "Invalid duration: " + d);
       Preconditions.checkArgument(0 <= r && r <= 1.0,
@@ -595,17 +2223,65 @@ public class LoadGenerator extends Configured {
       Preconditions.checkArgument(0 <= w && w <= 1.0,
           "The read probability must be [0, 1]: " + w);
 
+      double[] ops = null;
+      int[] t = null;
+      double[] opsPerSec = null;
+      String subdir = null;
+      for (int i = 1 + numOfProbs; i < a.length; i++) {
+        int eq = a[i].indexOf('=');
+        if (eq <= 0) {
+          throw new IllegalArgumentException("Unknown setting: " + a[i]);
+        }
+        String key = a[i].substring(0, eq);
+        String value = a[i].substring(eq + 1);
+        if (key.equals("threads")) {
+          double[] range = parseRange(value);
+          t = new int[] {(int) range[0], (int) range[1]};
+          Preconditions.checkArgument(t[0] == range[0] && t[1] == range[1]
+              && t[0] >= 0 && t[1] >= 0, "Invalid threads: " + value);
+        } else if (key.equals("rate")) {
+          opsPerSec = parseRange(value);
+          Preconditions.checkArgument(opsPerSec[0] >= 0 && opsPerSec[1] >= 0,
+              "Invalid rate: " + value);
+        } else if (key.equals("ops")) {
+          Preconditions.checkArgument(numOfProbs == 0,
+              "Can't specify probabilities and ops: " + line);
+          ops = parseOpMix(value);
+          Preconditions.checkArgument(ops != null, "Invalid ops: " + value);
+        } else if (key.equals("dirs")) {
+          subdir = value;
+        } else {
+          throw new IllegalArgumentException("Unknown setting: " + a[i]);
+        }
+      }
+
       readProb.add(r);
       duration.add(d);
       writeProb.add(w);
+      opWeight.add(ops);
+      threads.add(t);
+      rate.add(opsPerSec);
+      dir.add(subdir);
     } catch (NumberFormatException nfe) {
       throw new IllegalArgumentException("Cannot parse: " + line);
     }
   }
 
+  /** Parse <code>n</code> or a ramp <code>from..to</code> */
+  private static double[] parseRange(String value) {
+    int dots = value.indexOf("..");
+    if (dots < 0) {
+      double v = Double.parseDouble(value);
+      return new double[] {v, v};
+    }
+    return new double[] {Double.parseDouble(value.substring(0, dots)),
+        Double.parseDouble(value.substring(dots + 2))};
+  }
+
   /**
    * Read a script file of the form: lines of text with duration in seconds,
-   * read probability and write probability, separated by white space.
+   * read probability and write probability, separated by white space,
+   * optionally followed by per phase settings of the form key=value.
    * 
    * @param filename Script file
    * @return 0 if successful, -1 if not
@@ -633,6 +2309,10 @@ public class LoadGenerator extends Configured {
     ArrayList<Long> duration  = new ArrayList<Long>();
     ArrayList<Double> readProb  = new ArrayList<Double>();
     ArrayList<Double> writeProb = new ArrayList<Double>();
+    ArrayList<double[]> opWeight = new ArrayList<double[]>();
+    ArrayList<int[]> threads = new ArrayList<int[]>();
+    ArrayList<double[]> rate = new ArrayList<double[]>();
+    ArrayList<String> dir = new ArrayList<String>();
     int lineNum = 0;
     
     String line;
@@ -644,7 +2324,8 @@ public class LoadGenerator extends Configured {
         if (line.startsWith("#") || line.isEmpty()) // skip comments and blanks
           continue;
 
-        parseScriptLine(line, duration, readProb, writeProb);
+        parseScriptLine(line, duration, readProb, writeProb, opWeight,
+            threads, rate, dir);
       }
     } catch (IllegalArgumentException e) {
       System.err.println("Line: " + lineNum + ", " + e.getMessage());
@@ -663,6 +2344,10 @@ public class LoadGenerator extends Configured {
       readProbs[i] = readProb.get(i);
       writeProbs[i] = writeProb.get(i);
     }
+    phaseOpWeights = opWeight.toArray(new double[0][]);
+    phaseThreads = threads.toArray(new int[0][]);
+    phaseRates = rate.toArray(new double[0][]);
+    phaseDirs = dir.toArray(new String[0]);
     
     if(durations[0] == 0)
       System.err.println("Initial duration set to 0.  " +
@@ -671,22 +2356,95 @@ public class LoadGenerator extends Configured {
     return 0;
   }
   
-  /** Create a table that contains all directories under root and
-   * another table that contains all files under root.
+  /** Build the op mix of every step: from the step's ops or -opWeights if
+   * given, otherwise from the read and write probabilities with the rest
+   * going to list.
+   */
+  private static int initOpTables() {
+    opTables = new AliasTable[durations.length];
+    for (int i = 0; i < durations.length; i++) {
+      double[] weights =
+          phaseOpWeights[i] != null ? phaseOpWeights[i] : opWeights;
+      if (weights == null) {
+        weights = new double[OP_KIND_NAMES.length];
+        weights[READ_OP] = readProbs[i];
+        weights[WRITE_OP] = writeProbs[i];
+        weights[LIST_OP] = Math.max(0, 1 - readProbs[i] - writeProbs[i]);
+      }
+      try {
+        opTables[i] = new AliasTable(weights);
+      } catch (IllegalArgumentException e) {
+        System.err.println("Illegal op mix: " + e.getMessage());
+        return -1;
+      }
+    }
+    return 0;
+  }
+
+  /** Find the part of the namespace table that each phase with a dirs
+   * setting uses. The table is filled in depth-first order, so everything
+   * under a directory is one contiguous range of directories and files.
+   * Then build the pickers that choose among them by the access pattern.
    */
-  private int initFileDirTables() {
+  static int initPhaseRanges() {
+    fileRanges = new int[durations.length][];
+    dirRanges = new int[durations.length][];
+    filePickers = new AccessPattern.Picker[durations.length];
+    dirPickers = new AccessPattern.Picker[durations.length];
+    for (int i = 0; i < durations.length; i++) {
+      if (phaseDirs[i] == null) {
+        continue;
+      }
+      int dir = namespace.findDir(phaseDirs[i]);
+      if (dir == NamespaceTable.ROOT) {
+        continue;
+      }
+      if (dir >= 0) {
+        int to = namespace.dirEnd(dir);
+        dirRanges[i] = new int[] {dir, to};
+        fileRanges[i] = namespace.fileRange(dir, to);
+      }
+      if (fileRanges[i] == null) {
+        System.err.println("The test space " + new Path(root, phaseDirs[i])
+            + " of phase " + i + " needs both files and directories");
+        return -1;
+      }
+    }
+    for (int i = 0; i < durations.length; i++) {
+      filePickers[i] = accessPattern.newPicker(fileRanges[i] == null ?
+          namespace.numFiles() : fileRanges[i][1] - fileRanges[i][0]);
+      dirPickers[i] = accessPattern.newPicker(dirRanges[i] == null ?
+          namespace.numDirs() : dirRanges[i][1] - dirRanges[i][0]);
+    }
+    return 0;
+  }
+
+  /** Create a table that contains all directories under root and all
+   * files under root whose name starts with "_file_", either by crawling
+   * root or from a namespace index.
+   */
+  int initFileDirTables() {
+    long start = Time.monotonicNow();
     try {
-      initFileDirTables(root);
+      if (namespaceIndex != null) {
+        namespace = loadNamespaceIndex(fc.makeQualified(root));
+      } else {
+        namespace =
+            NamespaceTable.crawl(fc, fc.makeQualified(root), crawlThreads);
+      }
     } catch (IOException e) {
       System.err.println(e.getLocalizedMessage());
       e.printStackTrace();
       return -1;
     }
-    if (dirs.isEmpty()) {
+    LOG.info("Found " + namespace.numDirs() + " directories and " +
+        namespace.numFiles() + " files in " + (Time.monotonicNow() - start) +
+        "ms, taking about " + namespace.getMemorySize() / 1024 + "KB");
+    if (namespace.numDirs() == 0) {
       System.err.println("The test space " + root + " is empty");
       return -1;
     }
-    if (files.isEmpty()) {
+    if (namespace.numFiles() == 0) {
       System.err.println("The test space " + root + 
           " does not have any file");
       return -1;
@@ -694,26 +2452,23 @@ public class LoadGenerator extends Configured {
     return 0;
   }
   
-  /** Create a table that contains all directories under the specified path and
-   * another table that contains all files under the specified path and
-   * whose name starts with "_file_".
+  /** Map the namespace index if it is a local file, which a map task's
+   * copy from the distributed cache is, and read it otherwise.
    */
-  private void initFileDirTables(Path path) throws IOException {
-    FileStatus[] stats = fc.util().listStatus(path);
-
-    for (FileStatus stat : stats) {
-      if (stat.isDirectory()) {
-        dirs.add(stat.getPath().toString());
-        initFileDirTables(stat.getPath());
-      } else {
-        Path filePath = stat.getPath();
-        if (filePath.getName().startsWith(StructureGenerator.FILE_NAME_PREFIX)) {
-          files.add(filePath.toString());
-        }
-      }
+  private static NamespaceTable loadNamespaceIndex(Path qualifiedRoot)
+      throws IOException {
+    Path index = new Path(namespaceIndex);
+    String scheme = index.toUri().getScheme();
+    File localFile = new File(index.toUri().getPath());
+    if ("file".equals(scheme) || (scheme == null && localFile.isFile())) {
+      return NamespaceTable.map(qualifiedRoot, localFile);
+    }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(fc.open(index)))) {
+      return NamespaceTable.read(qualifiedRoot, in);
     }
   }
-  
+
   /** Returns when the current number of seconds from the epoch equals
    * the command line argument given by <code>-startTime</code>.
    * This allows multiple instances of this program, running on clock
@@ -21,18 +21,21 @@ package com.hadoop.test.loadgenerator;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.net.URI;
 import java.net.UnknownHostException;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileContext;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobClient;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.TextOutputFormat;
+import org.apache.hadoop.mapred.lib.LongSumReducer;
+import org.apache.hadoop.mapreduce.MRJobConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -56,34 +59,6 @@ public class LoadGeneratorMR extends LoadGenerator {
   final private static String USAGE = USAGE_CMD
 		  + "-mr <numMapJobs> <outputDir> [MUST be first 3 args] \n" + USAGE_ARGS ;
   
-  // Constant "keys" used to communicate between map and reduce
-  final private static Text OPEN_EXECTIME = new Text("OpenExecutionTime");
-  final private static Text NUMOPS_OPEN = new Text("NumOpsOpen");
-  final private static Text LIST_EXECTIME = new Text("ListExecutionTime");
-  final private static Text NUMOPS_LIST = new Text("NumOpsList");
-  final private static Text DELETE_EXECTIME = new Text("DeletionExecutionTime");
-  final private static Text NUMOPS_DELETE = new Text("NumOpsDelete");
-  final private static Text CREATE_EXECTIME = new Text("CreateExecutionTime");
-  final private static Text NUMOPS_CREATE = new Text("NumOpsCreate");
-  final private static Text WRITE_CLOSE_EXECTIME = new Text("WriteCloseExecutionTime");
-  final private static Text NUMOPS_WRITE_CLOSE = new Text("NumOpsWriteClose");
-  final private static Text ELAPSED_TIME = new Text("ElapsedTime");
-  final private static Text TOTALOPS = new Text("TotalOps");
-  
-  // Config keys to pass args from Main to the Job
-  final private static String LG_ROOT = "LG.root";
-  final private static String LG_SCRIPTFILE = "LG.scriptFile";
-  final private static String LG_MAXDELAYBETWEENOPS = "LG.maxDelayBetweenOps";
-  final private static String LG_NUMOFTHREADS = "LG.numOfThreads";
-  final private static String LG_READPR = "LG.readPr";
-  final private static String LG_WRITEPR = "LG.writePr";
-  final private static String LG_SEED = "LG.r";
-  final private static String LG_NUMMAPTASKS = "LG.numMapTasks";
-  final private static String LG_ELAPSEDTIME = "LG.elapsedTime";
-  final private static String LG_STARTTIME = "LG.startTime";
-  final private static String LG_FLAGFILE = "LG.flagFile";
-
-
   /** Constructor */
   public LoadGeneratorMR() throws IOException, UnknownHostException {
 	super();
@@ -172,34 +147,82 @@ public class LoadGeneratorMR extends LoadGenerator {
     
     // First set all the args of LoadGenerator as Conf vars to pass to MR tasks
 
-    conf.set(LG_ROOT , root.toString());
-    conf.setInt(LG_MAXDELAYBETWEENOPS, maxDelayBetweenOps);
-    conf.setInt(LG_NUMOFTHREADS, numOfThreads);
-    conf.set(LG_READPR, readProbs[0]+""); //Pass Double as string
-    conf.set(LG_WRITEPR, writeProbs[0]+""); //Pass Double as string
-    conf.setLong(LG_SEED, seed); //No idea what this is
-    conf.setInt(LG_NUMMAPTASKS, numMapTasks);
+    conf.set(LGConstants.LG_ROOT , root.toString());
+    conf.setInt(LGConstants.LG_MAXDELAYBETWEENOPS, maxDelayBetweenOps);
+    conf.setInt(LGConstants.LG_NUMOFTHREADS, numOfThreads);
+    conf.set(LGConstants.LG_READPR, readProbs[0]+""); //Pass Double as string
+    conf.set(LGConstants.LG_WRITEPR, writeProbs[0]+""); //Pass Double as string
+    if (opWeights != null) {
+      conf.set(LGConstants.LG_OPWEIGHTS, formatOpMix(opWeights));
+    }
+    conf.setLong(LGConstants.LG_SEED, seed); //No idea what this is
+    conf.setInt(LGConstants.LG_NUMMAPTASKS, numMapTasks);
     if (scriptFile == null && durations[0] <=0) {
       System.err.println("When run as a MapReduce job, elapsed Time or ScriptFile must be specified");
       System.exit(-1);
     }
-    conf.setLong(LG_ELAPSEDTIME, durations[0]);
-    conf.setLong(LG_STARTTIME, startTime); 
+    conf.setLong(LGConstants.LG_ELAPSEDTIME, durations[0]);
+    conf.setLong(LGConstants.LG_STARTTIME, startTime); 
     if (scriptFile != null) {
-      conf.set(LG_SCRIPTFILE , scriptFile);
+      conf.set(LGConstants.LG_SCRIPTFILE , scriptFile);
     }
-    conf.set(LG_FLAGFILE, flagFile.toString());
+    conf.set(LGConstants.LG_FLAGFILE, flagFile.toString());
+    conf.setBoolean(LGConstants.LG_PERTHREADRANDOM, perThreadRandom);
+    // Open-loop rates apply to each map task
+    conf.set(LGConstants.LG_TARGETOPSPERSEC, targetOpsPerSec+"");
+    if (targetOpRates != null) {
+      conf.set(LGConstants.LG_TARGETOPRATES, formatOpMix(targetOpRates));
+    }
+    conf.setBoolean(LGConstants.LG_POISSONARRIVALS, poissonArrivals);
+    conf.setBoolean(LGConstants.LG_USEVIRTUALTHREADS, useVirtualThreads);
+    if (timeSeriesFile != null) { // written locally by every map task
+      conf.set(LGConstants.LG_TIMESERIESFILE, timeSeriesFile);
+    }
+    conf.setLong(LGConstants.LG_SAMPLEINTERVAL, sampleInterval);
+    conf.setInt(LGConstants.LG_CRAWLTHREADS, crawlThreads);
+    conf.set(LGConstants.LG_FILECONTENT, fileContent.toString());
+    conf.set(LGConstants.LG_ACCESSPATTERN, accessPattern.toString());
+    conf.setBoolean(LGConstants.LG_METRICS, exposeMetrics);
+    if (warmUp != null) {
+      conf.set(LGConstants.LG_WARMUP, warmUp);
+    }
+    conf.setBoolean(LGConstants.LG_CONTINUEONERROR, continueOnError);
+    conf.setLong(LGConstants.LG_ERRORBACKOFF, errorBackoffMillis);
+    conf.setLong(LGConstants.LG_MAXERRORBACKOFF, maxErrorBackoffMillis);
+    conf.set(LGConstants.LG_READMODE, formatReadMode());
+    conf.setInt(LGConstants.LG_READBUFFERSIZE, readBufferSize);
     
     // Now set the necessary conf variables that apply to run MR itself.
     JobConf jobConf = new JobConf(conf, LoadGenerator.class);
     jobConf.setJobName("NNLoadGeneratorViaMR");
+    if (namespaceIndex != null) {
+      // Each map task memory-maps the copy localized on its node
+      Path index;
+      try {
+        index = FileContext.getFileContext(conf).makeQualified(
+            new Path(namespaceIndex));
+      } catch (IOException e) {
+        System.err.println("Cannot resolve the namespace index: " +
+            e.getMessage());
+        return -1;
+      }
+      String cacheFile = URI.create(index.toUri() + "#" +
+          LGConstants.NAMESPACE_INDEX_LINK).toString();
+      String cacheFiles = jobConf.get(MRJobConfig.CACHE_FILES);
+      jobConf.set(MRJobConfig.CACHE_FILES, cacheFiles == null ? cacheFile :
+          cacheFiles + "," + cacheFile);
+      jobConf.set(LGConstants.LG_NAMESPACEINDEX, index.toString());
+    }
     jobConf.setNumMapTasks(numMapTasks);
     jobConf.setNumReduceTasks(1); // 1 reducer to collect the results
 
     jobConf.setOutputKeyClass(Text.class);
-    jobConf.setOutputValueClass(IntWritable.class);
+    jobConf.setOutputValueClass(LongWritable.class);
 
     jobConf.setMapperClass(com.hadoop.test.loadgenerator.MapperThatRunsNNLoadGenerator.class);
+    // Pre-aggregate the per-map metrics so the reducer gets one value per key
+    // from each node instead of one per map.
+    jobConf.setCombinerClass(LongSumReducer.class);
     jobConf.setReducerClass(com.hadoop.test.loadgenerator.ReducerThatCollectsLGdata.class);
 
     jobConf.setInputFormat(com.hadoop.test.loadgenerator.DummyInputFormat.class);
@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hadoop.test.loadgenerator;
+
+import java.util.function.IntSupplier;
+
+import org.apache.hadoop.metrics2.MetricsCollector;
+import org.apache.hadoop.metrics2.MetricsInfo;
+import org.apache.hadoop.metrics2.MetricsRecordBuilder;
+import org.apache.hadoop.metrics2.MetricsSource;
+import org.apache.hadoop.metrics2.lib.Interns;
+import org.apache.hadoop.util.Time;
+
+/**
+ * Exposes the statistics of a running LoadGenerator as a metrics2 source,
+ * so that sinks and JMX see what the clients observe while they run.
+ *
+ * For every type of operation there are the cumulative counters
+ * <code>&lt;Op&gt;NumOps</code> and <code>&lt;Op&gt;Errors</code>, and
+ * gauges of the last window: <code>&lt;Op&gt;OpsPerSec</code>,
+ * <code>&lt;Op&gt;AvgTimeMs</code> and the 50th, 90th, 99th and 99.9th
+ * percentile and the maximum latency in milliseconds. Besides, there are
+ * the number of active and failed clients.
+ *
+ * A window is the time between two rolls, which happen when the metrics
+ * are read and the last window is at least <code>windowSecs</code> old, so
+ * every reader sees a full window no matter how often it polls. The
+ * clients are not involved: rolling only reads their lock-free OpStats and
+ * subtracts the totals of the previous roll.
+ */
+public class LoadGeneratorMetrics implements MetricsSource {
+  static final String RECORD_NAME = "LoadGenerator";
+  private static final String CONTEXT = "loadgenerator";
+  private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+  private static final String[] PERCENTILE_NAMES =
+      {"50th", "90th", "99th", "999th"};
+
+  private final OpStats[] stats;
+  private final IntSupplier activeThreads;
+  private final IntSupplier failedClients;
+  private final long windowMillis;
+  private final MetricsInfo[] numOpsInfo;
+  private final MetricsInfo[] errorsInfo;
+  private final MetricsInfo[] opsPerSecInfo;
+  private final MetricsInfo[] avgTimeInfo;
+  private final MetricsInfo[][] percentileInfo;
+  private final MetricsInfo[] maxInfo;
+
+  /** Totals at the last roll */
+  private final long[] rollNumOfOps;
+  private final long[] rollExecutionTime;
+  private final LatencyHistogram[] rollLatencies;
+  private long rollTime;
+  /** The last full window */
+  private final double[] opsPerSec;
+  private final double[] avgTimeMs;
+  private final LatencyHistogram[] windowLatencies;
+
+  /**
+   * @param stats the statistics of all the clients
+   * @param opNames the names of the types of operation
+   * @param activeThreads the number of clients issuing operations
+   * @param failedClients the number of clients that stopped on an error
+   * @param windowSecs the least length of a window in seconds
+   */
+  LoadGeneratorMetrics(OpStats[] stats, String[] opNames,
+      IntSupplier activeThreads, IntSupplier failedClients, long windowSecs) {
+    this.stats = stats;
+    this.activeThreads = activeThreads;
+    this.failedClients = failedClients;
+    this.windowMillis = windowSecs * 1000;
+    int n = opNames.length;
+    numOpsInfo = new MetricsInfo[n];
+    errorsInfo = new MetricsInfo[n];
+    opsPerSecInfo = new MetricsInfo[n];
+    avgTimeInfo = new MetricsInfo[n];
+    percentileInfo = new MetricsInfo[n][PERCENTILES.length];
+    maxInfo = new MetricsInfo[n];
+    for (int op = 0; op < n; op++) {
+      String name = metricName(opNames[op]);
+      String desc = opNames[op];
+      numOpsInfo[op] = Interns.info(name + "NumOps",
+          "Number of " + desc + " operations");
+      errorsInfo[op] = Interns.info(name + "Errors",
+          "Number of failed " + desc + " operations");
+      opsPerSecInfo[op] = Interns.info(name + "OpsPerSec",
+          "Rate of " + desc + " operations in the last window");
+      avgTimeInfo[op] = Interns.info(name + "AvgTimeMs",
+          "Average latency of " + desc + " in the last window");
+      for (int p = 0; p < PERCENTILES.length; p++) {
+        percentileInfo[op][p] = Interns.info(name + PERCENTILE_NAMES[p]
+            + "PercentileLatencyMs", PERCENTILES[p] + " percentile latency of "
+            + desc + " in the last window");
+      }
+      maxInfo[op] = Interns.info(name + "MaxLatencyMs",
+          "Maximum latency of " + desc + " in the last window");
+    }
+    rollNumOfOps = new long[n];
+    rollExecutionTime = new long[n];
+    rollLatencies = new LatencyHistogram[n];
+    opsPerSec = new double[n];
+    avgTimeMs = new double[n];
+    windowLatencies = new LatencyHistogram[n];
+    for (int op = 0; op < n; op++) {
+      rollLatencies[op] = new LatencyHistogram();
+      windowLatencies[op] = new LatencyHistogram();
+    }
+    rollTime = Time.monotonicNow();
+  }
+
+  /** @return an op name such as write_close as a metric name: WriteClose */
+  static String metricName(String opName) {
+    StringBuilder name = new StringBuilder();
+    boolean upper = true;
+    for (char c : opName.toCharArray()) {
+      if (c == '_') {
+        upper = true;
+      } else {
+        name.append(upper ? Character.toUpperCase(c) : c);
+        upper = false;
+      }
+    }
+    return name.toString();
+  }
+
+  @Override
+  public synchronized void getMetrics(MetricsCollector collector,
+      boolean all) {
+    long now = Time.monotonicNow();
+    if (now - rollTime >= windowMillis) {
+      roll(now);
+    }
+    int failed = failedClients.getAsInt();
+    MetricsRecordBuilder rb = collector.addRecord(RECORD_NAME)
+        .setContext(CONTEXT)
+        .addGauge(Interns.info("ActiveThreads",
+            "Number of clients issuing operations"), activeThreads.getAsInt())
+        .addGauge(Interns.info("FailedClients",
+            "Number of clients that stopped on an error"), failed);
+    for (int op = 0; op < numOpsInfo.length; op++) {
+      long numOfOps = 0;
+      long numOfErrors = 0;
+      for (OpStats s : stats) {
+        numOfOps += s.getNumOfOps(op);
+        numOfErrors += s.getNumOfErrors(op);
+      }
+      rb.addCounter(numOpsInfo[op], numOfOps)
+          .addCounter(errorsInfo[op], numOfErrors)
+          .addGauge(opsPerSecInfo[op], opsPerSec[op])
+          .addGauge(avgTimeInfo[op], avgTimeMs[op]);
+      LatencyHistogram h = windowLatencies[op];
+      for (int p = 0; p < PERCENTILES.length; p++) {
+        rb.addGauge(percentileInfo[op][p],
+            h.getValueAtPercentile(PERCENTILES[p]) / 1e6);
+      }
+      rb.addGauge(maxInfo[op], h.getMax() / 1e6);
+    }
+  }
+
+  /** Make the time since the last roll the new window */
+  private void roll(long now) {
+    double windowSecs = Math.max(now - rollTime, 1) / 1000.0;
+    for (int op = 0; op < rollNumOfOps.length; op++) {
+      long numOfOps = 0;
+      long executionTime = 0;
+      LatencyHistogram latencies = new LatencyHistogram();
+      for (OpStats s : stats) {
+        numOfOps += s.getNumOfOps(op);
+        executionTime += s.getExecutionTime(op);
+        latencies.add(s.getLatencies(op));
+      }
+      long count = numOfOps - rollNumOfOps[op];
+      opsPerSec[op] = count / windowSecs;
+      avgTimeMs[op] = count == 0 ? 0 :
+          (double) (executionTime - rollExecutionTime[op]) / count / 1e6;
+      windowLatencies[op] = latencies.minus(rollLatencies[op]);
+      rollNumOfOps[op] = numOfOps;
+      rollExecutionTime[op] = executionTime;
+      rollLatencies[op] = latencies;
+    }
+    rollTime = now;
+  }
+}
@@ -0,0 +1,85 @@
+package com.hadoop.test.loadgenerator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.util.Time;
+
+
+/** Creates the directories and then the files of one structure shard and
+ * reports how many it created, and how fast, in the DataGeneratorMR
+ * counters. The parent of an entry may belong to another shard that has
+ * not been created yet; DataGenerator creates missing parents, so the
+ * shards do not depend on each other.
+ */
+public class MapperThatRunsDataGenerator extends MapReduceBase implements Mapper<LongWritable, Text, Text, LongWritable> {
+  private JobConf jobConf;
+
+  @Override
+  public void configure(JobConf job) {
+    this.jobConf = job;
+  }
+
+  @Override
+  public void map(LongWritable key, Text value,
+                  OutputCollector<Text, LongWritable> output, Reporter reporter) throws IOException {
+    int shard = ((StructureShardSplit) reporter.getInputSplit()).getShard();
+    Path shardDir = new Path(jobConf.get(LGConstants.DG_SHARDDIR));
+    FileContent content;
+    try {
+      content = FileContent.parse(
+          jobConf.get(LGConstants.DG_FILECONTENT, "constant"));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Illegal file content: " + e.getMessage());
+    }
+    FileContext fc = FileContext.getFileContext(jobConf);
+    DataGenerator generator = new DataGenerator(fc,
+        new Path(jobConf.get(LGConstants.DG_ROOT,
+            DataGenerator.DEFAULT_ROOT.toString())),
+        jobConf.getInt(LGConstants.DG_NUMOFTHREADS, 1), content);
+
+    ProgressThread progressThread = new ProgressThread(reporter);
+    progressThread.start();
+    long start = Time.monotonicNow();
+    try {
+      // All directories of the shard first, then its files
+      createAll(generator, fc, DataGeneratorMR.dirShard(shardDir, shard),
+          true);
+      createAll(generator, fc, DataGeneratorMR.fileShard(shardDir, shard),
+          false);
+    } finally {
+      progressThread.stopRunning();
+      progressThread.interrupt();
+      try { progressThread.join(); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+    }
+    long elapsed = Math.max(Time.monotonicNow() - start, 1);
+    long entries = generator.getNumDirs() + generator.getNumFiles();
+    reporter.incrCounter(DataGeneratorMR.Counter.DIRECTORIES_CREATED,
+        generator.getNumDirs());
+    reporter.incrCounter(DataGeneratorMR.Counter.FILES_CREATED,
+        generator.getNumFiles());
+    reporter.incrCounter(DataGeneratorMR.Counter.ENTRIES_PER_SEC,
+        entries * 1000 / elapsed);
+    System.out.println("Created " + generator.getNumDirs() +
+        " directories and " + generator.getNumFiles() + " files of shard " +
+        shard + " in " + elapsed + "ms");
+  }
+
+  private static void createAll(DataGenerator generator, FileContext fc,
+      Path shardFile, boolean isDir) throws IOException {
+    BufferedReader in = new BufferedReader(new InputStreamReader(
+        fc.open(shardFile), StandardCharsets.UTF_8));
+    try {
+      generator.createAll(in, isDir);
+    } finally {
+      in.close();
+    }
+  }
+}
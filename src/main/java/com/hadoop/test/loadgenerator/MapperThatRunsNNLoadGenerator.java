@@ -1,30 +1,122 @@
 package com.hadoop.test.loadgenerator;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Map;
 
-import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapreduce.MRJobConfig;
 
 
-public class MapperThatRunsNNLoadGenerator extends MapReduceBase implements Mapper<LongWritable, Text, Text, IntWritable> {
+public class MapperThatRunsNNLoadGenerator extends MapReduceBase implements Mapper<LongWritable, Text, Text, LongWritable> {
   private JobConf jobConf;
 
   @Override
   public void configure(org.apache.hadoop.mapred.JobConf job) {
     this.jobConf = job;
+    getArgsFromConfiguration(jobConf);
+  }
+
+  /** Set the LoadGenerator arguments that LoadGeneratorMR passed through
+   * the job configuration.
+   */
+  private void getArgsFromConfiguration(Configuration conf) {
+    LoadGenerator.maxDelayBetweenOps =
+        conf.getInt(LGConstants.LG_MAXDELAYBETWEENOPS, LoadGenerator.maxDelayBetweenOps);
+    LoadGenerator.numOfThreads =
+        conf.getInt(LGConstants.LG_NUMOFTHREADS, LoadGenerator.numOfThreads);
+    LoadGenerator.readProbs[0] = Double.parseDouble(
+        conf.get(LGConstants.LG_READPR, LoadGenerator.readProbs[0] + ""));
+    LoadGenerator.writeProbs[0] = Double.parseDouble(
+        conf.get(LGConstants.LG_WRITEPR, LoadGenerator.writeProbs[0] + ""));
+    String opWeights = conf.get(LGConstants.LG_OPWEIGHTS);
+    if (opWeights != null) {
+      LoadGenerator.opWeights = LoadGenerator.parseOpMix(opWeights);
+    }
+    LoadGenerator.seed = conf.getLong(LGConstants.LG_SEED, LoadGenerator.seed);
+    LoadGenerator.taskId = conf.get(MRJobConfig.TASK_ID);
+    LoadGenerator.taskAttemptId = conf.get(MRJobConfig.TASK_ATTEMPT_ID);
+    LoadGenerator.perThreadRandom =
+        conf.getBoolean(LGConstants.LG_PERTHREADRANDOM, LoadGenerator.perThreadRandom);
+    LoadGenerator.targetOpsPerSec = Double.parseDouble(
+        conf.get(LGConstants.LG_TARGETOPSPERSEC, LoadGenerator.targetOpsPerSec + ""));
+    String opRates = conf.get(LGConstants.LG_TARGETOPRATES);
+    if (opRates != null) {
+      LoadGenerator.targetOpRates = LoadGenerator.parseOpMix(opRates);
+    }
+    LoadGenerator.poissonArrivals =
+        conf.getBoolean(LGConstants.LG_POISSONARRIVALS, LoadGenerator.poissonArrivals);
+    LoadGenerator.useVirtualThreads =
+        conf.getBoolean(LGConstants.LG_USEVIRTUALTHREADS, LoadGenerator.useVirtualThreads);
+    LoadGenerator.timeSeriesFile =
+        conf.get(LGConstants.LG_TIMESERIESFILE, LoadGenerator.timeSeriesFile);
+    LoadGenerator.sampleInterval =
+        conf.getLong(LGConstants.LG_SAMPLEINTERVAL, LoadGenerator.sampleInterval);
+    LoadGenerator.crawlThreads =
+        conf.getInt(LGConstants.LG_CRAWLTHREADS, LoadGenerator.crawlThreads);
+    // An illegal setting fails the task instead of running something else
+    LoadGenerator.fileContent = FileContent.parse(conf.get(
+        LGConstants.LG_FILECONTENT, LoadGenerator.fileContent.toString()));
+    LoadGenerator.exposeMetrics =
+        conf.getBoolean(LGConstants.LG_METRICS, LoadGenerator.exposeMetrics);
+    LoadGenerator.accessPattern = AccessPattern.parse(conf.get(
+        LGConstants.LG_ACCESSPATTERN, LoadGenerator.accessPattern.toString()));
+    String warmUp = conf.get(LGConstants.LG_WARMUP);
+    if (warmUp != null && !LoadGenerator.parseWarmUp(warmUp)) {
+      throw new IllegalArgumentException("Illegal warm-up in " +
+          LGConstants.LG_WARMUP + ": " + warmUp);
+    }
+    LoadGenerator.continueOnError = conf.getBoolean(
+        LGConstants.LG_CONTINUEONERROR, LoadGenerator.continueOnError);
+    LoadGenerator.errorBackoffMillis = conf.getLong(
+        LGConstants.LG_ERRORBACKOFF, LoadGenerator.errorBackoffMillis);
+    LoadGenerator.maxErrorBackoffMillis = conf.getLong(
+        LGConstants.LG_MAXERRORBACKOFF, LoadGenerator.maxErrorBackoffMillis);
+    String readMode = conf.get(LGConstants.LG_READMODE);
+    if (readMode != null && !LoadGenerator.parseReadMode(readMode)) {
+      throw new IllegalArgumentException("Illegal read mode in " +
+          LGConstants.LG_READMODE + ": " + readMode);
+    }
+    LoadGenerator.readBufferSize = conf.getInt(
+        LGConstants.LG_READBUFFERSIZE, LoadGenerator.readBufferSize);
+    String namespaceIndex = conf.get(LGConstants.LG_NAMESPACEINDEX);
+    if (namespaceIndex != null) {
+      File localCopy = new File(LGConstants.NAMESPACE_INDEX_LINK);
+      LoadGenerator.namespaceIndex =
+          localCopy.isFile() ? localCopy.getPath() : namespaceIndex;
+    }
+    LoadGenerator.root =
+        new Path(conf.get(LGConstants.LG_ROOT, LoadGenerator.root.toString()));
+    LoadGenerator.durations[0] = conf.getLong(LGConstants.LG_ELAPSEDTIME, 0);
+    LoadGenerator.startTime =
+        conf.getLong(LGConstants.LG_STARTTIME, LoadGenerator.startTime);
+    LoadGenerator.scriptFile = conf.get(LGConstants.LG_SCRIPTFILE, null);
+    LoadGenerator.flagFile = new Path(
+        conf.get(LGConstants.LG_FLAGFILE, LoadGenerator.FLAGFILE_DEFAULT));
   }
 
   @Override
   public void map(LongWritable key, Text value,
-                  OutputCollector<Text, IntWritable> output, Reporter reporter) throws IOException {
+                  OutputCollector<Text, LongWritable> output, Reporter reporter) throws IOException {
     com.hadoop.test.loadgenerator.ProgressThread progressThread =
         new com.hadoop.test.loadgenerator.ProgressThread(reporter);
     progressThread.start();
+    int exitCode = -1;
     try {
+      if (LoadGenerator.scriptFile != null
+          && LoadGenerator.loadScriptFile(LoadGenerator.scriptFile, false) < 0) {
+        throw new IOException("Error in scriptFile " + LoadGenerator.scriptFile);
+      }
+      if (LoadGenerator.durations[0] <= 0) {
+        throw new IOException(
+            "A duration of zero or less is not allowed when running via MapReduce.");
+      }
       LoadGenerator loader = new LoadGenerator(jobConf);
-      loader.generateLoadOnNN();
+      exitCode = loader.generateLoadOnNN();
       System.out.println("Finished generating load on NN, sending results to the reducer");
     } catch (Exception e) {
       System.err.println("Load generation failed: " + e.getMessage());
@@ -32,6 +124,34 @@ public class MapperThatRunsNNLoadGenerator extends MapReduceBase implements Mapp
       progressThread.stopRunning();
       try { progressThread.join(); } catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
     }
-    output.collect(new Text("Status"), new IntWritable(0));
+
+    output.collect(LGConstants.NUM_MAPS, new LongWritable(1));
+    output.collect(LGConstants.NUM_FAILED_MAPS, new LongWritable(exitCode == 0 ? 0 : 1));
+    if (exitCode != 0) {
+      // A failed map ran for less than its duration, if at all, and would
+      // pull the mean elapsed time down; only the failure is counted
+      return;
+    }
+
+    // Send the results of the load generation to the reducer
+    for (int i = 0; i < LoadGenerator.TOTAL_OP_TYPES; i++) {
+      output.collect(LGConstants.EXECTIME_KEYS[i],
+          new LongWritable(LoadGenerator.executionTime[i]));
+      output.collect(LGConstants.NUMOPS_KEYS[i],
+          new LongWritable(LoadGenerator.numOfOps[i]));
+      output.collect(LGConstants.NUMERRORS_KEYS[i],
+          new LongWritable(LoadGenerator.numOfErrors[i]));
+    }
+    for (Map.Entry<String, Long> e :
+        LoadGenerator.numOfErrorsByCause.entrySet()) {
+      output.collect(new Text(LGConstants.NUM_ERRORS_BY_CAUSE + e.getKey()),
+          new LongWritable(e.getValue()));
+    }
+    output.collect(LGConstants.TOTALOPS, new LongWritable(LoadGenerator.totalOps));
+    output.collect(LGConstants.READ_BYTES,
+        new LongWritable(LoadGenerator.numOfBytes[LoadGenerator.READ_DATA]));
+    output.collect(LGConstants.ELAPSED_TIME, new LongWritable(LoadGenerator.totalTime));
+    output.collect(LGConstants.WARMUP_OPS, new LongWritable(LoadGenerator.warmUpOps));
+    output.collect(LGConstants.WARMUP_TIME, new LongWritable(LoadGenerator.warmUpTime));
   }
 }
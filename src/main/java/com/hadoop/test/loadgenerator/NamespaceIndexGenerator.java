@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hadoop.test.loadgenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumSet;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.Options.CreateOpts;
+
+/**
+ * This program builds the namespace index that LoadGenerator can load
+ * with -namespaceIndex instead of crawling its test space at every start.
+ * The index holds the directories and the "_file_" files of the test space
+ * relative to its root. It is built either from the structure files that
+ * StructureGenerator wrote and DataGenerator created the test space from,
+ * which needs no NameNode at all, or by crawling an existing test space.
+ *
+ * The synopsis of the command is
+ * java NamespaceIndexGenerator
+ *   -out <indexFile>: the index file to write, on the default file system
+ *                     unless it is qualified, e.g. file:///tmp/lg.idx
+ *   -inDir <inDir>: input directory where directory/file structures
+ *                   are stored. Its default value is the current directory.
+ *   -root <root>: crawl this test space instead of reading structure files
+ *   -crawlThreads <n>: number of directories listed in parallel when
+ *                      crawling; default is 16.
+ */
+public class NamespaceIndexGenerator {
+  private File inDir = StructureGenerator.DEFAULT_STRUCTURE_DIRECTORY;
+  private Path root = null;
+  private Path out = null;
+  private int crawlThreads = 16;
+  private FileContext fc;
+  final static private String USAGE = "java NamespaceIndexGenerator " +
+      "-out <indexFile> " +
+      "[-inDir <inDir> | -root <root> [-crawlThreads <n>]]";
+
+  /** Main function.
+   * It parses the command line arguments, builds the namespace table from
+   * the structure files or a crawl and writes it to the index file.
+   */
+  public int run(String[] args) throws Exception {
+    int exitCode = init(args);
+    if (exitCode != 0) {
+      return exitCode;
+    }
+    NamespaceTable table;
+    if (root != null) {
+      table = NamespaceTable.crawl(fc, fc.makeQualified(root), crawlThreads);
+    } else {
+      table = NamespaceTable.fromStructure(DataGenerator.DEFAULT_ROOT, inDir);
+    }
+    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(
+        fc.create(out, EnumSet.of(CreateFlag.CREATE, CreateFlag.OVERWRITE),
+            CreateOpts.createParent())));
+    try {
+      table.write(dos);
+    } finally {
+      dos.close();
+    }
+    System.out.println("Wrote " + table.numDirs() + " directories and " +
+        table.numFiles() + " files to " + fc.makeQualified(out));
+    return 0;
+  }
+
+  /** Parse the command line arguments and initialize the data */
+  private int init(String[] args) {
+    try { // initialize file system handle
+      fc = FileContext.getFileContext(new Configuration());
+    } catch (IOException ioe) {
+      System.err.println("Can not initialize the file system: " +
+          ioe.getLocalizedMessage());
+      return -1;
+    }
+
+    try {
+      for (int i = 0; i < args.length; i++) { // parse command line
+        if (args[i].equals("-out")) {
+          out = new Path(args[++i]);
+        } else if (args[i].equals("-inDir")) {
+          inDir = new File(args[++i]);
+        } else if (args[i].equals("-root")) {
+          root = new Path(args[++i]);
+        } else if (args[i].equals("-crawlThreads")) {
+          crawlThreads = Integer.parseInt(args[++i]);
+          if (crawlThreads <= 0) {
+            System.err.println(
+                "Number of crawl threads must be positive: " + crawlThreads);
+            return -1;
+          }
+        } else {
+          System.err.println(USAGE);
+          return -1;
+        }
+      }
+    } catch (NumberFormatException e) {
+      System.err.println("Illegal parameter: " + e.getLocalizedMessage());
+      System.err.println(USAGE);
+      return -1;
+    }
+    if (out == null) {
+      System.err.println(USAGE);
+      return -1;
+    }
+    return 0;
+  }
+
+  /** Main program.
+   *
+   * @param args Command line arguments
+   * @throws Exception
+   */
+  public static void main(String[] args) throws Exception {
+    NamespaceIndexGenerator nig = new NamespaceIndexGenerator();
+    System.exit(nig.run(args));
+  }
+}
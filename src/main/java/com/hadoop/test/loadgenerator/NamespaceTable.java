@@ -0,0 +1,861 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hadoop.test.loadgenerator;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
+
+/**
+ * The directories and files of a LoadGenerator test space, kept as a tree
+ * of names instead of a list of fully qualified URIs.
+ *
+ * Every entry stores the index of its parent directory and its own name,
+ * the last component of its path, in a packed UTF-8 arena. A common prefix
+ * is therefore stored only once, in the directory it belongs to, and a
+ * file costs two ints plus the bytes of its name. The Path of every
+ * directory is built once by {@link #freeze()} and shared by all threads;
+ * the Path of a file is made from its cached parent and its name, and the
+ * recently used ones are kept in a small cache. That cache only helps a
+ * skewed access pattern: on a large test space nearly every file lookup
+ * misses it and allocates a new Path, a URI and its strings, so a file
+ * operation is not allocation-free.
+ *
+ * Directories must be added in depth-first order, parents first, so that
+ * everything under a directory is one contiguous range of directories;
+ * lookups use binary search over these ranges. Directories are numbered
+ * from 0 in the order they were added; {@link #ROOT} stands for the root of
+ * the test space, which is not itself an entry. The tables built by
+ * {@link #crawl} and {@link #fromStructure} also list the files grouped by
+ * directory in the same order, which makes the files under a directory a
+ * contiguous range as well. The names are relative to the root,
+ * so a table can be written to an index file once and loaded for any root
+ * that holds the same tree. A local index file is memory-mapped instead of
+ * read, which keeps the names off the heap.
+ *
+ * The names are kept in arena segments of at most 1 GB, and an entry
+ * stores the offset of its name within its segment. Neither a byte array
+ * nor a mapped buffer can hold more than 2 GB, so this lets the names of
+ * a hundred million entries take more than that.
+ */
+public class NamespaceTable {
+  /** Parent index of an entry directly under the root */
+  public static final int ROOT = -1;
+  /** "LGNS", the first four bytes of an index file */
+  private static final int MAGIC = 0x4C474E53;
+  private static final int VERSION = 2;
+  private static final int HEADER_SIZE = 20;
+  /** Set in the flags of an index whose files are grouped by directory */
+  private static final int FILES_IN_DIR_ORDER = 1;
+  /** The most bytes in one segment of a name arena */
+  private static final int SEGMENT_SIZE = 1 << 30;
+  /** The most file Paths that are cached */
+  static final int PATH_CACHE_SIZE = 1 << 14;
+
+  private final Path root;
+  private final Names dirs;
+  private final Names files;
+  private Path[] dirPaths;
+  /** Whether the parents of the files never decrease */
+  private boolean filesInDirOrder;
+  /** Recently built file Paths, at the file index modulo the length */
+  private CachedPath[] filePaths;
+
+  public NamespaceTable(Path root) {
+    this(root, SEGMENT_SIZE);
+  }
+
+  /** A table whose name arenas are split into segments of
+   * <code>segmentSize</code> bytes */
+  NamespaceTable(Path root, int segmentSize) {
+    this(root, new Names(segmentSize), new Names(segmentSize), true);
+  }
+
+  private NamespaceTable(Path root, Names dirs, Names files,
+      boolean filesInDirOrder) {
+    this.root = root;
+    this.dirs = dirs;
+    this.files = files;
+    this.filesInDirOrder = filesInDirOrder;
+  }
+
+  /** Add a directory.
+   * @param parent the index of its parent directory, or ROOT
+   * @param name the last component of its path
+   * @return the index of the new directory
+   */
+  public int addDir(int parent, String name) {
+    checkParent(parent);
+    if (parent != ROOT && !isUnder(dirs.size - 1, parent)) {
+      throw new IllegalArgumentException("Directory " + name +
+          " is not added in depth-first order");
+    }
+    return dirs.add(parent, name);
+  }
+
+  /** Add a file.
+   * @param parent the index of its directory, or ROOT
+   * @param name the last component of its path
+   * @return the index of the new file
+   */
+  public int addFile(int parent, String name) {
+    checkParent(parent);
+    if (files.size > 0 && parent < files.parent(files.size - 1)) {
+      filesInDirOrder = false;
+    }
+    return files.add(parent, name);
+  }
+
+  private void checkParent(int parent) {
+    if (dirPaths != null) {
+      throw new IllegalStateException("The table is frozen");
+    }
+    if (parent < ROOT || parent >= dirs.size) {
+      throw new IllegalArgumentException("No such directory: " + parent);
+    }
+  }
+
+  /** Build the Paths of all directories and trim the arrays. No entry can
+   * be added afterwards, and the table may be read by many threads. The
+   * entries can only be read once the table is frozen.
+   */
+  public void freeze() {
+    dirs.freeze();
+    files.freeze();
+    dirPaths = new Path[dirs.size];
+    for (int i = 0; i < dirs.size; i++) {
+      dirPaths[i] = new Path(getDirPath(dirs.parent(i)), dirs.name(i));
+    }
+    filePaths = new CachedPath[Math.min(PATH_CACHE_SIZE,
+        Integer.highestOneBit(Math.max(1, files.size - 1)) << 1)];
+  }
+
+  public int numDirs() {
+    return dirs.size;
+  }
+
+  public int numFiles() {
+    return files.size;
+  }
+
+  public Path getRoot() {
+    return root;
+  }
+
+  /** @return the Path of directory <code>dir</code>, shared by all callers */
+  public Path getDirPath(int dir) {
+    return dir == ROOT ? root : dirPaths[dir];
+  }
+
+  /** @return the Path of file <code>file</code>. A file that was looked up
+   * recently gets the same Path again; otherwise a new one is built from the
+   * URI of its directory with a single URI parse, where
+   * Path(Path, String) parses and resolves three. A miss allocates the
+   * Path, its URI and strings, and a cache entry.
+   */
+  public Path getFilePath(int file) {
+    int slot = file & (filePaths.length - 1);
+    CachedPath cached = filePaths[slot];
+    if (cached != null && cached.file == file) {
+      return cached.path;
+    }
+    URI dir = getDirPath(files.parent(file)).toUri();
+    String dirPath = dir.getPath();
+    String name = files.name(file);
+    String path = dirPath.endsWith(Path.SEPARATOR) ? dirPath + name :
+        dirPath + Path.SEPARATOR + name;
+    Path filePath;
+    try {
+      filePath = new Path(
+          new URI(dir.getScheme(), dir.getAuthority(), path, null, null));
+    } catch (URISyntaxException e) {
+      throw new IllegalArgumentException(e);
+    }
+    filePaths[slot] = new CachedPath(file, filePath);
+    return filePath;
+  }
+
+  public int getDirParent(int dir) {
+    return dirs.parent(dir);
+  }
+
+  public int getFileParent(int file) {
+    return files.parent(file);
+  }
+
+  public String getDirName(int dir) {
+    return dirs.name(dir);
+  }
+
+  public String getFileName(int file) {
+    return files.name(file);
+  }
+
+  /** @return the index of the directory at <code>relativePath</code> below
+   * the root, ROOT for an empty path, or -2 if there is none. Each level
+   * steps from one subdirectory to the next over its whole subtree.
+   */
+  public int findDir(String relativePath) {
+    int dir = ROOT;
+    for (String component : relativePath.split(Path.SEPARATOR)) {
+      if (component.isEmpty()) {
+        continue;
+      }
+      byte[] name = component.getBytes(StandardCharsets.UTF_8);
+      int end = dirEnd(dir);
+      int child = dir + 1;
+      while (child < end && !dirs.nameEquals(child, name)) {
+        child = dirEnd(child);
+      }
+      if (child >= end) {
+        return -2;
+      }
+      dir = child;
+    }
+    return dir;
+  }
+
+  /** @return the index after the last directory under <code>dir</code>,
+   * found by binary search as they all directly follow it
+   */
+  public int dirEnd(int dir) {
+    int low = dir + 1;
+    int high = dirs.size;
+    if (dir == ROOT) {
+      return high;
+    }
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (isUnder(mid, dir)) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /** @return the range of the files in directories [fromDir, toDir), or
+   * null if there are none. Unless the files were added grouped by
+   * directory, the range spans from the first to the last of them.
+   */
+  public int[] fileRange(int fromDir, int toDir) {
+    int from;
+    int to;
+    if (filesInDirOrder) {
+      from = firstFileIn(fromDir);
+      to = firstFileIn(toDir);
+    } else {
+      from = -1;
+      to = -1;
+      for (int i = 0; i < files.size; i++) {
+        int parent = files.parent(i);
+        if (parent >= fromDir && parent < toDir) {
+          if (from < 0) {
+            from = i;
+          }
+          to = i + 1;
+        }
+      }
+    }
+    return from < 0 || from >= to ? null : new int[] {from, to};
+  }
+
+  /** @return the first file whose parent is <code>dir</code> or later */
+  private int firstFileIn(int dir) {
+    int low = 0;
+    int high = files.size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (files.parent(mid) < dir) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /** @return whether directory <code>dir</code> is <code>ancestor</code>
+   * or lies below it
+   */
+  public boolean isUnder(int dir, int ancestor) {
+    while (dir > ancestor) {
+      dir = dirs.parent(dir);
+    }
+    return dir == ancestor;
+  }
+
+  /** @return the number of segments the names are kept in */
+  int numSegments() {
+    return dirs.numSegments() + files.numSegments();
+  }
+
+  /** @return the number of heap bytes the table takes, roughly */
+  public long getMemorySize() {
+    return dirs.memorySize() + files.memorySize()
+        + (long) dirs.size * 200 // the cached directory Paths
+        + (long) filePaths.length * 200; // and the cached file Paths
+  }
+
+  /** Write a frozen table in the index file format: a header of magic,
+   * version, flags and the numbers of directories and files, followed by
+   * the entries of the directories and then of the files. The entries of
+   * each kind are the number of arena segments, the first entry and the
+   * length of every segment, the parents, the name offsets and the
+   * segments, each padded to a multiple of four bytes.
+   */
+  public void write(DataOutputStream out) throws IOException {
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(filesInDirOrder ? FILES_IN_DIR_ORDER : 0);
+    out.writeInt(dirs.size);
+    out.writeInt(files.size);
+    dirs.write(out);
+    files.write(out);
+  }
+
+  /** Read a table from an index file on any file system onto the heap */
+  public static NamespaceTable read(Path root, DataInputStream in)
+      throws IOException {
+    int[] header = readHeader(in);
+    Names dirs = Names.read(in, header[3]);
+    Names files = Names.read(in, header[4]);
+    NamespaceTable table = new NamespaceTable(root, dirs, files,
+        (header[2] & FILES_IN_DIR_ORDER) != 0);
+    table.freeze();
+    return table;
+  }
+
+  /** Map a local index file into memory. Only the directory Paths are
+   * built on the heap; the operating system pages the names in as they
+   * are used and can share them between the tasks of a node.
+   */
+  public static NamespaceTable map(Path root, File indexFile)
+      throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+      int[] header = readInts(channel, 0, HEADER_SIZE / 4);
+      checkHeader(header);
+      long position = HEADER_SIZE;
+      Names dirs = Names.map(channel, position, header[3]);
+      position += dirs.fileSize();
+      Names files = Names.map(channel, position, header[4]);
+      position += files.fileSize();
+      if (position != channel.size()) {
+        throw new IOException("Corrupt namespace index " + indexFile +
+            ": expected " + position + " bytes but found " + channel.size());
+      }
+      NamespaceTable table = new NamespaceTable(root, dirs, files,
+          (header[2] & FILES_IN_DIR_ORDER) != 0);
+      table.freeze();
+      return table;
+    }
+  }
+
+  private static int[] readHeader(DataInputStream in) throws IOException {
+    int[] header = new int[HEADER_SIZE / 4];
+    for (int i = 0; i < header.length; i++) {
+      header[i] = in.readInt();
+    }
+    checkHeader(header);
+    return header;
+  }
+
+  private static void checkHeader(int[] header) throws IOException {
+    if (header[0] != MAGIC) {
+      throw new IOException("Not a namespace index");
+    }
+    if (header[1] != VERSION) {
+      throw new IOException("Unsupported namespace index version " +
+          header[1]);
+    }
+    for (int i = 3; i < header.length; i++) {
+      if (header[i] < 0) {
+        throw new IOException("Corrupt namespace index header");
+      }
+    }
+  }
+
+  /** @return <code>n</code> ints read from a channel at a position */
+  private static int[] readInts(FileChannel channel, long position, int n)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4 * n);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Truncated namespace index");
+      }
+    }
+    buffer.flip();
+    int[] ints = new int[n];
+    buffer.asIntBuffer().get(ints);
+    return ints;
+  }
+
+  /** Build a table of the tree described by the structure files that
+   * StructureGenerator writes to <code>inDir</code>, which is the tree that
+   * DataGenerator creates from them. The directory file only lists the
+   * leaves; their ancestors are added as well.
+   */
+  public static NamespaceTable fromStructure(Path root, File inDir)
+      throws IOException {
+    Listing top = new Listing(null);
+    Map<String, Listing> byPath = new HashMap<String, Listing>();
+    byPath.put("", top);
+    String line;
+    for (File structure : StructureGenerator.structureFiles(inDir,
+        StructureGenerator.DIR_STRUCTURE_FILE_NAME)) {
+      try (BufferedReader in = new BufferedReader(new InputStreamReader(
+          new FileInputStream(structure), StandardCharsets.UTF_8))) {
+        while ((line = in.readLine()) != null) {
+          structureDir(line.trim(), byPath);
+        }
+      }
+    }
+    for (File structure : StructureGenerator.structureFiles(inDir,
+        StructureGenerator.FILE_STRUCTURE_FILE_NAME)) {
+      try (BufferedReader in = new BufferedReader(new InputStreamReader(
+          new FileInputStream(structure), StandardCharsets.UTF_8))) {
+        while ((line = in.readLine()) != null) {
+          String[] tokens = line.split(" ");
+          if (tokens.length != 2) {
+            throw new IOException(
+                "Expect at most 2 tokens per line: " + line);
+          }
+          int slash = tokens[0].lastIndexOf(Path.SEPARATOR_CHAR);
+          structureDir(tokens[0].substring(0, Math.max(slash, 0)), byPath)
+              .addFile(tokens[0].substring(slash + 1));
+        }
+      }
+    }
+    NamespaceTable table = new NamespaceTable(root);
+    table.addAll(top, ROOT);
+    table.freeze();
+    return table;
+  }
+
+  private static Listing structureDir(String path,
+      Map<String, Listing> byPath) {
+    if (path.endsWith(Path.SEPARATOR)) {
+      path = path.substring(0, path.length() - 1);
+    }
+    Listing dir = byPath.get(path);
+    if (dir == null) {
+      int slash = path.lastIndexOf(Path.SEPARATOR_CHAR);
+      Listing parent =
+          structureDir(path.substring(0, Math.max(slash, 0)), byPath);
+      dir = new Listing(new Path(path.substring(slash + 1)));
+      parent.subdirs.add(dir);
+      byPath.put(path, dir);
+    }
+    return dir;
+  }
+
+  /** Crawl the test space under <code>root</code>, listing up to
+   * <code>parallelism</code> directories at the same time. Only the files
+   * whose name starts with "_file_" are kept.
+   */
+  public static NamespaceTable crawl(FileContext fc, Path root,
+      int parallelism) throws IOException {
+    Listing top = new Listing(root);
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      pool.invoke(new Crawl(fc, top));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      pool.shutdown();
+    }
+    NamespaceTable table = new NamespaceTable(root);
+    table.addAll(top, ROOT);
+    table.freeze();
+    return table;
+  }
+
+  /** Add what was found under a directory in depth-first order, the files
+   * of a directory before its subdirectories, and drop the listing as it
+   * goes. Everything under a directory then is one contiguous range.
+   */
+  private void addAll(Listing listing, int parent) {
+    StringBuilder names = listing.fileNames;
+    for (int from = 0, to; from < names.length(); from = to + 1) {
+      to = names.indexOf(Listing.NAME_END, from);
+      addFile(parent, names.substring(from, to));
+    }
+    listing.fileNames = null;
+    for (Listing subdir : listing.subdirs) {
+      addAll(subdir, addDir(parent, subdir.path.getName()));
+    }
+    listing.subdirs = null;
+  }
+
+  /** A file Path and the index of the file it was built for */
+  private static final class CachedPath {
+    private final int file;
+    private final Path path;
+
+    private CachedPath(int file, Path path) {
+      this.file = file;
+      this.path = path;
+    }
+  }
+
+  /** The files and subdirectories found in one directory */
+  private static final class Listing {
+    private static final String NAME_END = Path.SEPARATOR;
+    private final Path path;
+    /** The names of the files, each followed by NAME_END, which cannot
+     * be part of a name */
+    private StringBuilder fileNames = new StringBuilder();
+    private List<Listing> subdirs = new ArrayList<Listing>();
+
+    private Listing(Path path) {
+      this.path = path;
+    }
+
+    private void addFile(String name) {
+      fileNames.append(name).append(NAME_END);
+    }
+  }
+
+  /** Lists a directory and, in parallel, all directories under it.
+   * The listing is read page by page from the iterator the file system
+   * returns, so a huge directory is never fetched in one RPC. At most as
+   * many directories as the pool has workers are listed at the same time.
+   */
+  private static final class Crawl extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+    private final FileContext fc;
+    private final Listing listing;
+
+    private Crawl(FileContext fc, Listing listing) {
+      this.fc = fc;
+      this.listing = listing;
+    }
+
+    @Override
+    protected void compute() {
+      List<Crawl> subtasks = new ArrayList<Crawl>();
+      try {
+        RemoteIterator<FileStatus> stats = fc.listStatus(listing.path);
+        while (stats.hasNext()) {
+          FileStatus stat = stats.next();
+          String name = stat.getPath().getName();
+          if (stat.isDirectory()) {
+            Listing subdir = new Listing(stat.getPath());
+            listing.subdirs.add(subdir);
+            subtasks.add(new Crawl(fc, subdir));
+          } else if (name.startsWith(StructureGenerator.FILE_NAME_PREFIX)) {
+            listing.addFile(name);
+          }
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      invokeAll(subtasks);
+    }
+  }
+
+  /** Parent indexes and names of one kind of entry. They are collected in
+   * growing arrays and, once frozen, read through buffers that either wrap
+   * those arrays or map part of an index file.
+   */
+  private static final class Names {
+    private final int segmentSize;
+    private int size;
+    private int[] parents = new int[16];
+    /** The name of entry i ends at offsets[i + 1] in its segment and starts
+     * at offsets[i], or at 0 if it is the first entry of the segment */
+    private int[] offsets = new int[17];
+    private byte[] bytes = new byte[256];
+    /** The first entry of each segment */
+    private int[] segmentFirst = {0};
+    private List<byte[]> segments = new ArrayList<byte[]>();
+    private IntBuffer parent;
+    private IntBuffer offset;
+    private ByteBuffer[] arenas;
+
+    Names(int segmentSize) {
+      this.segmentSize = segmentSize;
+    }
+
+    int add(int parentIndex, String name) {
+      byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+      if (utf8.length > segmentSize) {
+        throw new IllegalArgumentException("Name too long: " + name);
+      }
+      if (size + 1 >= Integer.MAX_VALUE - 8) {
+        throw new IllegalStateException("Too many names for one table");
+      }
+      int start = offsets[size];
+      if (start + utf8.length > segmentSize) {
+        segments.add(Arrays.copyOf(bytes, start));
+        segmentFirst = Arrays.copyOf(segmentFirst, segmentFirst.length + 1);
+        segmentFirst[segmentFirst.length - 1] = size;
+        bytes = new byte[256];
+        start = 0;
+      }
+      if (size + 1 == parents.length) {
+        int length = (int) Math.min(Integer.MAX_VALUE - 8,
+            2L * parents.length);
+        parents = Arrays.copyOf(parents, length);
+        offsets = Arrays.copyOf(offsets, length);
+      }
+      if (start + utf8.length > bytes.length) {
+        bytes = Arrays.copyOf(bytes, (int) Math.min(segmentSize,
+            Math.max(2L * bytes.length, start + utf8.length)));
+      }
+      System.arraycopy(utf8, 0, bytes, start, utf8.length);
+      parents[size] = parentIndex;
+      offsets[size + 1] = start + utf8.length;
+      return size++;
+    }
+
+    void freeze() {
+      if (parents != null) {
+        segments.add(Arrays.copyOf(bytes, offsets[size]));
+        parent = IntBuffer.wrap(Arrays.copyOf(parents, size));
+        offset = IntBuffer.wrap(Arrays.copyOf(offsets, size + 1));
+        arenas = new ByteBuffer[segments.size()];
+        for (int i = 0; i < arenas.length; i++) {
+          arenas[i] = ByteBuffer.wrap(segments.get(i));
+        }
+        parents = null;
+        offsets = null;
+        bytes = null;
+        segments = null;
+      }
+    }
+
+    int parent(int i) {
+      return parents != null ? parents[i] : parent.get(i);
+    }
+
+    private int segment(int i) {
+      int segment = segmentFirst.length - 1;
+      while (segmentFirst[segment] > i) {
+        segment--;
+      }
+      return segment;
+    }
+
+    private int start(int i, int segment) {
+      return segmentFirst[segment] == i ? 0 : offset.get(i);
+    }
+
+    String name(int i) {
+      int segment = segment(i);
+      ByteBuffer arena = arenas[segment];
+      int from = start(i, segment);
+      int length = offset.get(i + 1) - from;
+      if (arena.hasArray()) {
+        return new String(arena.array(), arena.arrayOffset() + from, length,
+            StandardCharsets.UTF_8);
+      }
+      byte[] utf8 = new byte[length];
+      arena.get(from, utf8);
+      return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /** @return whether the name of entry i has these UTF-8 bytes */
+    boolean nameEquals(int i, byte[] utf8) {
+      int segment = segment(i);
+      ByteBuffer arena = arenas[segment];
+      int from = start(i, segment);
+      if (offset.get(i + 1) - from != utf8.length) {
+        return false;
+      }
+      for (int j = 0; j < utf8.length; j++) {
+        if (arena.get(from + j) != utf8[j]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    int numSegments() {
+      return arenas.length;
+    }
+
+    long memorySize() {
+      long size = heapSize(parent) + heapSize(offset);
+      for (ByteBuffer arena : arenas) {
+        size += heapSize(arena);
+      }
+      return size;
+    }
+
+    private static long heapSize(Buffer buffer) {
+      return buffer == null || buffer.isDirect() ? 0 :
+          (buffer instanceof IntBuffer ? 4L : 1L) * buffer.capacity();
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeInt(arenas.length);
+      for (int first : segmentFirst) {
+        out.writeInt(first);
+      }
+      for (ByteBuffer arena : arenas) {
+        out.writeInt(arena.capacity());
+      }
+      for (int i = 0; i < size; i++) {
+        out.writeInt(parent.get(i));
+      }
+      for (int i = 0; i <= size; i++) {
+        out.writeInt(offset.get(i));
+      }
+      byte[] chunk = new byte[1 << 16];
+      for (ByteBuffer arena : arenas) {
+        int length = arena.capacity();
+        for (int from = 0, n; from < length; from += n) {
+          n = Math.min(chunk.length, length - from);
+          arena.get(from, chunk, 0, n);
+          out.write(chunk, 0, n);
+        }
+        for (long i = length; i < padded(length); i++) {
+          out.writeByte(0);
+        }
+      }
+    }
+
+    /** @return the number of bytes the entries take in an index file */
+    long fileSize() {
+      long fileSize = 4 + 8L * arenas.length + 4L * size + 4L * (size + 1);
+      for (ByteBuffer arena : arenas) {
+        fileSize += padded(arena.capacity());
+      }
+      return fileSize;
+    }
+
+    private static long padded(int arenaSize) {
+      return (arenaSize + 3L) & ~3L;
+    }
+
+    /** Check the segments read from an index file and take them */
+    private void setSegments(int[] first, int[] lengths, int entries)
+        throws IOException {
+      if (first.length == 0 || first[0] != 0) {
+        throw new IOException("Corrupt namespace index segments");
+      }
+      for (int i = 0; i < first.length; i++) {
+        if (first[i] > entries || (i > 0 && first[i] < first[i - 1]) ||
+            lengths[i] < 0) {
+          throw new IOException("Corrupt namespace index segments");
+        }
+      }
+      size = entries;
+      segmentFirst = first;
+      parents = null;
+      offsets = null;
+      bytes = null;
+      segments = null;
+    }
+
+    static Names read(DataInputStream in, int size) throws IOException {
+      int numSegments = in.readInt();
+      if (numSegments < 0) {
+        throw new IOException("Corrupt namespace index segments");
+      }
+      int[] first = new int[numSegments];
+      for (int i = 0; i < numSegments; i++) {
+        first[i] = in.readInt();
+      }
+      int[] lengths = new int[numSegments];
+      for (int i = 0; i < numSegments; i++) {
+        lengths[i] = in.readInt();
+      }
+      Names names = new Names(SEGMENT_SIZE);
+      names.setSegments(first, lengths, size);
+      int[] p = new int[size];
+      for (int i = 0; i < size; i++) {
+        p[i] = in.readInt();
+      }
+      int[] o = new int[size + 1];
+      for (int i = 0; i <= size; i++) {
+        o[i] = in.readInt();
+      }
+      names.parent = IntBuffer.wrap(p);
+      names.offset = IntBuffer.wrap(o);
+      names.arenas = new ByteBuffer[numSegments];
+      for (int i = 0; i < numSegments; i++) {
+        byte[] a = new byte[lengths[i]];
+        in.readFully(a);
+        in.skipBytes((int) (padded(lengths[i]) - lengths[i]));
+        names.arenas[i] = ByteBuffer.wrap(a);
+      }
+      return names;
+    }
+
+    static Names map(FileChannel channel, long position, int size)
+        throws IOException {
+      if (4L * (size + 1) > Integer.MAX_VALUE) {
+        throw new IOException("Too many entries to map: " + size);
+      }
+      int numSegments = readInts(channel, position, 1)[0];
+      if (numSegments < 0) {
+        throw new IOException("Corrupt namespace index segments");
+      }
+      position += 4;
+      int[] first = readInts(channel, position, numSegments);
+      position += 4L * numSegments;
+      int[] lengths = readInts(channel, position, numSegments);
+      position += 4L * numSegments;
+      Names names = new Names(SEGMENT_SIZE);
+      names.setSegments(first, lengths, size);
+      names.parent = channel.map(FileChannel.MapMode.READ_ONLY, position,
+          4L * size).asIntBuffer();
+      position += 4L * size;
+      names.offset = channel.map(FileChannel.MapMode.READ_ONLY, position,
+          4L * (size + 1)).asIntBuffer();
+      position += 4L * (size + 1);
+      names.arenas = new ByteBuffer[numSegments];
+      for (int i = 0; i < numSegments; i++) {
+        names.arenas[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+            position, lengths[i]);
+        position += padded(lengths[i]);
+      }
+      return names;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hadoop.test.loadgenerator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The execution time, count, errors and latency distribution of every type of
+ * operation issued by one client, or by a group of clients that share one
+ * instance, and the latency of the failed operations by their cause. Like
+ * {@link LatencyHistogram}, recording is lock-free and never allocates, but
+ * for the first error of each cause.
+ */
+public class OpStats {
+  private final AtomicLongArray executionTime;
+  private final AtomicLongArray numOfOps;
+  private final AtomicLongArray numOfErrors;
+  private final AtomicLongArray numOfBytes;
+  private final LatencyHistogram[] latencies;
+  private final ConcurrentHashMap<String, LatencyHistogram> errorLatencies =
+      new ConcurrentHashMap<String, LatencyHistogram>();
+
+  public OpStats(int numOpTypes) {
+    executionTime = new AtomicLongArray(numOpTypes);
+    numOfOps = new AtomicLongArray(numOpTypes);
+    numOfErrors = new AtomicLongArray(numOpTypes);
+    numOfBytes = new AtomicLongArray(numOpTypes);
+    latencies = new LatencyHistogram[numOpTypes];
+    for (int i = 0; i < numOpTypes; i++) {
+      latencies[i] = new LatencyHistogram();
+    }
+  }
+
+  /** Account for one operation of type <code>op</code> that took
+   * <code>elapsedNanos</code> nanoseconds.
+   */
+  public void record(int op, long elapsedNanos) {
+    executionTime.addAndGet(op, elapsedNanos);
+    numOfOps.incrementAndGet(op);
+    latencies[op].record(elapsedNanos);
+  }
+
+  /** Account for <code>bytes</code> transferred by an operation of type
+   * <code>op</code> */
+  public void recordBytes(int op, long bytes) {
+    numOfBytes.addAndGet(op, bytes);
+  }
+
+  /** Account for one operation of type <code>op</code> that failed with
+   * <code>cause</code>, e.g. the name of an exception class, after
+   * <code>elapsedNanos</code> nanoseconds.
+   */
+  public void recordError(int op, String cause, long elapsedNanos) {
+    numOfErrors.incrementAndGet(op);
+    LatencyHistogram h = errorLatencies.get(cause);
+    if (h == null) {
+      h = errorLatencies.computeIfAbsent(cause, c -> new LatencyHistogram());
+    }
+    h.record(elapsedNanos);
+  }
+
+  /** @return the accumulated execution time of <code>op</code> in nanoseconds */
+  public long getExecutionTime(int op) {
+    return executionTime.get(op);
+  }
+
+  public long getNumOfOps(int op) {
+    return numOfOps.get(op);
+  }
+
+  public long getNumOfErrors(int op) {
+    return numOfErrors.get(op);
+  }
+
+  public long getNumOfBytes(int op) {
+    return numOfBytes.get(op);
+  }
+
+  public LatencyHistogram getLatencies(int op) {
+    return latencies[op];
+  }
+
+  /** @return the latencies of the failed operations by their cause */
+  public Map<String, LatencyHistogram> getErrorLatencies() {
+    return errorLatencies;
+  }
+}
@@ -0,0 +1,236 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hadoop.test.loadgenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.random.RandomGenerator;
+
+import org.apache.hadoop.util.Time;
+
+/**
+ * Generates operation arrivals for the open-loop mode of LoadGenerator.
+ *
+ * The scheduler owns one or more arrival streams, each with its own rate in
+ * operations per second. A stream either carries a fixed kind of operation
+ * or leaves the choice to the worker's op mix. The rate of the mix stream
+ * can be changed while the scheduler runs, which is how scripted phases
+ * and ramps change the offered load; a rate of 0 pauses it. All streams
+ * can also be paused together, in which case the arrivals that are still
+ * queued are dropped and none are made up for later. Arrivals are
+ * spaced evenly ("fixed") or with exponentially distributed gaps
+ * ("poisson"). Every arrival is queued together with the time at which it
+ * was supposed to start. Workers take arrivals from the queue and measure
+ * latency from that intended time. When the NameNode slows down, the
+ * backlog therefore shows up as latency instead of quietly lowering the
+ * offered load.
+ */
+public class OpenLoopScheduler extends Thread {
+  /** Op kind of an arrival whose operation is picked by the worker's mix */
+  static final int ANY_OP = -1;
+
+  /** One operation that is due at <code>intendedStart</code> */
+  static final class Arrival {
+    final int opKind;
+    final long intendedStart;
+
+    private Arrival(int opKind, long intendedStart) {
+      this.opKind = opKind;
+      this.intendedStart = intendedStart;
+    }
+  }
+
+  private final BlockingQueue<Arrival> queue = new LinkedBlockingQueue<Arrival>();
+  private final int[] opKinds;
+  private final double[] meanGapNanos;
+  /** Set when the mix stream's rate changed and its next arrival is stale */
+  private volatile boolean mixRateChanged;
+  private volatile boolean paused;
+  private final boolean poisson;
+  private final RandomGenerator rand;
+  private volatile boolean running = true;
+  private volatile long scheduledOps;
+  private volatile int maxBacklog;
+
+  /**
+   * @param mixRate initial rate of arrivals whose kind is chosen by the mix
+   * @param opRates rate of each kind of operation, indexed by op kind;
+   *                entries of 0 add no stream
+   * @param poisson whether gaps are exponentially distributed instead of fixed
+   * @param rand source of randomness for the Poisson gaps
+   */
+  OpenLoopScheduler(double mixRate, double[] opRates, boolean poisson,
+      RandomGenerator rand) {
+    super("OpenLoopScheduler");
+    setDaemon(true);
+    List<Integer> kinds = new ArrayList<Integer>();
+    List<Double> rates = new ArrayList<Double>();
+    // The mix stream is always first so that its rate can be changed
+    kinds.add(ANY_OP);
+    rates.add(mixRate);
+    for (int i = 0; opRates != null && i < opRates.length; i++) {
+      if (opRates[i] > 0) {
+        kinds.add(i);
+        rates.add(opRates[i]);
+      }
+    }
+    opKinds = new int[kinds.size()];
+    meanGapNanos = new double[kinds.size()];
+    for (int i = 0; i < opKinds.length; i++) {
+      opKinds[i] = kinds.get(i);
+      meanGapNanos[i] = meanGap(rates.get(i));
+    }
+    this.poisson = poisson;
+    this.rand = rand;
+  }
+
+  private static double meanGap(double rate) {
+    return rate > 0 ? 1e9 / rate : Double.POSITIVE_INFINITY;
+  }
+
+  @Override
+  public void run() {
+    long now = Time.monotonicNowNanos();
+    long[] next = new long[opKinds.length];
+    for (int i = 0; i < next.length; i++) {
+      next[i] = now + gap(i);
+    }
+    // The last mix arrival, from which the next one is re-spaced on a change
+    long lastMix = now;
+    boolean mixPaused = Double.isInfinite(meanGapNanos[0]);
+    while (running) {
+      if (paused) {
+        LockSupport.park(this);
+        if (!paused) { // nothing was due while paused
+          now = Time.monotonicNowNanos();
+          for (int i = 0; i < next.length; i++) {
+            next[i] = now + gap(i);
+          }
+          lastMix = now;
+        }
+        continue;
+      }
+      if (mixRateChanged) {
+        mixRateChanged = false;
+        if (mixPaused) { // nothing was due while paused
+          lastMix = Time.monotonicNowNanos();
+        }
+        mixPaused = Double.isInfinite(meanGapNanos[0]);
+        next[0] = lastMix + gap(0);
+      }
+      int s = -1;
+      for (int i = 0; i < next.length; i++) {
+        if (!Double.isInfinite(meanGapNanos[i])
+            && (s < 0 || next[i] < next[s])) {
+          s = i;
+        }
+      }
+      if (s < 0) { // every stream is paused
+        LockSupport.park(this);
+        continue;
+      }
+      long wait;
+      while (running && !mixRateChanged && !paused
+          && (wait = next[s] - Time.monotonicNowNanos()) > 0) {
+        LockSupport.parkNanos(this, wait);
+      }
+      if (!running) {
+        break;
+      }
+      if (mixRateChanged) {
+        continue;
+      }
+      // Arrivals that are already late are queued right away with their
+      // original intended start, so the lateness is charged to latency.
+      synchronized (queue) { // not after a pause cleared the queue
+        if (paused) {
+          continue;
+        }
+        queue.add(new Arrival(opKinds[s], next[s]));
+        scheduledOps++;
+        maxBacklog = Math.max(maxBacklog, queue.size());
+      }
+      if (s == 0) {
+        lastMix = next[s];
+      }
+      next[s] += gap(s);
+    }
+  }
+
+  /** Change the rate of the arrivals whose kind is chosen by the mix.
+   * @param rate the new rate in operations per second; 0 pauses the stream
+   */
+  void setMixRate(double rate) {
+    meanGapNanos[0] = meanGap(rate);
+    mixRateChanged = true;
+    LockSupport.unpark(this);
+  }
+
+  /** Pause or resume all arrival streams. Pausing drops the arrivals that
+   * no worker has taken yet. */
+  void setPaused(boolean pause) {
+    synchronized (queue) {
+      paused = pause;
+      if (pause) {
+        queue.clear();
+      }
+    }
+    LockSupport.unpark(this);
+  }
+
+  private long gap(int stream) {
+    if (!poisson) {
+      return (long) meanGapNanos[stream];
+    }
+    return (long) (-Math.log(1 - rand.nextDouble()) * meanGapNanos[stream]);
+  }
+
+  /** Wait up to <code>timeoutMillis</code> for the next due arrival.
+   * @return the arrival, or null if none became due in time
+   */
+  Arrival poll(long timeoutMillis) throws InterruptedException {
+    return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /** Stop generating arrivals and wait for the scheduler to exit */
+  void shutdown() throws InterruptedException {
+    running = false;
+    LockSupport.unpark(this);
+    join();
+  }
+
+  /** @return the number of arrivals generated so far */
+  long getScheduledOps() {
+    return scheduledOps;
+  }
+
+  /** @return the largest number of arrivals that were waiting for a worker */
+  int getMaxBacklog() {
+    return maxBacklog;
+  }
+
+  /** @return the number of arrivals still waiting for a worker */
+  int getBacklog() {
+    return queue.size();
+  }
+}
@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hadoop.test.loadgenerator;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Collects the JFR <code>jdk.VirtualThreadPinned</code> events raised while
+ * LoadGenerator runs its clients on virtual threads. A virtual thread that
+ * blocks inside a synchronized block, as the Hadoop IPC client does, pins
+ * its carrier thread and keeps other clients from running. The monitor
+ * counts such events, sums up how long carriers were pinned and remembers
+ * where the pinning happened.
+ */
+public class PinningMonitor implements Closeable {
+  private static final String EVENT_NAME = "jdk.VirtualThreadPinned";
+  /** Pinning shorter than this is not reported; the JDK default is 20ms */
+  private static final Duration THRESHOLD = Duration.ofMillis(20);
+  private static final int TOP_SITES = 5;
+
+  private final RecordingStream stream = new RecordingStream();
+  private final AtomicLong events = new AtomicLong();
+  private final AtomicLong pinnedNanos = new AtomicLong();
+  private final Map<String, LongAdder> sites =
+      new ConcurrentHashMap<String, LongAdder>();
+
+  public PinningMonitor() {
+    stream.enable(EVENT_NAME).withThreshold(THRESHOLD).withStackTrace();
+    stream.onEvent(EVENT_NAME, this::onPinned);
+  }
+
+  /** Start receiving events in the background */
+  public void start() {
+    stream.startAsync();
+  }
+
+  private void onPinned(RecordedEvent event) {
+    events.incrementAndGet();
+    pinnedNanos.addAndGet(event.getDuration().toNanos());
+    sites.computeIfAbsent(site(event.getStackTrace()), k -> new LongAdder())
+        .increment();
+  }
+
+  /** The innermost frame outside the JDK, which is usually the code that
+   * held the monitor when the virtual thread blocked.
+   */
+  private static String site(RecordedStackTrace stackTrace) {
+    if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+      return "<unknown>";
+    }
+    RecordedFrame first = stackTrace.getFrames().get(0);
+    for (RecordedFrame frame : stackTrace.getFrames()) {
+      String type = frame.getMethod().getType().getName();
+      if (!type.startsWith("java.") && !type.startsWith("jdk.")
+          && !type.startsWith("sun.")) {
+        first = frame;
+        break;
+      }
+    }
+    return first.getMethod().getType().getName() + "."
+        + first.getMethod().getName() + ":" + first.getLineNumber();
+  }
+
+  @Override
+  public void close() {
+    stream.close();
+  }
+
+  /** Print the number of pinning events, the total pinned time and the
+   * sites that pinned carriers most often.
+   */
+  public void printResults(PrintStream out) {
+    out.println("Virtual thread pinning (>= " + THRESHOLD.toMillis()
+        + "ms): " + events.get() + " events, " + pinnedNanos.get() / 1e6
+        + "ms pinned in total");
+    List<Map.Entry<String, LongAdder>> top =
+        new ArrayList<Map.Entry<String, LongAdder>>(sites.entrySet());
+    top.sort((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()));
+    for (int i = 0; i < Math.min(TOP_SITES, top.size()); i++) {
+      out.println("  " + top.get(i).getValue().sum() + " at "
+          + top.get(i).getKey());
+    }
+  }
+}
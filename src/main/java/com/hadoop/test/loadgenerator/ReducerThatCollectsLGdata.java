@@ -1,25 +1,98 @@
 package com.hadoop.test.loadgenerator;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
 
-import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.fs.CreateFlag;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.Options.CreateOpts;
+import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.MapReduceBase;
 import org.apache.hadoop.mapred.Reducer;
 
 import org.apache.hadoop.mapred.OutputCollector;
 import org.apache.hadoop.mapred.Reporter;
 
+/** Sums up the metrics emitted by every MapperThatRunsNNLoadGenerator and,
+ * once all keys have been reduced, writes a cluster-wide summary to the file
+ * "Results" in the job output directory.
+ */
 public class ReducerThatCollectsLGdata extends MapReduceBase implements
-    Reducer<Text, IntWritable, Text, IntWritable> {
+    Reducer<Text, LongWritable, Text, LongWritable> {
+  private final Map<Text, Long> sums = new HashMap<Text, Long>();
+  private JobConf jobConf;
+
+  @Override
+  public void configure(JobConf job) {
+    this.jobConf = job;
+  }
+
   @Override
-  public void reduce(Text key, Iterator<IntWritable> values,
-      OutputCollector<Text, IntWritable> output, Reporter reporter) throws IOException {
-    int sum = 0;
+  public void reduce(Text key, Iterator<LongWritable> values,
+      OutputCollector<Text, LongWritable> output, Reporter reporter) throws IOException {
+    long sum = 0;
     while (values.hasNext()) {
       sum += values.next().get();
     }
-    output.collect(key, new IntWritable(sum));
+    sums.put(new Text(key), sum);
+    output.collect(key, new LongWritable(sum));
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (int i = 0; i < LoadGenerator.TOTAL_OP_TYPES; i++) {
+      LoadGenerator.executionTime[i] = get(LGConstants.EXECTIME_KEYS[i]);
+      LoadGenerator.numOfOps[i] = get(LGConstants.NUMOPS_KEYS[i]);
+      LoadGenerator.numOfErrors[i] = get(LGConstants.NUMERRORS_KEYS[i]);
+    }
+    for (Map.Entry<Text, Long> e : sums.entrySet()) {
+      String key = e.getKey().toString();
+      if (key.startsWith(LGConstants.NUM_ERRORS_BY_CAUSE)) {
+        LoadGenerator.numOfErrorsByCause.put(
+            key.substring(LGConstants.NUM_ERRORS_BY_CAUSE.length()),
+            e.getValue());
+      }
+    }
+    LoadGenerator.totalOps = get(LGConstants.TOTALOPS);
+    LoadGenerator.numOfBytes[LoadGenerator.READ_DATA] =
+        get(LGConstants.READ_BYTES);
+    LoadGenerator.parseReadMode(jobConf.get(LGConstants.LG_READMODE,
+        LoadGenerator.formatReadMode()));
+    long numMaps = get(LGConstants.NUM_MAPS);
+    // The maps run concurrently, so the cluster throughput is the total
+    // number of operations over the mean elapsed time of a map. Only the
+    // maps that succeeded send their results.
+    long succeeded = numMaps - get(LGConstants.NUM_FAILED_MAPS);
+    LoadGenerator.totalTime =
+        succeeded <= 0 ? 0 : get(LGConstants.ELAPSED_TIME) / succeeded;
+    LoadGenerator.warmUpOps = get(LGConstants.WARMUP_OPS);
+    LoadGenerator.warmUpTime =
+        succeeded <= 0 ? 0 : get(LGConstants.WARMUP_TIME) / succeeded;
+
+    FileContext fc = FileContext.getFileContext(jobConf);
+    FSDataOutputStream o = fc.create(
+        FileOutputFormat.getTaskOutputPath(jobConf, "Results"),
+        EnumSet.of(CreateFlag.CREATE), CreateOpts.createParent());
+    PrintStream out = new PrintStream(o);
+    try {
+      out.println("Number of map tasks: " + numMaps
+          + " (failed: " + get(LGConstants.NUM_FAILED_MAPS) + ")");
+      LoadGenerator.printResults(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  private long get(Text key) {
+    Long sum = sums.get(key);
+    return sum == null ? 0 : sum;
   }
 }
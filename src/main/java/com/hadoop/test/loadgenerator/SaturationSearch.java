@@ -0,0 +1,243 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hadoop.test.loadgenerator;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Searches for the highest load the NameNode sustains, parsed from
+ * <code>threads:&lt;start&gt;,&lt;max&gt;</code> to raise the number of
+ * closed-loop clients or <code>rate:&lt;start&gt;,&lt;max&gt;</code> to raise
+ * the open-loop rate in ops/s.
+ *
+ * The level doubles from step to step, starting at <code>start</code>, until
+ * a step is not sustainable or <code>max</code> is reached. A step is not
+ * sustainable if its load did not settle, if its p99 latency is over the
+ * SLO, or if its throughput stopped growing: it grew by less than
+ * {@link #MIN_SCALING} of the relative increase of the level over the
+ * highest sustainable step. The search then bisects between the highest
+ * sustainable and the lowest unsustainable level until they are within
+ * {@link #RESOLUTION} of each other, or one client apart.
+ *
+ * The search only decides on the levels; the caller runs every step and
+ * reports its results with {@link #record}.
+ */
+public class SaturationSearch {
+  /** What the search raises from step to step */
+  public enum Mode { THREADS, RATE }
+
+  /** The least growth of the throughput, relative to that of the level */
+  static final double MIN_SCALING = 0.5;
+  /** The bisection stops when the levels differ by less than this */
+  static final double RESOLUTION = 0.05;
+  private static final double GROWTH = 2;
+
+  /** The results of the step at one level */
+  public static class Step {
+    public final double level;
+    public final double opsPerSec;
+    public final double avgMillis;
+    public final double p50Millis;
+    public final double p99Millis;
+    /** Why the step is not sustainable, or null if it is */
+    public final String limit;
+
+    Step(double level, double opsPerSec, double avgMillis, double p50Millis,
+        double p99Millis, String limit) {
+      this.level = level;
+      this.opsPerSec = opsPerSec;
+      this.avgMillis = avgMillis;
+      this.p50Millis = p50Millis;
+      this.p99Millis = p99Millis;
+      this.limit = limit;
+    }
+
+    public boolean isSustainable() {
+      return limit == null;
+    }
+  }
+
+  private final Mode mode;
+  private final double max;
+  private final double sloMillis;
+  private final List<Step> steps = new ArrayList<Step>();
+  /** The highest sustainable step so far */
+  private Step best = null;
+  /** The lowest unsustainable level so far, or NaN */
+  private double limit = Double.NaN;
+  /** The level of the next step, or -1 once the search is over */
+  private double next;
+
+  /**
+   * @param mode what to raise
+   * @param start the level of the first step
+   * @param max the highest level to try
+   * @param sloMillis the highest sustainable p99 latency in milliseconds,
+   *                  or 0 for none
+   */
+  public SaturationSearch(Mode mode, double start, double max,
+      double sloMillis) {
+    if (!(start > 0) || !(max >= start) || !(sloMillis >= 0)
+        || (mode == Mode.THREADS && (start != Math.rint(start)
+            || max != Math.rint(max)))) {
+      throw new IllegalArgumentException("Illegal search from " + start
+          + " to " + max + " with SLO " + sloMillis);
+    }
+    this.mode = mode;
+    this.max = max;
+    this.sloMillis = sloMillis;
+    this.next = start;
+  }
+
+  /**
+   * Parse a search specification.
+   *
+   * @param spec threads:&lt;start&gt;,&lt;max&gt; with whole numbers of
+   *             clients or rate:&lt;start&gt;,&lt;max&gt; in ops/s
+   * @param sloMillis the p99 latency SLO in milliseconds, or 0 for none
+   * @return the search, or null if the specification is not valid
+   */
+  public static SaturationSearch parse(String spec, double sloMillis) {
+    int colon = spec.indexOf(':');
+    if (colon < 0) {
+      return null;
+    }
+    String kind = spec.substring(0, colon);
+    Mode mode = kind.equals("threads") ? Mode.THREADS :
+        kind.equals("rate") ? Mode.RATE : null;
+    String[] range = spec.substring(colon + 1).split(",");
+    if (mode == null || range.length != 2) {
+      return null;
+    }
+    try {
+      return new SaturationSearch(mode, Double.parseDouble(range[0]),
+          Double.parseDouble(range[1]), sloMillis);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  public Mode getMode() {
+    return mode;
+  }
+
+  /** @return the highest level the search may try */
+  public double getMax() {
+    return max;
+  }
+
+  /** @return the level of the next step, or -1 if the search is over */
+  public double nextLevel() {
+    return next;
+  }
+
+  /**
+   * Record the results of the step at {@link #nextLevel()} and decide on
+   * the next one.
+   *
+   * @param steady whether the load settled before it was measured
+   * @return the step
+   */
+  public Step record(boolean steady, double opsPerSec, double avgMillis,
+      double p50Millis, double p99Millis) {
+    double level = next;
+    String why = null;
+    if (!steady) {
+      why = "did not settle";
+    } else if (sloMillis > 0 && p99Millis > sloMillis) {
+      why = "p99 over the SLO";
+    } else if (best != null && opsPerSec - best.opsPerSec
+        < MIN_SCALING * (level / best.level - 1) * best.opsPerSec) {
+      why = "throughput stopped growing";
+    }
+    Step step = new Step(level, opsPerSec, avgMillis, p50Millis, p99Millis,
+        why);
+    steps.add(step);
+    if (step.isSustainable()) {
+      best = step;
+    } else {
+      limit = Double.isNaN(limit) ? level : Math.min(limit, level);
+    }
+
+    if (Double.isNaN(limit)) {
+      next = level >= max ? -1 : Math.min(level * GROWTH, max);
+    } else {
+      double low = best == null ? 0 : best.level;
+      double mid = (low + limit) / 2;
+      if (mode == Mode.THREADS) {
+        mid = Math.floor(mid);
+      }
+      next = mid <= low || limit - low <= RESOLUTION * limit ? -1 : mid;
+    }
+    return step;
+  }
+
+  /** @return the highest sustainable step, or null if there is none */
+  public Step getBest() {
+    return best;
+  }
+
+  public List<Step> getSteps() {
+    return steps;
+  }
+
+  /** Print the step as a line of the throughput/latency curve */
+  public void printStep(PrintStream out, Step step) {
+    out.println(String.format("%10s %12.1f %10.3f %10.3f %10.3f  %s",
+        formatLevel(step.level), step.opsPerSec, step.avgMillis,
+        step.p50Millis, step.p99Millis,
+        step.isSustainable() ? "sustainable" : step.limit));
+  }
+
+  /** Print what the search is over and the header of the steps */
+  public void printHeader(PrintStream out) {
+    out.println("Saturation search over " +
+        (mode == Mode.THREADS ? "threads" : "the rate") +
+        (sloMillis > 0 ? ", p99 SLO " + sloMillis + "ms" : "") + ":");
+    out.println(String.format("%10s %12s %10s %10s %10s",
+        mode == Mode.THREADS ? "threads" : "rate", "ops/s", "avg(ms)",
+        "p50(ms)", "p99(ms)"));
+  }
+
+  /** Print the throughput/latency curve in the order of the levels and
+   * the highest sustainable throughput */
+  public void printResults(PrintStream out) {
+    printHeader(out);
+    List<Step> curve = new ArrayList<Step>(steps);
+    curve.sort((a, b) -> Double.compare(a.level, b.level));
+    for (Step step : curve) {
+      printStep(out, step);
+    }
+    if (best == null) {
+      out.println("No step was sustainable");
+    } else {
+      out.println("Max sustainable throughput: " + best.opsPerSec +
+          "ops/s at " + (mode == Mode.THREADS ? formatLevel(best.level) +
+          " threads" : formatLevel(best.level) + " ops/s offered"));
+    }
+  }
+
+  private String formatLevel(double level) {
+    return mode == Mode.THREADS ? Long.toString((long) level) :
+        String.format("%.1f", level);
+  }
+}
@@ -0,0 +1,101 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hadoop.test.loadgenerator;
+
+/**
+ * Decides when a load has settled after its start, when the JIT, the IPC
+ * connections and the NameNode caches are still warming up. It is fed one
+ * sample of the throughput and of the mean latency per interval and reports
+ * a steady state once the coefficient of variation (standard deviation over
+ * mean) of both, over the last <code>window</code> samples, is at most
+ * <code>maxCV</code>.
+ */
+public class SteadyStateDetector {
+  private final double maxCV;
+  private final double[] throughput;
+  private final double[] latency;
+  private int numSamples = 0;
+  private double throughputCV = Double.NaN;
+  private double latencyCV = Double.NaN;
+
+  /**
+   * @param window the number of samples the variation is computed over
+   * @param maxCV the largest coefficient of variation of a steady state
+   */
+  public SteadyStateDetector(int window, double maxCV) {
+    if (window < 2 || !(maxCV > 0)) {
+      throw new IllegalArgumentException("Illegal window " + window
+          + " or coefficient of variation " + maxCV);
+    }
+    this.maxCV = maxCV;
+    throughput = new double[window];
+    latency = new double[window];
+  }
+
+  /**
+   * Add the sample of one interval.
+   *
+   * @param opsPerSec the throughput in the interval
+   * @param avgLatency the mean latency of the operations of the interval
+   * @return true if the load is steady as of this sample
+   */
+  public boolean addSample(double opsPerSec, double avgLatency) {
+    int slot = numSamples++ % throughput.length;
+    throughput[slot] = opsPerSec;
+    latency[slot] = avgLatency;
+    if (numSamples < throughput.length) {
+      return false;
+    }
+    throughputCV = cv(throughput);
+    latencyCV = cv(latency);
+    return throughputCV <= maxCV && latencyCV <= maxCV;
+  }
+
+  /** Forget the samples, e.g. after the load was paused */
+  public void reset() {
+    numSamples = 0;
+    throughputCV = Double.NaN;
+    latencyCV = Double.NaN;
+  }
+
+  /** @return the throughput variation of the last full window, or NaN */
+  public double getThroughputCV() {
+    return throughputCV;
+  }
+
+  /** @return the latency variation of the last full window, or NaN */
+  public double getLatencyCV() {
+    return latencyCV;
+  }
+
+  /** The coefficient of variation of the values; NaN if their mean is 0 */
+  private static double cv(double[] values) {
+    double sum = 0;
+    for (double v : values) {
+      sum += v;
+    }
+    double mean = sum / values.length;
+    double squares = 0;
+    for (double v : values) {
+      squares += (v - mean) * (v - mean);
+    }
+    return mean > 0 ? Math.sqrt(squares / values.length) / mean : Double.NaN;
+  }
+}
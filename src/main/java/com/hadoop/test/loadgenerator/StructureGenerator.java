@@ -18,12 +18,20 @@
 
 package com.hadoop.test.loadgenerator;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This program generates a random namespace structure with the following
@@ -33,6 +41,15 @@ import java.util.Random;
  *    [2*maxDepth/3, maxDepth].
  * 3. Files are randomly placed in the empty directories. The size of each
  *    file follows Gaussian distribution.
+ * The tree is never held in memory: it is generated from the seed while
+ * it is written out, keeping only the directories on the current path, so
+ * the memory used grows with the depth of the tree only.
+ * Every directory generates its subdirectories from a random stream of
+ * its own, seeded from the stream of its parent. The tree is cut into a
+ * few thousand subtrees that are generated independently by
+ * numOfThreads threads; the subtrees get the files in proportion to their
+ * leaves. For a given seed the output is the same whatever the number of
+ * threads is.
  * The generated namespace structure is described by two files in the output
  * directory. Each line of the first file 
  * contains the full name of a leaf directory.  
@@ -48,6 +65,25 @@ import java.util.Random;
  *   -avgFileSize <avgFileSizeInBlocks>: average size of blocks; default is 1.
  *   -outDir <outDir>: output directory; default is the current directory.
  *   -seed <seed>: random number generator seed; default is the current time.
+ *   -numOfThreads <numOfThreads>: number of threads generating the tree;
+ *       default is 1.
+ *   -numOfShards <numOfShards>: split the output into this many pairs of
+ *       files dirStructure.i and fileStructure.i, which hold consecutive
+ *       parts of the output of about the same size and are written in
+ *       parallel; default is 1, which writes dirStructure and fileStructure.
+ *   -fileSize <distribution>: distribution of the file sizes in blocks,
+ *       e.g. lognormal:0,1.5; negative sizes are taken as 0. By default
+ *       the sizes follow a Gaussian distribution around avgFileSize.
+ *   -fanOut <distribution>: distribution of the number of subdirectories
+ *       of a directory, e.g. pareto:1,1.2, instead of minWidth and maxWidth.
+ *   -depth <distribution>: distribution of the depth of a subdirectory,
+ *       that is of the number of levels below it, which is capped at one
+ *       less than the depth of its parent. By default the depth is in the
+ *       range [2*(d-1)/3, d-1] for a parent of depth d.
+ *   -filesPerLeaf <distribution>: distribution of the number of files in
+ *       a leaf directory, e.g. zipf:10000,1.1, instead of spreading
+ *       numOfFiles files uniformly over the leaves.
+ * See Distribution for the distributions that can be given.
  */
 public class StructureGenerator {
   private int maxDepth = 5;
@@ -63,9 +99,26 @@ public class StructureGenerator {
     "-numOfFiles <#OfFiles>\n" +
     "-avgFileSize <avgFileSizeInBlocks>\n" +
     "-outDir <outDir>\n" +
-    "-seed <seed>";
+    "-seed <seed>\n" +
+    "-numOfThreads <numOfThreads>\n" +
+    "-numOfShards <numOfShards>\n" +
+    "-fileSize <distribution>\n" +
+    "-fanOut <distribution>\n" +
+    "-depth <distribution>\n" +
+    "-filesPerLeaf <distribution>";
   
-  private Random r = null; 
+  private long seed = System.currentTimeMillis();
+  private int numOfThreads = 1;
+  private int numOfShards = 1;
+  private Distribution fileSizes = null;
+  private Distribution fanOut = null;
+  private Distribution depths = null;
+  private Distribution filesPerLeaf = null;
+  final private static int OUTPUT_BUFFER_SIZE = 1 << 16;
+  /** Minimum number of subtrees the tree is cut into, if it has them */
+  final private static int MIN_UNITS = 4096;
+  /** Separates the stream placing the files from the one of the tree */
+  final private static long PLACEMENT_SALT = 0x5DEECE66DL;
   
   /** Default directory for storing file/directory structure */
   final static File DEFAULT_STRUCTURE_DIRECTORY = new File(".");
@@ -78,8 +131,9 @@ public class StructureGenerator {
   
   /**
    * The main function first parses the command line arguments,
-   * then generates in-memory directory structure and outputs to a file,
-   * last generates in-memory files and outputs them to a file.
+   * then counts the leaves of the subtrees of the directory tree in a
+   * first walk and outputs the directories and the files placed in them
+   * in a second.
    */
   public int run(String[] args) throws Exception {
     int exitCode = 0;
@@ -87,10 +141,7 @@ public class StructureGenerator {
     if (exitCode != 0) {
       return exitCode;
     }
-    genDirStructure();
-    output(new File(outDir, DIR_STRUCTURE_FILE_NAME));
-    genFileStructure();
-    outputFiles(new File(outDir, FILE_STRUCTURE_FILE_NAME));
+    output();
     return exitCode;
   }
 
@@ -127,7 +178,29 @@ public class StructureGenerator {
         } else if (args[i].equals("-outDir")) {
           outDir = new File(args[++i]);
         } else if (args[i].equals("-seed")) {
-          r = new Random(Long.parseLong(args[++i]));
+          seed = Long.parseLong(args[++i]);
+        } else if (args[i].equals("-numOfThreads")) {
+          numOfThreads = Integer.parseInt(args[++i]);
+          if (numOfThreads<1) {
+            System.err.println(
+                "Number of threads must be positive: " + numOfThreads);
+            return -1;
+          }
+        } else if (args[i].equals("-fileSize")) {
+          fileSizes = Distribution.parse(args[++i]);
+        } else if (args[i].equals("-fanOut")) {
+          fanOut = Distribution.parse(args[++i]);
+        } else if (args[i].equals("-depth")) {
+          depths = Distribution.parse(args[++i]);
+        } else if (args[i].equals("-filesPerLeaf")) {
+          filesPerLeaf = Distribution.parse(args[++i]);
+        } else if (args[i].equals("-numOfShards")) {
+          numOfShards = Integer.parseInt(args[++i]);
+          if (numOfShards<1) {
+            System.err.println(
+                "Number of shards must be positive: " + numOfShards);
+            return -1;
+          }
         } else {
           System.err.println(USAGE);
           return -1;
@@ -137,6 +210,13 @@ public class StructureGenerator {
       System.err.println("Illegal parameter: " + e.getLocalizedMessage());
       System.err.println(USAGE);
       return -1;
+    } catch (IllegalArgumentException e) {
+      System.err.println("Illegal distribution: " + e.getLocalizedMessage());
+      return -1;
+    } catch (IOException e) {
+      System.err.println("Cannot read distribution: " +
+          e.getLocalizedMessage());
+      return -1;
     }
     
     if (maxWidth < minWidth) {
@@ -144,153 +224,419 @@ public class StructureGenerator {
           "maxWidth must be bigger than minWidth: " + maxWidth);
       return -1;
     }
-    
-    if (r==null) {
-      r = new Random();
-    }
     return 0;
   }
   
-  /** In memory representation of a directory */
-  private static class INode {
-    private String name;
-    private List<INode> children = new ArrayList<INode>();
-    
-    /** Constructor */
-    private INode(String name) {
-      this.name = name;
+  /** A subtree of the directory tree that is generated on its own.
+   * Everything below its root follows from the seed of the root, so the
+   * units can be walked in any order and by any thread.
+   */
+  private static class Unit {
+    private final String path;
+    private final long seed;
+    private final int depth;
+    private long numOfLeaves;
+    private long firstFile;
+    private long numOfFiles;
+    private int shard;
+
+    private Unit(String path, long seed, int depth) {
+      this.path = path;
+      this.seed = seed;
+      this.depth = depth;
     }
-    
-    /** Add a child (subdir/file) */
-    private void addChild(INode child) {
-      children.add(child);
+  }
+
+  /** Split the directory tree into units: replace every unit by the
+   * subtrees of its root, one level at a time, until there are at least
+   * MIN_UNITS of them or only leaves are left. The units are in depth
+   * first order and depend on nothing but the seed and the tree options.
+   */
+  private List<Unit> splitTree() {
+    List<Unit> units = new ArrayList<Unit>();
+    units.add(new Unit("", seed, maxDepth));
+    boolean expanded = true;
+    while (expanded && units.size() < MIN_UNITS) {
+      expanded = false;
+      List<Unit> next = new ArrayList<Unit>();
+      for (Unit unit : units) {
+        SplittableRandom r = new SplittableRandom(unit.seed);
+        int numOfSubDirs = numOfSubDirs(r, unit.depth);
+        if (numOfSubDirs == 0) {
+          next.add(unit);
+          continue;
+        }
+        for (int i = 0; i < numOfSubDirs; i++) {
+          int childDepth = childDepth(r, unit.depth);
+          next.add(new Unit(unit.path + "/dir" + i, r.nextLong(), childDepth));
+        }
+        expanded = true;
+      }
+      units = next;
     }
-    
-    /** Output the subtree rooted at the current node. 
-     * Only the leaves are printed.
-     */
-    private void output(PrintStream out, String prefix) {
-      prefix = prefix==null?name:prefix+"/"+name;
-      if (children.isEmpty()) {
-        out.println(prefix);
-      } else {
-        for (INode child : children) {
-          child.output(out, prefix);
+    return units;
+  }
+
+  /** @return the number of subdirectories of a directory with
+   * <code>depth</code> levels below it, drawn from fanOut or in the range
+   * of [minWidth, maxWidth] */
+  private int numOfSubDirs(SplittableRandom r, int depth) {
+    if (depth == 0) {
+      return 0;
+    } else if (fanOut != null) {
+      return (int) Math.min(fanOut.sampleCount(r), Integer.MAX_VALUE);
+    }
+    return minWidth + r.nextInt(maxWidth-minWidth+1);
+  }
+
+  /** @return the depth of a subdirectory of a directory with
+   * <code>depth</code> levels below it, drawn from depths but at most
+   * depth-1, or in the range of [2*(depth-1)/3, depth-1] */
+  private int childDepth(SplittableRandom r, int depth) {
+    int maxDepth = depth - 1;
+    if (depths != null) {
+      return (int) Math.min(depths.sampleCount(r), maxDepth);
+    }
+    int minDepth = maxDepth*2/3;
+    return (maxDepth == 0)?0:(r.nextInt(maxDepth-minDepth+1)+minDepth);
+  }
+
+  /** @return the size of a file in blocks, drawn from fileSizes but at
+   * least 0, or from a Gaussian distribution around avgFileSize */
+  private double fileSize(SplittableRandom r) {
+    if (fileSizes != null) {
+      return Math.max(0, fileSizes.sample(r));
+    }
+    double fileSize;
+    do {
+      fileSize = r.nextGaussian()+avgFileSize;
+    } while (fileSize<0);
+    return fileSize;
+  }
+
+  /** Walk the subtree of a unit depth first, generating it as it goes, so
+   * that only the nodes on the current path are kept.
+   * Each directory draws the number of its subdirectories, their depths
+   * and their seeds from a stream seeded with its own seed.
+   * Each leaf directory is printed to <code>dirOut</code> and the files
+   * placed into it to <code>fileOut</code>. If they are null the walk only
+   * counts the leaves of the unit, and its files if filesPerLeaf is given.
+   */
+  private void walk(Unit unit, PrintStream dirOut, PrintStream fileOut) {
+    Placement placement = fileOut == null ? null : new Placement(unit);
+    // Per level of the current path: the random stream and the depth left
+    // below the node, its number of subdirectories, the next one to visit
+    // and its path length
+    SplittableRandom[] rand = new SplittableRandom[unit.depth + 1];
+    int[] depth = new int[unit.depth + 1];
+    int[] numOfSubDirs = new int[unit.depth + 1];
+    int[] nextSubDir = new int[unit.depth + 1];
+    int[] pathLength = new int[unit.depth + 1];
+    StringBuilder path = new StringBuilder(unit.path);
+    long leaves = 0;
+    long files = 0;
+    int level = 0;
+    rand[0] = new SplittableRandom(unit.seed);
+    depth[0] = unit.depth;
+    pathLength[0] = -1;
+    while (true) {
+      if (pathLength[level] == -1) { // first visit of the node
+        pathLength[level] = path.length();
+        numOfSubDirs[level] = numOfSubDirs(rand[level], depth[level]);
+        if (numOfSubDirs[level] == 0) {
+          long leafFiles = filesPerLeaf == null ? -1 :
+              filesPerLeaf.sampleCount(rand[level]);
+          if (dirOut != null) {
+            dirOut.println(path);
+          }
+          if (placement != null) {
+            placement.placeFiles(fileOut, path, leaves, leafFiles);
+          }
+          leaves++;
+          files += Math.max(leafFiles, 0);
         }
       }
+      if (nextSubDir[level] < numOfSubDirs[level]) {
+        int childDepth = childDepth(rand[level], depth[level]);
+        long childSeed = rand[level].nextLong();
+        path.setLength(pathLength[level]);
+        path.append("/dir").append(nextSubDir[level]++);
+        level++;
+        rand[level] = new SplittableRandom(childSeed);
+        depth[level] = childDepth;
+        nextSubDir[level] = 0;
+        pathLength[level] = -1;
+      } else if (level == 0) {
+        break;
+      } else {
+        level--;
+      }
     }
-    
-    /** Output the files in the subtree rooted at this node */
-    protected void outputFiles(PrintStream out, String prefix) {
-      prefix = prefix==null?name:prefix+"/"+name;
-      for (INode child : children) {
-        child.outputFiles(out, prefix);
+    if (fileOut == null) {
+      unit.numOfLeaves = leaves;
+      if (filesPerLeaf != null) {
+        unit.numOfFiles = files;
       }
     }
-    
-    /** Add all the leaves in the subtree to the input list */
-    private void getLeaves(List<INode> leaves) {
-      if (children.isEmpty()) {
-        leaves.add(this);
-      } else {
-        for (INode child : children) {
-          child.getLeaves(leaves);
+  }
+
+  /** Places the files of a unit into its leaves. Unless the number of
+   * files of each leaf is drawn from filesPerLeaf, every file goes into a
+   * leaf chosen uniformly at random. Instead of drawing all leaf indices
+   * and sorting them, the sorted sequence of uniform numbers is generated
+   * directly, one at a time, so that the files come out in the order of
+   * their leaves and nothing needs to be kept.
+   */
+  private class Placement {
+    private final SplittableRandom r;
+    private final long numOfLeaves;
+    private long filesLeft;
+    private long nextFileId;
+    private double position = 0;
+    private long nextLeaf;
+
+    private Placement(Unit unit) {
+      r = new SplittableRandom(unit.seed ^ PLACEMENT_SALT);
+      numOfLeaves = unit.numOfLeaves;
+      filesLeft = unit.numOfFiles;
+      nextFileId = unit.firstFile;
+      if (filesPerLeaf == null) {
+        nextFileLeaf();
+      }
+    }
+
+    /** Draw the next of the sorted uniform numbers and its leaf */
+    private void nextFileLeaf() {
+      if (filesLeft == 0) {
+        nextLeaf = Long.MAX_VALUE;
+        return;
+      }
+      // The minimum of k uniform numbers in [x, 1) is 1 - (1-x) * U^(1/k)
+      position += (1 - position) *
+          (1 - Math.pow(r.nextDouble(), 1.0 / filesLeft));
+      filesLeft--;
+      nextLeaf = Math.min((long) (position * numOfLeaves), numOfLeaves - 1);
+    }
+
+    /** Print the files placed into leaf number <code>leaf</code>, which
+     * are <code>leafFiles</code> many if that is not negative.
+     */
+    private void placeFiles(PrintStream out, CharSequence dir, long leaf,
+        long leafFiles) {
+      if (leafFiles >= 0) {
+        for (long i = 0; i < leafFiles; i++) {
+          printFile(out, dir);
         }
+        return;
       }
+      while (nextLeaf == leaf) {
+        printFile(out, dir);
+        nextFileLeaf();
+      }
+    }
+
+    private void printFile(PrintStream out, CharSequence dir) {
+      out.println(dir + "/" + FILE_NAME_PREFIX + nextFileId++ + " " +
+          fileSize(r));
     }
   }
-  
-  /** In memory representation of a file */
-  private static class FileINode extends INode {
-    private double numOfBlocks;
 
-    /** constructor */
-    private FileINode(String name, double numOfBlocks) {
-      super(name);
-      this.numOfBlocks = numOfBlocks;
+  /** Count the leaves of every unit, give each unit its share of the files
+   * and assign the units to shards. Unless every leaf draws its number of
+   * files, the files are split among the units as if every file chose a
+   * leaf uniformly at random. The shards get contiguous runs of units with
+   * about the same number of lines each.
+   */
+  private void planUnits(final List<Unit> units, ExecutorService pool)
+      throws Exception {
+    List<Future<?>> counts = new ArrayList<Future<?>>();
+    for (final Unit unit : units) {
+      counts.add(pool.submit(new Runnable() {
+        @Override
+        public void run() {
+          walk(unit, null, null);
+        }
+      }));
     }
-    
-    /** Output a file attribute */
-    @Override
-    protected void outputFiles(PrintStream out, String prefix) {
-      prefix = (prefix == null)?super.name: prefix + "/"+super.name;
-      out.println(prefix + " " + numOfBlocks);
+    for (Future<?> count : counts) {
+      count.get();
+    }
+    long totalLeaves = 0;
+    for (Unit unit : units) {
+      totalLeaves += unit.numOfLeaves;
+    }
+    SplittableRandom r = new SplittableRandom(seed ^ PLACEMENT_SALT);
+    long leavesLeft = totalLeaves;
+    long filesLeft = numOfFiles;
+    long totalFiles = 0;
+    for (Unit unit : units) {
+      unit.firstFile = totalFiles;
+      if (filesPerLeaf == null) {
+        unit.numOfFiles = binomial(r, filesLeft,
+            (double) unit.numOfLeaves / leavesLeft);
+        leavesLeft -= unit.numOfLeaves;
+        filesLeft -= unit.numOfFiles;
+      }
+      totalFiles += unit.numOfFiles;
+    }
+    long totalLines = Math.max(totalLeaves + totalFiles, 1);
+    long linesBefore = 0;
+    for (Unit unit : units) {
+      unit.shard = (int) (linesBefore * numOfShards / totalLines);
+      linesBefore += unit.numOfLeaves + unit.numOfFiles;
     }
   }
 
-  private INode root;
-  
-  /** Generates a directory tree with a max depth of <code>maxDepth</code> */
-  private void genDirStructure() {
-    root = genDirStructure("", maxDepth);
+  /** @return the structure file with the given name, or the name of shard
+   * <code>shard</code> of it if the output is sharded */
+  private File outputFile(String name, int shard) {
+    return new File(outDir, numOfShards == 1 ? name : name + "." + shard);
   }
-  
-  /** Generate a directory tree rooted at <code>rootName</code>
-   * The number of subtree is in the range of [minWidth, maxWidth].
-   * The maximum depth of each subtree is in the range of
-   * [2*maxDepth/3, maxDepth].
+
+  /** Output directory structure and files' attributes, each shard by one
+   * task. Each line of a directory structure file contains the directory
+   * name; only empty directory names are printed. Each line of a file
+   * structure file contains a file name and its length.
    */
-  private INode genDirStructure(String rootName, int maxDepth) {
-    INode root = new INode(rootName);
-    
-    if (maxDepth>0) {
-      maxDepth--;
-      int minDepth = maxDepth*2/3;
-      // Figure out the number of subdirectories to generate
-      int numOfSubDirs = minWidth + r.nextInt(maxWidth-minWidth+1);
-      // Expand the tree
-      for (int i=0; i<numOfSubDirs; i++) {
-        int childDepth = (maxDepth == 0)?0:
-          (r.nextInt(maxDepth-minDepth+1)+minDepth);
-        INode child = genDirStructure("dir"+i, childDepth);
-        root.addChild(child);
+  private void output() throws Exception {
+    removeStaleOutput(DIR_STRUCTURE_FILE_NAME);
+    removeStaleOutput(FILE_STRUCTURE_FILE_NAME);
+    final List<Unit> units = splitTree();
+    ExecutorService pool = Executors.newFixedThreadPool(numOfThreads);
+    try {
+      planUnits(units, pool);
+      List<Future<?>> shards = new ArrayList<Future<?>>();
+      for (int i = 0; i < numOfShards; i++) {
+        final int shard = i;
+        shards.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            outputShard(units, shard);
+            return null;
+          }
+        }));
+      }
+      for (Future<?> shard : shards) {
+        shard.get();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
       }
+      throw e;
+    } finally {
+      pool.shutdownNow();
     }
-    return root;
   }
-  
-  /** Collects leaf nodes in tree */
-  private List<INode> getLeaves() {
-    List<INode> leaveDirs = new ArrayList<INode>();
-    root.getLeaves(leaveDirs);
-    return leaveDirs;
+
+  /** Delete the files of an earlier run that this run does not overwrite,
+   * so that readers of the output directory do not pick them up */
+  private void removeStaleOutput(String name) throws IOException {
+    int i = numOfShards == 1 ? 0 : numOfShards;
+    for (; new File(outDir, name + "." + i).exists(); i++) {
+      Files.delete(new File(outDir, name + "." + i).toPath());
+    }
+    if (numOfShards > 1) {
+      Files.deleteIfExists(new File(outDir, name).toPath());
+    }
   }
-  
-  /** Decides where to place all the files and its length.
-   * It first collects all empty directories in the tree.
-   * For each file, it randomly chooses an empty directory to place the file.
-   * The file's length is generated using Gaussian distribution.
+
+  private void outputShard(List<Unit> units, int shard) throws IOException {
+    File dirFile = outputFile(DIR_STRUCTURE_FILE_NAME, shard);
+    File fileFile = outputFile(FILE_STRUCTURE_FILE_NAME, shard);
+    System.out.println("Printing to " + dirFile.toString());
+    System.out.println("Printing to " + fileFile.toString());
+    PrintStream dirOut = new PrintStream(new BufferedOutputStream(
+        new FileOutputStream(dirFile), OUTPUT_BUFFER_SIZE));
+    try {
+      PrintStream fileOut = new PrintStream(new BufferedOutputStream(
+          new FileOutputStream(fileFile), OUTPUT_BUFFER_SIZE));
+      try {
+        for (Unit unit : units) {
+          if (unit.shard == shard) {
+            walk(unit, dirOut, fileOut);
+          }
+        }
+      } finally {
+        fileOut.close();
+      }
+      if (fileOut.checkError()) {
+        throw new IOException("Failed to write " + fileFile);
+      }
+    } finally {
+      dirOut.close();
+    }
+    if (dirOut.checkError()) {
+      throw new IOException("Failed to write " + dirFile);
+    }
+  }
+
+  /** @return a sample of the binomial distribution with <code>n</code>
+   * trials of success probability <code>p</code>. The number of the n
+   * uniform numbers below p is found by bisecting on order statistics:
+   * the k-th smallest of them follows Beta(k, n+1-k), and the numbers on
+   * either side of it are again uniform, so it takes O(log n) steps.
    */
-  private void genFileStructure() {
-    List<INode> leaves = getLeaves();
-    int totalLeaves = leaves.size();
-    for (int i=0; i<numOfFiles; i++) {
-      int leaveNum = r.nextInt(totalLeaves);
-      double fileSize;
-      do {
-        fileSize = r.nextGaussian()+avgFileSize;
-      } while (fileSize<0);
-      leaves.get(leaveNum).addChild(
-          new FileINode(FILE_NAME_PREFIX+i, fileSize));
+  private static long binomial(SplittableRandom r, long n, double p) {
+    long successes = 0;
+    while (n > 16 && p > 0 && p < 1) {
+      long k = (n + 1) / 2;
+      double x = gamma(r, k);
+      double kth = x / (x + gamma(r, n + 1 - k));
+      if (kth < p) {
+        successes += k;
+        n -= k;
+        p = (p - kth) / (1 - kth);
+      } else {
+        n = k - 1;
+        p = p / kth;
+      }
+    }
+    if (p >= 1) {
+      return successes + n;
     }
+    for (; n > 0; n--) {
+      if (r.nextDouble() < p) {
+        successes++;
+      }
+    }
+    return successes;
   }
-  
-  /** Output directory structure to a file, each line of the file
-   * contains the directory name. Only empty directory names are printed. */
-  private void output(File outFile) throws FileNotFoundException {
-    System.out.println("Printing to " + outFile.toString());
-    PrintStream out = new PrintStream(outFile);
-    root.output(out, null);
-    out.close();
+
+  /** @return a sample of the gamma distribution with the given shape of at
+   * least 1, using the method of Marsaglia and Tsang */
+  private static double gamma(SplittableRandom r, double shape) {
+    double d = shape - 1.0 / 3;
+    double c = 1 / Math.sqrt(9 * d);
+    while (true) {
+      double x;
+      double v;
+      do {
+        x = r.nextGaussian();
+        v = 1 + c * x;
+      } while (v <= 0);
+      v = v * v * v;
+      double u = r.nextDouble();
+      if (Math.log(u) < 0.5 * x * x + d - d * v + d * Math.log(v)) {
+        return d * v;
+      }
+    }
   }
-  
-  /** Output all files' attributes to a file, each line of the output file
-   * contains a file name and its length. */
-  private void outputFiles(File outFile) throws FileNotFoundException {
-    System.out.println("Printing to " + outFile.toString());
-    PrintStream out = new PrintStream(outFile);
-    root.outputFiles(out, null);
-    out.close();
+
+  /** @return the structure file <code>name</code> in <code>dir</code>, or
+   * its shards in order if StructureGenerator wrote it in shards */
+  static List<File> structureFiles(File dir, String name) {
+    List<File> files = new ArrayList<File>();
+    File file = new File(dir, name);
+    if (!file.exists()) {
+      for (int i = 0; new File(dir, name + "." + i).exists(); i++) {
+        files.add(new File(dir, name + "." + i));
+      }
+    }
+    if (files.isEmpty()) {
+      files.add(file);
+    }
+    return files;
   }
   
   /**
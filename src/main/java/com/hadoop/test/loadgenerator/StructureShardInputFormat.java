@@ -0,0 +1,43 @@
+package com.hadoop.test.loadgenerator;
+
+import java.io.IOException;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.InputFormat;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.conf.Configured;
+
+/** One split per structure shard written by DataGeneratorMR. The length of
+ * a split is the size of its shard, so the largest shards are scheduled
+ * first. Like DummyInputFormat, every split yields a single dummy record;
+ * the mapper reads its shard files itself.
+ */
+public class StructureShardInputFormat extends Configured
+    implements InputFormat<LongWritable, Text> {
+  @Override
+  public InputSplit[] getSplits(JobConf conf, int numSplits)
+      throws IOException {
+    int splits = conf.getInt(LGConstants.DG_NUMMAPTASKS, 1);
+    Path shardDir = new Path(conf.get(LGConstants.DG_SHARDDIR));
+    FileContext fc = FileContext.getFileContext(conf);
+    InputSplit[] ret = new InputSplit[splits];
+    for (int i = 0; i < splits; ++i) {
+      long length = fc.getFileStatus(DataGeneratorMR.dirShard(shardDir, i))
+          .getLen();
+      length += fc.getFileStatus(DataGeneratorMR.fileShard(shardDir, i))
+          .getLen();
+      ret[i] = new StructureShardSplit(i, length);
+    }
+    return ret;
+  }
+
+  @Override
+  public RecordReader<LongWritable, Text> getRecordReader(InputSplit ignored, JobConf conf, Reporter reporter) throws IOException {
+    return new com.hadoop.test.loadgenerator.DummySingleRecordReader();
+  }
+}
@@ -0,0 +1,40 @@
+package com.hadoop.test.loadgenerator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.apache.hadoop.mapred.InputSplit;
+
+/** One shard of the structure files that DataGeneratorMR wrote; the map
+ * task that gets it creates the entries of that shard.
+ */
+public class StructureShardSplit implements InputSplit {
+  private int shard;
+  private long length;
+
+  public StructureShardSplit() {
+  }
+
+  public StructureShardSplit(int shard, long length) {
+    this.shard = shard;
+    this.length = length;
+  }
+
+  /** @return the index of the shard */
+  public int getShard() { return shard; }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    out.writeInt(shard);
+    out.writeLong(length);
+  }
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    shard = in.readInt();
+    length = in.readLong();
+  }
+  @Override
+  public long getLength() { return length; }
+  @Override
+  public String[] getLocations() { return new String[0]; }
+}
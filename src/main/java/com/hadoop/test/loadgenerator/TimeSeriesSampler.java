@@ -0,0 +1,204 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hadoop.test.loadgenerator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import org.apache.hadoop.util.Time;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Samples the statistics of a running LoadGenerator every few seconds and
+ * appends the throughput and latency of each type of operation during the
+ * last interval to a local file.
+ *
+ * The clients keep running while they are sampled; the sampler only reads
+ * their lock-free OpStats and subtracts the previous sample. Each interval
+ * writes one row per type of operation that ran in it, as CSV or, if the
+ * file name ends with ".json" or ".jsonl", as JSON lines. The file is
+ * flushed after every interval so a killed run still leaves its data behind.
+ * In a map task the rows also name the task attempt, in a first "task"
+ * column or field, and the file name carries it as well (see
+ * {@link #taskFile(File, String)}), so the series of the maps of a job can
+ * be told apart and joined.
+ */
+public class TimeSeriesSampler extends Thread {
+  public static final Logger LOG =
+      LoggerFactory.getLogger(TimeSeriesSampler.class);
+  private static final String CSV_HEADER = "time,elapsedSecs,op,count," +
+      "opsPerSec,meanMs,p50Ms,p90Ms,p99Ms,p999Ms,maxMs";
+
+  private final OpStats[] stats;
+  private final String[] opNames;
+  /** What every row starts with to name the task attempt it is from */
+  private final String taskColumn;
+  private final long intervalMillis;
+  private final boolean json;
+  private final PrintWriter out;
+  private final long[] prevNumOfOps;
+  private final long[] prevExecutionTime;
+  private final LatencyHistogram[] prevLatencies;
+  private final long startTime = Time.monotonicNow();
+  private long prevSampleTime = startTime;
+  private volatile boolean running = true;
+
+  /**
+   * @param stats the statistics of all the clients
+   * @param opNames the names of the types of operation
+   * @param file the local file to append to
+   * @param intervalSecs the length of an interval in seconds
+   * @param task the id of the task attempt that runs the clients, or null
+   */
+  TimeSeriesSampler(OpStats[] stats, String[] opNames, File file,
+      long intervalSecs, String task) throws IOException {
+    super("TimeSeriesSampler");
+    setDaemon(true);
+    this.stats = stats;
+    this.opNames = opNames;
+    this.intervalMillis = intervalSecs * 1000;
+    String name = file.getName();
+    this.json = name.endsWith(".json") || name.endsWith(".jsonl");
+    this.taskColumn = task == null ? "" :
+        json ? "\"task\":\"" + task + "\"," : task + ",";
+    boolean isNew = !file.exists() || file.length() == 0;
+    this.out = new PrintWriter(new OutputStreamWriter(
+        new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    if (!json && isNew) {
+      out.println(task == null ? CSV_HEADER : "task," + CSV_HEADER);
+      out.flush();
+    }
+    prevNumOfOps = new long[opNames.length];
+    prevExecutionTime = new long[opNames.length];
+    prevLatencies = new LatencyHistogram[opNames.length];
+    for (int i = 0; i < opNames.length; i++) {
+      prevLatencies[i] = new LatencyHistogram();
+    }
+  }
+
+  /** @return <code>file</code> with the task attempt id inserted before the
+   * extension, e.g. ts_attempt_..._m_000001_0.csv, or <code>file</code>
+   * itself if <code>task</code> is null
+   */
+  static File taskFile(File file, String task) {
+    if (task == null) {
+      return file;
+    }
+    String name = file.getName();
+    int dot = name.lastIndexOf('.');
+    String taskName = dot <= 0 ? name + "_" + task :
+        name.substring(0, dot) + "_" + task + name.substring(dot);
+    return new File(file.getParentFile(), taskName);
+  }
+
+  @Override
+  public void run() {
+    long next = startTime + intervalMillis;
+    while (running) {
+      long sleep = next - Time.monotonicNow();
+      if (sleep > 0) {
+        try {
+          Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+          // woken up by shutdown
+        }
+        continue;
+      }
+      sample();
+      next += intervalMillis;
+    }
+  }
+
+  /** Write the last, possibly partial, interval and close the file */
+  void shutdown() throws InterruptedException {
+    running = false;
+    interrupt();
+    join();
+    sample();
+    out.close();
+  }
+
+  private void sample() {
+    long now = Time.monotonicNow();
+    double intervalSecs = (now - prevSampleTime) / 1000.0;
+    if (intervalSecs <= 0) {
+      return;
+    }
+    long wallClock = Time.now();
+    long elapsedSecs = (now - startTime) / 1000;
+    long totalOps = 0;
+    for (int op = 0; op < opNames.length; op++) {
+      long numOfOps = 0;
+      long executionTime = 0;
+      LatencyHistogram latencies = new LatencyHistogram();
+      for (OpStats s : stats) {
+        numOfOps += s.getNumOfOps(op);
+        executionTime += s.getExecutionTime(op);
+        latencies.add(s.getLatencies(op));
+      }
+      long count = numOfOps - prevNumOfOps[op];
+      long time = executionTime - prevExecutionTime[op];
+      LatencyHistogram interval = latencies.minus(prevLatencies[op]);
+      prevNumOfOps[op] = numOfOps;
+      prevExecutionTime[op] = executionTime;
+      prevLatencies[op] = latencies;
+      if (count <= 0) {
+        continue;
+      }
+      if (op < LoadGenerator.COUNTED_OP_TYPES) {
+        // first_byte and read_data are parts of a read, not operations
+        totalOps += count;
+      }
+      writeRow(wallClock, elapsedSecs, opNames[op], count,
+          count / intervalSecs, (double) time / count / 1e6, interval);
+    }
+    out.flush();
+    prevSampleTime = now;
+    LOG.info("Last " + intervalSecs + "s: " + totalOps / intervalSecs
+        + " ops/s");
+  }
+
+  private void writeRow(long time, long elapsedSecs, String op, long count,
+      double opsPerSec, double meanMs, LatencyHistogram h) {
+    if (json) {
+      out.println(String.format(Locale.ROOT,
+          "{%s\"time\":%d,\"elapsedSecs\":%d," +
+          "\"op\":\"%s\",\"count\":%d,\"opsPerSec\":%.3f,\"meanMs\":%.3f," +
+          "\"p50Ms\":%.3f,\"p90Ms\":%.3f,\"p99Ms\":%.3f,\"p999Ms\":%.3f," +
+          "\"maxMs\":%.3f}", taskColumn, time, elapsedSecs, op, count,
+          opsPerSec, meanMs,
+          h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(90) / 1e6,
+          h.getValueAtPercentile(99) / 1e6,
+          h.getValueAtPercentile(99.9) / 1e6, h.getMax() / 1e6));
+    } else {
+      out.println(String.format(Locale.ROOT,
+          "%s%d,%d,%s,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f,%.3f",
+          taskColumn, time, elapsedSecs, op, count, opsPerSec, meanMs,
+          h.getValueAtPercentile(50) / 1e6, h.getValueAtPercentile(90) / 1e6,
+          h.getValueAtPercentile(99) / 1e6,
+          h.getValueAtPercentile(99.9) / 1e6, h.getMax() / 1e6));
+    }
+  }
+}
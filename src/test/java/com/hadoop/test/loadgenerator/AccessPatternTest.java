@@ -0,0 +1,108 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for AccessPattern
+ */
+public class AccessPatternTest {
+  private static final int SAMPLES = 500000;
+
+  private static long[] counts(String spec, int n) {
+    AccessPattern.Picker picker = AccessPattern.parse(spec).newPicker(n);
+    SplittableRandom rand = new SplittableRandom(11);
+    long[] counts = new long[n];
+    for (int i = 0; i < SAMPLES; i++) {
+      counts[picker.pick(rand)]++;
+    }
+    return counts;
+  }
+
+  @Test
+  public void testUniformDrawsLikeNextInt() {
+    AccessPattern.Picker picker = AccessPattern.UNIFORM.newPicker(77);
+    SplittableRandom r1 = new SplittableRandom(1);
+    SplittableRandom r2 = new SplittableRandom(1);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(r1.nextInt(77), picker.pick(r2));
+    }
+  }
+
+  @Test
+  public void testZipfRanksFollowTheDepthFirstOrder() {
+    int n = 100;
+    long[] counts = counts("zipf:1.2", n);
+    double norm = 0;
+    for (int k = 1; k <= n; k++) {
+      norm += Math.pow(k, -1.2);
+    }
+    for (int k = 1; k <= 5; k++) {
+      assertEquals("rank " + k, Math.pow(k, -1.2) / norm,
+          (double) counts[k - 1] / SAMPLES, 0.005);
+    }
+  }
+
+  @Test
+  public void testScrambledZipfSpreadsTheSamePopularity() {
+    int n = 1000;
+    long[] plain = counts("zipf:0.99", n);
+    long[] scrambled = counts("scrambledzipf:0.99", n);
+    // the ten hottest entries fall into most of the hundreds
+    boolean[] hundreds = new boolean[10];
+    long[] sorted = scrambled.clone();
+    Arrays.sort(sorted);
+    long threshold = sorted[n - 10];
+    for (int i = 0; i < n; i++) {
+      if (scrambled[i] >= threshold) {
+        hundreds[i / 100] = true;
+      }
+    }
+    int hit = 0;
+    for (boolean h : hundreds) {
+      hit += h ? 1 : 0;
+    }
+    assertTrue("hundreds hit: " + hit, hit >= 8);
+    Arrays.sort(plain);
+    assertEquals(plain[n - 1], sorted[n - 1], SAMPLES / 100);
+  }
+
+  @Test
+  public void testHotSetGetsItsShareOfTheAccesses() {
+    int n = 1000;
+    long[] counts = counts("hotset:0.05,0.9", n);
+    long[] sorted = counts.clone();
+    Arrays.sort(sorted);
+    long hot = 0;
+    for (int i = n - 50; i < n; i++) {
+      hot += sorted[i];
+    }
+    assertEquals(0.9, (double) hot / SAMPLES, 0.005);
+    // the hot entries are spread over the test space
+    long firstHalf = 0;
+    for (int i = 0; i < n / 2; i++) {
+      if (counts[i] >= sorted[n - 50]) {
+        firstHalf++;
+      }
+    }
+    assertEquals(25, firstHalf, 3);
+  }
+
+  @Test
+  public void testIllegalSpecificationsAreRejected() {
+    for (String spec : new String[] {"zipf", "zipf:0", "zipf:a",
+        "hotset:0.1", "hotset:1.5,0.5", "hotset:0.1,-1", "latest:1"}) {
+      try {
+        AccessPattern.parse(spec);
+        throw new AssertionError("accepted " + spec);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+}
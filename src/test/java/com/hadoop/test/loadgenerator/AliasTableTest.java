@@ -0,0 +1,49 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.SplittableRandom;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for AliasTable
+ */
+public class AliasTableTest {
+
+  @Test
+  public void testSamplesFollowTheWeights() {
+    double[] weights = {10, 0, 3, 1, 6};
+    AliasTable table = new AliasTable(weights);
+    SplittableRandom rand = new SplittableRandom(7);
+    int samples = 1000000;
+    long[] counts = new long[weights.length];
+    for (int i = 0; i < samples; i++) {
+      counts[table.sample(rand)]++;
+    }
+    assertEquals("a zero weight must never be drawn", 0, counts[1]);
+    for (int i = 0; i < weights.length; i++) {
+      assertEquals("share of entry " + i, weights[i] / 20,
+          (double) counts[i] / samples, 0.005);
+    }
+  }
+
+  @Test
+  public void testSingleEntryIsAlwaysDrawn() {
+    AliasTable table = new AliasTable(new double[] {0, 0, 2});
+    SplittableRandom rand = new SplittableRandom(1);
+    for (int i = 0; i < 1000; i++) {
+      assertEquals(2, table.sample(rand));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAllZeroWeightsAreRejected() {
+    new AliasTable(new double[] {0, 0});
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeWeightsAreRejected() {
+    new AliasTable(new double[] {1, -1});
+  }
+}
@@ -0,0 +1,45 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for AuditLogEntry
+ */
+public class AuditLogEntryTest {
+
+  @Test
+  public void testFieldsAreParsed() {
+    AuditLogEntry e = AuditLogEntry.parse("2024-05-01 10:00:01,250 INFO " +
+        "FSNamesystem.audit: allowed=true\tugi=alice (auth:SIMPLE)\t" +
+        "ip=/10.0.0.1\tcmd=rename (options=[OVERWRITE])\tsrc=/a/b c\t" +
+        "dst=/a/d\tperm=alice:supergroup:rw-r--r--\tproto=rpc");
+    assertTrue(e.allowed);
+    assertEquals("alice (auth:SIMPLE)", e.ugi);
+    assertEquals("/10.0.0.1", e.ip);
+    assertEquals("rename (options=[OVERWRITE])", e.cmd);
+    assertEquals("/a/b c", e.src);
+    assertEquals("/a/d", e.dst);
+    assertEquals("alice:supergroup:rw-r--r--", e.perm);
+    AuditLogEntry next = AuditLogEntry.parse("2024-05-01 10:00:03,005 INFO " +
+        "FSNamesystem.audit: allowed=false\tugi=bob\tip=/10.0.0.2\t" +
+        "cmd=open\tsrc=/a/b\tdst=null\tperm=null");
+    assertFalse(next.allowed);
+    assertNull(next.dst);
+    assertEquals(1755, next.time - e.time);
+    assertFalse(e.getClient().equals(next.getClient()));
+  }
+
+  @Test
+  public void testOtherLinesAreNotEntries() {
+    assertNull(AuditLogEntry.parse(""));
+    assertNull(AuditLogEntry.parse("2024-05-01 10:00:01,250 INFO started"));
+    assertNull(AuditLogEntry.parse("May 1 10:00:01 allowed=true\tcmd=open"));
+    assertNull(AuditLogEntry.parse("2024-05-01 10:00:01,250 INFO " +
+        "FSNamesystem.audit: allowed=true\tugi=alice\tip=/10.0.0.1"));
+  }
+}
@@ -0,0 +1,70 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.hadoop.fs.permission.FsPermission;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for AuditLogReplay
+ */
+public class AuditLogReplayTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static String line(int second, String client, String cmd,
+      String src, String dst) {
+    return String.format("2024-05-01 10:00:%02d,000 INFO FSNamesystem.audit:" +
+        " allowed=true\tugi=%s (auth:SIMPLE)\tip=/10.0.0.1\tcmd=%s\tsrc=%s\t" +
+        "dst=%s\tperm=null\tproto=rpc", second, client, cmd, src, dst);
+  }
+
+  @Test
+  public void testCallsOfEveryClientAreReplayedInOrder() throws Exception {
+    File log = new File(tmp.getRoot(), "audit.log.gz");
+    try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+        new GZIPOutputStream(new FileOutputStream(log)),
+        StandardCharsets.UTF_8))) {
+      for (int c = 0; c < 20; c++) {
+        String dir = "/prod/c" + c;
+        out.println(line(c, "u" + c, "mkdirs", dir, "null"));
+        out.println(line(c, "u" + c, "create", dir + "/f", "null"));
+        out.println(line(c + 1, "u" + c, "rename", dir + "/f", dir + "/g"));
+        out.println(line(c + 1, "u" + c, "delete", "/other/c" + c, "null"));
+      }
+    }
+    File root = tmp.newFolder("root");
+    int rc = new AuditLogReplay().run(new String[] {
+        "-auditLog", "file://" + log.getAbsolutePath(),
+        "-root", root.getAbsolutePath(),
+        "-stripPrefix", "/prod",
+        "-speedup", "1000",
+        "-numOfThreads", "3"
+    });
+    assertEquals(0, rc);
+    for (int c = 0; c < 20; c++) {
+      assertTrue(new File(root, "c" + c + "/g").isFile());
+      assertFalse(new File(root, "c" + c + "/f").exists());
+    }
+    assertFalse(new File(root, "other").exists());
+  }
+
+  @Test
+  public void testPermissionOfThePermField() {
+    assertEquals(new FsPermission((short) 0750),
+        AuditLogReplay.permission("alice:hadoop:rwxr-x---"));
+    assertEquals(new FsPermission((short) 0644),
+        AuditLogReplay.permission(null));
+  }
+}
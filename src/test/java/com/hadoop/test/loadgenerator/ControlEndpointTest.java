@@ -0,0 +1,158 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for ControlEndpoint
+ */
+public class ControlEndpointTest {
+
+  /** Records the requests it gets */
+  private static class RecordingTarget implements ControlEndpoint.Target {
+    private final List<String> calls = new ArrayList<String>();
+
+    @Override
+    public String getStatus() {
+      return "calls: " + calls + "\n";
+    }
+
+    @Override
+    public void set(Map<String, String> settings) {
+      if (settings.containsKey("bad")) {
+        throw new IllegalArgumentException("bad setting");
+      }
+      calls.add("set " + settings);
+    }
+
+    @Override
+    public void pause() {
+      calls.add("pause");
+    }
+
+    @Override
+    public void resume() {
+      calls.add("resume");
+    }
+
+    @Override
+    public void stop() {
+      calls.add("stop");
+    }
+  }
+
+  private static String request(ControlEndpoint endpoint, String method,
+      String path, int expectedCode) throws IOException {
+    HttpURLConnection conn = (HttpURLConnection) new URL("http://localhost:"
+        + endpoint.getPort() + path).openConnection();
+    conn.setRequestMethod(method);
+    assertEquals(path, expectedCode, conn.getResponseCode());
+    try (InputStream in = expectedCode == 200 ?
+        conn.getInputStream() : conn.getErrorStream()) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static String get(ControlEndpoint endpoint, String path,
+      int expectedCode) throws IOException {
+    return request(endpoint, "GET", path, expectedCode);
+  }
+
+  private static String post(ControlEndpoint endpoint, String path,
+      int expectedCode) throws IOException {
+    return request(endpoint, "POST", path, expectedCode);
+  }
+
+  /** @return the status line of a request with this Host header, which
+   * HttpURLConnection does not let the caller set */
+  private static String requestWithHost(ControlEndpoint endpoint,
+      String method, String path, String host) throws IOException {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+        endpoint.getPort())) {
+      OutputStream out = socket.getOutputStream();
+      out.write((method + " " + path + " HTTP/1.1\r\nHost: " + host +
+          "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+          .getBytes(StandardCharsets.US_ASCII));
+      out.flush();
+      BufferedReader in = new BufferedReader(new InputStreamReader(
+          socket.getInputStream(), StandardCharsets.US_ASCII));
+      return in.readLine();
+    }
+  }
+
+  @Test
+  public void testRequestsReachTheTarget() throws IOException {
+    RecordingTarget target = new RecordingTarget();
+    ControlEndpoint endpoint = new ControlEndpoint(0, target);
+    try {
+      assertEquals("calls: []\n", get(endpoint, "/status", 200));
+      assertEquals("calls: [set {threads=5, ops=read=1,list=2}]\n",
+          post(endpoint, "/set?threads=5&ops=read%3D1,list=2", 200));
+      post(endpoint, "/pause", 200);
+      post(endpoint, "/resume", 200);
+      assertEquals("bad setting\n", post(endpoint, "/set?bad=1", 400));
+      assertTrue(post(endpoint, "/set", 400).startsWith("Nothing"));
+      assertTrue(get(endpoint, "/other", 404).startsWith("Usage"));
+      assertEquals("calls: [set {threads=5, ops=read=1,list=2}, pause, " +
+          "resume, stop]\n", post(endpoint, "/stop", 200));
+    } finally {
+      endpoint.close();
+    }
+  }
+
+  @Test
+  public void testChangesMustBePosts() throws IOException {
+    RecordingTarget target = new RecordingTarget();
+    ControlEndpoint endpoint = new ControlEndpoint(0, target);
+    try {
+      for (String path : new String[] {"/set?threads=5", "/pause",
+          "/resume", "/stop"}) {
+        assertTrue(get(endpoint, path, 405).contains("must be a POST"));
+      }
+      request(endpoint, "PUT", "/stop", 405);
+      assertTrue(target.calls.isEmpty());
+      assertEquals("calls: []\n", post(endpoint, "/status", 200));
+    } finally {
+      endpoint.close();
+    }
+  }
+
+  @Test
+  public void testOnlyLocalHostNamesAreServed() throws IOException {
+    RecordingTarget target = new RecordingTarget();
+    ControlEndpoint endpoint = new ControlEndpoint(0, target);
+    int port = endpoint.getPort();
+    try {
+      assertEquals("HTTP/1.1 403 Forbidden", requestWithHost(endpoint,
+          "POST", "/stop", "attacker.example:" + port));
+      assertEquals("HTTP/1.1 403 Forbidden", requestWithHost(endpoint,
+          "GET", "/status", "localhost:" + (port + 1)));
+      assertEquals("HTTP/1.1 403 Forbidden", requestWithHost(endpoint,
+          "GET", "/status", "localhost.attacker.example"));
+      assertTrue(target.calls.isEmpty());
+      assertEquals("HTTP/1.1 200 OK", requestWithHost(endpoint,
+          "POST", "/pause", "127.0.0.1:" + port));
+      assertEquals("HTTP/1.1 200 OK", requestWithHost(endpoint,
+          "GET", "/status", "localhost"));
+      assertEquals(1, target.calls.size());
+    } finally {
+      endpoint.close();
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for DataGeneratorMR
+ */
+public class DataGeneratorMRTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static List<String> lines(Path file) throws IOException {
+    return Files.readAllLines(new File(file.toUri()).toPath(),
+        StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testLinesAreDealtRoundRobin() throws IOException {
+    File inDir = tmp.newFolder();
+    Files.write(new File(inDir, StructureGenerator.DIR_STRUCTURE_FILE_NAME)
+        .toPath(), Arrays.asList("/d0", "/d1", "/d2", "/d3"));
+    Files.write(new File(inDir, StructureGenerator.FILE_STRUCTURE_FILE_NAME)
+        .toPath(), Arrays.asList("/d0/_file_0 1.0", "/d3/_file_1 2.0"));
+    Configuration conf = new Configuration();
+    conf.set("fs.defaultFS", "file:///");
+    DataGeneratorMR generator = new DataGeneratorMR(conf);
+    assertEquals(0, generator.parseArgsMR(new String[] {"-mr", "3",
+        tmp.getRoot().getPath(), "-inDir", inDir.getPath()}));
+
+    Path shardDir = new Path(tmp.newFolder().toURI());
+    generator.writeShards(shardDir);
+    assertEquals(Arrays.asList("/d0", "/d3"),
+        lines(DataGeneratorMR.dirShard(shardDir, 0)));
+    assertEquals(Arrays.asList("/d1"),
+        lines(DataGeneratorMR.dirShard(shardDir, 1)));
+    assertEquals(Arrays.asList("/d2"),
+        lines(DataGeneratorMR.dirShard(shardDir, 2)));
+    assertEquals(Arrays.asList("/d0/_file_0 1.0"),
+        lines(DataGeneratorMR.fileShard(shardDir, 0)));
+    assertEquals(Arrays.asList("/d3/_file_1 2.0"),
+        lines(DataGeneratorMR.fileShard(shardDir, 1)));
+    assertEquals(0, lines(DataGeneratorMR.fileShard(shardDir, 2)).size());
+  }
+
+  @Test
+  public void testIllegalMrArgumentsAreRejected() {
+    DataGeneratorMR generator = new DataGeneratorMR(new Configuration());
+    assertEquals(-1, generator.parseArgsMR(new String[] {"-mr", "0", "w"}));
+    assertEquals(-1, generator.parseArgsMR(new String[] {"-mr", "x", "w"}));
+    assertEquals(-1,
+        generator.parseArgsMR(new String[] {"-mr", "2", "-inDir"}));
+    assertEquals(-1, generator.parseArgsMR(new String[] {"-inDir", "in"}));
+  }
+}
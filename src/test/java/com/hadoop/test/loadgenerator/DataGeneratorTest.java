@@ -5,6 +5,10 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -35,4 +39,31 @@ public class DataGeneratorTest {
     // Expect graceful exit with code 0
     assertEquals(0, rc);
   }
+
+  @Test
+  public void testThreadsCreateEveryEntry() throws Exception {
+    File inputDir = tmp.newFolder("input");
+    Files.write(new File(inputDir, StructureGenerator.DIR_STRUCTURE_FILE_NAME)
+        .toPath(), Arrays.asList("/dir0/dir0", "/dir0/dir1", "/dir1"));
+    List<String> files = new ArrayList<String>();
+    for (int i = 0; i < 50; i++) {
+      files.add((i % 2 == 0 ? "/dir0/dir1" : "/dir1") + "/_file_" + i + " 0.5");
+    }
+    Files.write(new File(inputDir, StructureGenerator.FILE_STRUCTURE_FILE_NAME)
+        .toPath(), files);
+
+    File rootDir = tmp.newFolder("outputRoot");
+    int rc = new DataGenerator().run(new String[] {
+        "-inDir", inputDir.getAbsolutePath(),
+        "-root", rootDir.getAbsolutePath(),
+        "-numOfThreads", "4"
+    });
+    assertEquals(0, rc);
+    assertTrue(new File(rootDir, "dir0/dir0").isDirectory());
+    for (int i = 0; i < 50; i++) {
+      File file = new File(rootDir,
+          (i % 2 == 0 ? "dir0/dir1" : "dir1") + "/_file_" + i);
+      assertEquals(file.toString(), 5, file.length());
+    }
+  }
 }
@@ -0,0 +1,110 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for Distribution
+ */
+public class DistributionTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static final int SAMPLES = 200000;
+
+  private static double[] sample(String spec) throws IOException {
+    Distribution d = Distribution.parse(spec);
+    SplittableRandom rand = new SplittableRandom(3);
+    double[] samples = new double[SAMPLES];
+    for (int i = 0; i < SAMPLES; i++) {
+      samples[i] = d.sample(rand);
+    }
+    Arrays.sort(samples);
+    return samples;
+  }
+
+  private static double quantile(double[] sorted, double q) {
+    return sorted[(int) (q * (sorted.length - 1))];
+  }
+
+  @Test
+  public void testContinuousQuantiles() throws IOException {
+    // median of lognormal:mu,sigma is exp(mu)
+    assertEquals(Math.exp(1), quantile(sample("lognormal:1,0.5"), 0.5), 0.05);
+    // P(X > x) = (scale/x)^shape, so the 0.75 quantile of pareto:2,2 is 4
+    double[] pareto = sample("pareto:2,2");
+    assertEquals(2, pareto[0], 0.01);
+    assertEquals(4, quantile(pareto, 0.75), 0.1);
+    assertEquals(5, quantile(sample("gaussian:5,2"), 0.5), 0.05);
+    double[] uniform = sample("uniform:3,4");
+    assertTrue(uniform[0] >= 3 && uniform[SAMPLES - 1] < 4);
+  }
+
+  @Test
+  public void testZipfFrequencies() throws IOException {
+    Distribution zipf = Distribution.parse("zipf:10,1.5");
+    SplittableRandom rand = new SplittableRandom(5);
+    long[] counts = new long[11];
+    for (int i = 0; i < SAMPLES; i++) {
+      counts[(int) zipf.sampleCount(rand)]++;
+    }
+    double norm = 0;
+    for (int k = 1; k <= 10; k++) {
+      norm += Math.pow(k, -1.5);
+    }
+    assertEquals(0, counts[0]);
+    for (int k = 1; k <= 10; k++) {
+      assertEquals("rank " + k, Math.pow(k, -1.5) / norm,
+          (double) counts[k] / SAMPLES, 0.005);
+    }
+  }
+
+  @Test
+  public void testUniformCountsIncludeBothEnds() throws IOException {
+    Distribution uniform = Distribution.parse("uniform:1,3");
+    SplittableRandom rand = new SplittableRandom(1);
+    long[] counts = new long[4];
+    for (int i = 0; i < 30000; i++) {
+      counts[(int) uniform.sampleCount(rand)]++;
+    }
+    assertEquals(0, counts[0]);
+    for (int k = 1; k <= 3; k++) {
+      assertEquals(10000, counts[k], 500);
+    }
+  }
+
+  @Test
+  public void testEmpiricalInterpolatesTheCdf() throws IOException {
+    File cdf = tmp.newFile("cdf");
+    Files.write(cdf.toPath(),
+        Arrays.asList("# size probability", "0 0", "10 0.5", "100 1"));
+    double[] samples = sample("empirical:" + cdf.getPath());
+    assertEquals(5, quantile(samples, 0.25), 0.2);
+    assertEquals(10, quantile(samples, 0.5), 0.5);
+    assertEquals(55, quantile(samples, 0.75), 1);
+    assertTrue(samples[SAMPLES - 1] <= 100);
+  }
+
+  @Test
+  public void testIllegalSpecificationsAreRejected() throws IOException {
+    for (String spec : new String[] {"lognormal", "zipf:0,1", "zipf:2.5,1",
+        "pareto:1,0", "uniform:2,1", "gaussian:1", "weibull:1,1"}) {
+      try {
+        Distribution.parse(spec);
+        throw new AssertionError("accepted " + spec);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+}
@@ -0,0 +1,81 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for FileContent
+ */
+public class FileContentTest {
+
+  private static byte[] write(FileContent content, int length)
+      throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    content.write(out, length);
+    return out.toByteArray();
+  }
+
+  /** @return compressed size divided by the original size */
+  private static double compressedRatio(byte[] data) {
+    Deflater deflater = new Deflater();
+    deflater.setInput(data);
+    deflater.finish();
+    byte[] buf = new byte[data.length + 1024];
+    int size = 0;
+    while (!deflater.finished()) {
+      size += deflater.deflate(buf);
+    }
+    deflater.end();
+    return (double) size / data.length;
+  }
+
+  @Test
+  public void testConstantIsAllA() throws IOException {
+    byte[] data = write(FileContent.CONSTANT, 200000);
+    assertEquals(200000, data.length);
+    for (byte b : data) {
+      assertEquals('a', b);
+    }
+  }
+
+  @Test
+  public void testWritesHaveTheRequestedLength() throws IOException {
+    FileContent random = FileContent.parse("random");
+    for (int length : new int[] {0, 1, 10, 1 << 20, (3 << 20) + 17}) {
+      assertEquals(length, write(random, length).length);
+    }
+  }
+
+  @Test
+  public void testCompressibility() throws IOException {
+    int length = 4 << 20;
+    assertTrue(compressedRatio(write(FileContent.parse("random"), length))
+        > 0.99);
+    assertEquals(0.5, compressedRatio(
+        write(FileContent.parse("compressible:0.5"), length)), 0.05);
+    assertTrue(compressedRatio(write(FileContent.CONSTANT, length)) < 0.01);
+  }
+
+  @Test
+  public void testParse() {
+    assertSame(FileContent.CONSTANT, FileContent.parse("constant"));
+    assertEquals("compressible:0.25",
+        FileContent.parse("compressible:0.25").toString());
+    for (String spec : new String[] {"compressible:1.5", "compressible:x",
+        "zeros"}) {
+      try {
+        FileContent.parse(spec);
+        throw new AssertionError("accepted " + spec);
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for LatencyHistogram
+ */
+public class LatencyHistogramTest {
+
+  @Test
+  public void testEmptyHistogramReportsZero() {
+    LatencyHistogram h = new LatencyHistogram();
+    assertEquals(0, h.getCount());
+    assertEquals(0, h.getValueAtPercentile(99));
+    assertEquals(0, h.getMax());
+  }
+
+  @Test
+  public void testBucketsCoverTheWholeRangeInOrder() {
+    long previous = -1;
+    for (long v = 0; v < (1L << 20); v++) {
+      int index = LatencyHistogram.bucketIndex(v);
+      assertTrue("value " + v + " above its bucket",
+          v <= LatencyHistogram.highestEquivalentValue(index));
+      long highest = LatencyHistogram.highestEquivalentValue(index);
+      assertTrue(highest >= previous);
+      previous = highest;
+    }
+    int last = LatencyHistogram.bucketIndex(LatencyHistogram.MAX_TRACKABLE_VALUE);
+    assertEquals(LatencyHistogram.MAX_TRACKABLE_VALUE,
+        LatencyHistogram.highestEquivalentValue(last));
+  }
+
+  @Test
+  public void testPercentilesAreWithinRelativeError() {
+    LatencyHistogram h = new LatencyHistogram();
+    // 1..100000 microseconds, one value each
+    for (long us = 1; us <= 100000; us++) {
+      h.record(us * 1000);
+    }
+    assertEquals(100000, h.getCount());
+    assertEquals(100000L * 1000, h.getMax());
+    assertWithin(50000L * 1000, h.getValueAtPercentile(50));
+    assertWithin(99000L * 1000, h.getValueAtPercentile(99));
+    assertWithin(99900L * 1000, h.getValueAtPercentile(99.9));
+    assertEquals(h.getMax(), h.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testAddMergesCountsAndMax() {
+    Random r = new Random(42);
+    LatencyHistogram all = new LatencyHistogram();
+    LatencyHistogram a = new LatencyHistogram();
+    LatencyHistogram b = new LatencyHistogram();
+    for (int i = 0; i < 10000; i++) {
+      long v = (long) (Math.abs(r.nextGaussian()) * 1e6);
+      all.record(v);
+      (i % 2 == 0 ? a : b).record(v);
+    }
+    a.add(b);
+    assertEquals(all.getCount(), a.getCount());
+    assertEquals(all.getMax(), a.getMax());
+    for (double p : new double[] {50, 90, 99, 99.9}) {
+      assertEquals(all.getValueAtPercentile(p), a.getValueAtPercentile(p));
+    }
+  }
+
+  @Test
+  public void testMinusLeavesOnlyTheLaterValues() {
+    LatencyHistogram h = new LatencyHistogram();
+    for (long v = 1; v <= 1000; v++) {
+      h.record(v * 1000);
+    }
+    LatencyHistogram earlier = new LatencyHistogram();
+    earlier.add(h);
+    for (long v = 1; v <= 100; v++) {
+      h.record(5000000 + v);
+    }
+    LatencyHistogram interval = h.minus(earlier);
+    assertEquals(100, interval.getCount());
+    assertWithin(5000000, interval.getValueAtPercentile(1));
+    assertEquals(h.getMax(), interval.getMax());
+    assertEquals(0, earlier.minus(earlier).getCount());
+  }
+
+  @Test
+  public void testValuesBeyondRangeAreClamped() {
+    LatencyHistogram h = new LatencyHistogram();
+    h.record(Long.MAX_VALUE);
+    h.record(-5);
+    assertEquals(2, h.getCount());
+    assertEquals(0, h.getValueAtPercentile(50));
+    assertEquals(Long.MAX_VALUE, h.getMax());
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue("expected ~" + expected + " but got " + actual,
+        actual >= expected && actual <= expected + expected / 64);
+  }
+}
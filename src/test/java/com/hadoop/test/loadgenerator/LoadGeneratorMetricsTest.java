@@ -0,0 +1,60 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.metrics2.AbstractMetric;
+import org.apache.hadoop.metrics2.impl.MetricsCollectorImpl;
+import org.apache.hadoop.metrics2.impl.MetricsRecordImpl;
+import org.junit.Test;
+
+/**
+ * Unit tests for LoadGeneratorMetrics
+ */
+public class LoadGeneratorMetricsTest {
+
+  private static Map<String, Number> collect(LoadGeneratorMetrics source) {
+    MetricsCollectorImpl collector = new MetricsCollectorImpl();
+    source.getMetrics(collector, true);
+    MetricsRecordImpl record = collector.getRecords().get(0);
+    assertEquals(LoadGeneratorMetrics.RECORD_NAME, record.name());
+    Map<String, Number> values = new HashMap<String, Number>();
+    for (AbstractMetric metric : record.metrics()) {
+      values.put(metric.name(), metric.value());
+    }
+    return values;
+  }
+
+  @Test
+  public void testMetricNames() {
+    assertEquals("WriteClose", LoadGeneratorMetrics.metricName("write_close"));
+    assertEquals("Open", LoadGeneratorMetrics.metricName("open"));
+  }
+
+  @Test
+  public void testWindowHoldsOnlyTheOpsSinceTheLastRoll() {
+    OpStats[] stats = {new OpStats(2), new OpStats(2)};
+    LoadGeneratorMetrics source = new LoadGeneratorMetrics(stats,
+        new String[] {"open", "list"}, () -> 3, () -> 1, 0);
+    stats[0].record(0, 100000000L);
+    stats[1].record(0, 100000000L);
+    stats[1].recordError(1, "java.io.IOException", 1000000L);
+    Map<String, Number> values = collect(source);
+    assertEquals(3, values.get("ActiveThreads").intValue());
+    assertEquals(1, values.get("FailedClients").intValue());
+    assertEquals(2L, values.get("OpenNumOps").longValue());
+    assertEquals(1L, values.get("ListErrors").longValue());
+    assertEquals(100, values.get("OpenAvgTimeMs").doubleValue(), 1e-9);
+    assertEquals(100, values.get("Open50thPercentileLatencyMs").doubleValue(),
+        2);
+
+    stats[0].record(0, 10000000L);
+    values = collect(source);
+    assertEquals(3L, values.get("OpenNumOps").longValue());
+    assertEquals(10, values.get("OpenAvgTimeMs").doubleValue(), 1e-9);
+    assertEquals(10, values.get("OpenMaxLatencyMs").doubleValue(), 0.2);
+    assertEquals(0, values.get("ListAvgTimeMs").doubleValue(), 0);
+  }
+}
@@ -0,0 +1,385 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+import org.apache.hadoop.fs.ByteBufferReadable;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSInputStream;
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for LoadGenerator
+ */
+public class LoadGeneratorTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  @After
+  public void resetScript() {
+    LoadGenerator.durations = new long[] {0};
+    LoadGenerator.readProbs = new double[] {0.3333};
+    LoadGenerator.writeProbs = new double[] {0.3333};
+    LoadGenerator.phaseOpWeights = new double[][] {null};
+    LoadGenerator.phaseThreads = new int[][] {null};
+    LoadGenerator.phaseRates = new double[][] {null};
+    LoadGenerator.phaseDirs = new String[] {null};
+    LoadGenerator.root = DataGenerator.DEFAULT_ROOT;
+    LoadGenerator.readMode = LoadGenerator.ReadMode.STREAM;
+  }
+
+  /** Zero the results that collectStats adds to */
+  private static void resetResults() {
+    int n = LoadGenerator.TOTAL_OP_TYPES;
+    LoadGenerator.executionTime = new long[n];
+    LoadGenerator.numOfOps = new long[n];
+    LoadGenerator.numOfErrors = new long[n];
+    LoadGenerator.numOfBytes = new long[n];
+    LoadGenerator.warmUpExecutionTime = new long[n];
+    LoadGenerator.warmUpNumOfOps = new long[n];
+    LoadGenerator.latencies = new LatencyHistogram[n];
+    LoadGenerator.warmUpLatencies = new LatencyHistogram[n];
+    for (int i = 0; i < n; i++) {
+      LoadGenerator.latencies[i] = new LatencyHistogram();
+      LoadGenerator.warmUpLatencies[i] = new LatencyHistogram();
+    }
+    LoadGenerator.errorLatencies = new TreeMap<String, LatencyHistogram>();
+    LoadGenerator.numOfErrorsByCause = new TreeMap<String, Long>();
+    LoadGenerator.totalOps = 0;
+    LoadGenerator.warmUpOps = 0;
+  }
+
+  /** A stream over bytes in memory that also reads into ByteBuffers */
+  private static class ByteBufferStream extends FSInputStream
+      implements ByteBufferReadable {
+    private final byte[] data;
+    private int pos = 0;
+
+    ByteBufferStream(byte[] data) {
+      this.data = data;
+    }
+
+    @Override
+    public int read() {
+      return pos < data.length ? data[pos++] & 0xff : -1;
+    }
+
+    @Override
+    public int read(ByteBuffer buf) {
+      if (pos == data.length) {
+        return -1;
+      }
+      int n = Math.min(buf.remaining(), data.length - pos);
+      buf.put(data, pos, n);
+      pos += n;
+      return n;
+    }
+
+    @Override
+    public void seek(long pos) {
+      this.pos = (int) pos;
+    }
+
+    @Override
+    public long getPos() {
+      return pos;
+    }
+
+    @Override
+    public boolean seekToNewSource(long targetPos) {
+      return false;
+    }
+  }
+
+  /** @return a client of a test space on the local file system that holds
+   * a single file of <code>length</code> bytes */
+  private LoadGenerator.DFSClientThread client(OpStats stats, int length)
+      throws IOException {
+    File space = tmp.newFolder();
+    File dir = new File(space, "dir0");
+    assertTrue(dir.mkdir());
+    Files.write(new File(dir, "_file_0").toPath(), new byte[length]);
+    LoadGenerator.fc = FileContext.getLocalFSFileContext();
+    LoadGenerator.root = new Path(space.toURI());
+    LoadGenerator lg = new LoadGenerator();
+    assertEquals(0, lg.initFileDirTables());
+    assertEquals(0, LoadGenerator.initPhaseRanges());
+    return lg.new DFSClientThread(0, new SplittableRandom(1), stats, null);
+  }
+
+  /** Read the single file of the test space in <code>mode</code>
+   * @return the stats of the read */
+  private OpStats read(String mode, int length) throws IOException {
+    assertTrue(LoadGenerator.parseReadMode(mode));
+    OpStats stats = new OpStats(LoadGenerator.TOTAL_OP_TYPES);
+    client(stats, length).read(LoadGenerator.NOT_SCHEDULED);
+    assertEquals(1, stats.getNumOfOps(LoadGenerator.OPEN));
+    assertEquals(1, stats.getNumOfOps(LoadGenerator.READ_DATA));
+    return stats;
+  }
+
+  private int loadScript(String... lines) throws IOException {
+    File script = tmp.newFile();
+    Files.write(script.toPath(), Arrays.asList(lines));
+    return LoadGenerator.loadScriptFile(script.getPath(), true);
+  }
+
+  private static long[] draw(SplittableRandom rand, int n) {
+    long[] values = new long[n];
+    for (int i = 0; i < n; i++) {
+      values[i] = rand.nextLong();
+    }
+    return values;
+  }
+
+  @Test
+  public void testMapsOnOneHostGetTheirOwnSeeds() {
+    assertEquals(42 + "host1".hashCode(),
+        LoadGenerator.baseSeed(42, "host1", null));
+    long map0 = LoadGenerator.baseSeed(42, "host1", "task_1_0001_m_000000");
+    long map1 = LoadGenerator.baseSeed(42, "host1", "task_1_0001_m_000001");
+    assertNotEquals(map0, map1);
+    assertEquals(map0,
+        LoadGenerator.baseSeed(42, "host1", "task_1_0001_m_000000"));
+    assertNotEquals(map0,
+        LoadGenerator.baseSeed(42, "host2", "task_1_0001_m_000000"));
+  }
+
+  @Test
+  public void testPerThreadStreamsAreReproducible() {
+    SplittableRandom[] streams = LoadGenerator.perThreadStreams(7, 3);
+    SplittableRandom[] again = LoadGenerator.perThreadStreams(7, 3);
+    SplittableRandom[] other = LoadGenerator.perThreadStreams(8, 3);
+    long[][] draws = new long[3][];
+    for (int i = 0; i < 3; i++) {
+      draws[i] = draw(streams[i], 100);
+      assertArrayEquals(draws[i], draw(again[i], 100));
+      assertFalse(Arrays.equals(draws[i], draw(other[i], 100)));
+    }
+    assertFalse(Arrays.equals(draws[0], draws[1]));
+    assertFalse(Arrays.equals(draws[1], draws[2]));
+  }
+
+  @Test
+  public void testWarmUpIsCutFromTheResults() {
+    resetResults();
+    int open = LoadGenerator.OPEN;
+    int readData = LoadGenerator.READ_DATA;
+    // Two clients, as the client threads record: everything goes to the
+    // stats, and what started in the warm-up to the warm-up stats as well
+    OpStats[] stats = {new OpStats(LoadGenerator.TOTAL_OP_TYPES),
+        new OpStats(LoadGenerator.TOTAL_OP_TYPES)};
+    OpStats[] warmUp = {new OpStats(LoadGenerator.TOTAL_OP_TYPES),
+        new OpStats(LoadGenerator.TOTAL_OP_TYPES)};
+    LatencyHistogram measured = new LatencyHistogram();
+    for (int client = 0; client < 2; client++) {
+      for (OpStats s : new OpStats[] {stats[client], warmUp[client]}) {
+        s.record(open, 1000000L * (client + 1));
+        s.recordBytes(readData, 100);
+        s.recordError(open, "WarmUpOnly", 5000000L);
+        s.recordError(open, "Both", 6000000L);
+      }
+      for (int i = 1; i <= 3; i++) {
+        stats[client].record(open, 10000000L * i * (client + 1));
+        measured.record(10000000L * i * (client + 1));
+      }
+      stats[client].record(readData, 2000000L);
+      stats[client].recordBytes(readData, 1000);
+      stats[client].recordError(open, "Both", 7000000L);
+      stats[client].recordError(open, "MeasuredOnly", 8000000L);
+    }
+
+    LoadGenerator.collectStats(stats, warmUp);
+    assertEquals(6, LoadGenerator.numOfOps[open]);
+    assertEquals(180000000L, LoadGenerator.executionTime[open]);
+    assertEquals(2, LoadGenerator.warmUpNumOfOps[open]);
+    assertEquals(3000000L, LoadGenerator.warmUpExecutionTime[open]);
+    assertEquals(6, LoadGenerator.totalOps);
+    assertEquals(2, LoadGenerator.warmUpOps);
+    assertEquals(2000, LoadGenerator.numOfBytes[readData]);
+    assertEquals(2, LoadGenerator.numOfOps[readData]);
+    assertEquals(4, LoadGenerator.numOfErrors[open]);
+
+    LatencyHistogram latencies = LoadGenerator.latencies[open];
+    assertEquals(measured.getCount(), latencies.getCount());
+    assertEquals(measured.getMax(), latencies.getMax());
+    for (double p : new double[] {0, 25, 50, 90, 100}) {
+      assertEquals(measured.getValueAtPercentile(p),
+          latencies.getValueAtPercentile(p));
+    }
+    assertEquals(2, LoadGenerator.warmUpLatencies[open].getCount());
+
+    // a cause seen only in the warm-up is gone
+    assertEquals(2, LoadGenerator.numOfErrorsByCause.size());
+    assertEquals(2L, (long) LoadGenerator.numOfErrorsByCause.get("Both"));
+    assertEquals(2L,
+        (long) LoadGenerator.numOfErrorsByCause.get("MeasuredOnly"));
+    assertEquals(7000000L,
+        LoadGenerator.errorLatencies.get("Both").getMax(), 7000000L / 100);
+    resetResults();
+  }
+
+  @Test
+  public void testSearchSettingsNeedASearch() throws IOException {
+    try {
+      for (String[] args : new String[][] {{"-sloP99", "100"},
+          {"-stepTime", "10"}}) {
+        assertEquals(Arrays.toString(args), -1,
+            new LoadGenerator().parseArgs(false, args));
+      }
+    } finally {
+      LoadGenerator.sloP99Millis = 0;
+      LoadGenerator.stepTime = 30;
+    }
+  }
+
+  @Test
+  public void testStreamReadsTheWholeFile() throws IOException {
+    OpStats stats = read("stream", 3000);
+    assertEquals(3000, stats.getNumOfBytes(LoadGenerator.READ_DATA));
+    assertEquals(1, stats.getNumOfOps(LoadGenerator.FIRST_BYTE));
+  }
+
+  @Test
+  public void testPreadReadsABuffer() throws IOException {
+    OpStats stats = read("pread", 3000);
+    assertEquals(LoadGenerator.readBufferSize,
+        stats.getNumOfBytes(LoadGenerator.READ_DATA));
+    assertEquals(1, stats.getNumOfOps(LoadGenerator.FIRST_BYTE));
+
+    // a file shorter than the buffer is read whole
+    stats = read("hedged:100", 100);
+    assertEquals(100, stats.getNumOfBytes(LoadGenerator.READ_DATA));
+    assertEquals(1, stats.getNumOfOps(LoadGenerator.FIRST_BYTE));
+  }
+
+  @Test
+  public void testNoFirstByteOfAnEmptyFile() throws IOException {
+    for (String mode : new String[] {"stream", "pread"}) {
+      OpStats stats = read(mode, 0);
+      assertEquals(mode, 0, stats.getNumOfBytes(LoadGenerator.READ_DATA));
+      assertEquals(mode, 0, stats.getNumOfOps(LoadGenerator.FIRST_BYTE));
+    }
+  }
+
+  @Test
+  public void testByteBufferReads() throws IOException {
+    OpStats stats = new OpStats(LoadGenerator.TOTAL_OP_TYPES);
+    LoadGenerator.DFSClientThread client = client(stats, 0);
+    assertEquals(3000, client.readByteBuffers(
+        new FSDataInputStream(new ByteBufferStream(new byte[3000]))));
+    assertEquals(1, stats.getNumOfOps(LoadGenerator.FIRST_BYTE));
+    assertEquals(0, client.readByteBuffers(
+        new FSDataInputStream(new ByteBufferStream(new byte[0]))));
+    assertEquals(1, stats.getNumOfOps(LoadGenerator.FIRST_BYTE));
+    assertEquals(2, stats.getNumOfOps(LoadGenerator.READ_DATA));
+
+    // the checksummed local file system has no ByteBuffer reads
+    assertTrue(LoadGenerator.parseReadMode("bytebuffer"));
+    try {
+      client.read(LoadGenerator.NOT_SCHEDULED);
+      throw new AssertionError("read into a ByteBuffer");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testReadModesRoundTrip() {
+    for (String spec : new String[] {"stream", "pread", "bytebuffer",
+        "hedged:250"}) {
+      assertTrue(spec, LoadGenerator.parseReadMode(spec));
+      assertEquals(spec, LoadGenerator.formatReadMode());
+      assertTrue(LoadGenerator.parseReadMode(
+          LoadGenerator.formatReadMode()));
+    }
+    assertTrue(LoadGenerator.parseReadMode("HEDGED"));
+    assertEquals("hedged:250", LoadGenerator.formatReadMode());
+    for (String spec : new String[] {"mmap", "pread:250", "hedged:0",
+        "hedged:soon"}) {
+      assertFalse(spec, LoadGenerator.parseReadMode(spec));
+    }
+  }
+
+  @Test
+  public void testScriptPhaseSettings() throws IOException {
+    assertEquals(0, loadScript(
+        "# ramp up the clients, then change the mix",
+        "10 0.5 0.2 threads=5..15 rate=100 dirs=dir0",
+        "",
+        "20 ops=read=3,list=1 threads=7 rate=100..300",
+        "5"));
+    assertArrayEquals(new long[] {10, 20, 5}, LoadGenerator.durations);
+    assertEquals(0.5, LoadGenerator.readProbs[0], 0);
+    assertEquals(0.2, LoadGenerator.writeProbs[0], 0);
+    assertArrayEquals(new int[] {5, 15}, LoadGenerator.phaseThreads[0]);
+    assertArrayEquals(new double[] {100, 100}, LoadGenerator.phaseRates[0],
+        0);
+    assertEquals("dir0", LoadGenerator.phaseDirs[0]);
+    assertNull(LoadGenerator.phaseOpWeights[0]);
+
+    double[] ops = LoadGenerator.phaseOpWeights[1];
+    assertEquals(3, ops[LoadGenerator.READ_OP], 0);
+    assertEquals(1, ops[LoadGenerator.LIST_OP], 0);
+    assertEquals(0, ops[LoadGenerator.WRITE_OP], 0);
+    assertArrayEquals(new int[] {7, 7}, LoadGenerator.phaseThreads[1]);
+    assertNull(LoadGenerator.phaseDirs[1]);
+
+    // a bare duration keeps the defaults
+    assertNull(LoadGenerator.phaseThreads[2]);
+    assertNull(LoadGenerator.phaseRates[2]);
+    assertEquals(0.3333, LoadGenerator.readProbs[2], 0);
+  }
+
+  @Test
+  public void testMalformedScriptLinesAreRejected() throws IOException {
+    assertEquals(-1, loadScript("10 0.5"));
+    assertEquals(-1, loadScript("10 0.5 0.2 0.1"));
+    assertEquals(-1, loadScript("-1 0.5 0.2"));
+    assertEquals(-1, loadScript("ten 0.5 0.2"));
+    assertEquals(-1, loadScript("10 threads=many"));
+    assertEquals(-1, loadScript("10 threads=-1"));
+    assertEquals(-1, loadScript("10 threads=2.7"));
+    assertEquals(-1, loadScript("10 threads=1.5..9.9"));
+    assertEquals(-1, loadScript("60 threads=5 foo"));
+    assertEquals(-1, loadScript("60 threads=5 =5"));
+    assertEquals(-1, loadScript("10 rate=5..-5"));
+    assertEquals(-1, loadScript("10 speed=3"));
+    assertEquals(-1, loadScript("10 ops=read"));
+    assertEquals(-1, loadScript("10 0.5 0.2 ops=read=1"));
+  }
+
+  @Test
+  public void testRampsAreInterpolated() throws IOException {
+    assertEquals(0, loadScript("10 threads=5..15 rate=100..300", "10"));
+    assertEquals(5, LoadGenerator.phaseThreadCount(0, 0));
+    assertEquals(8, LoadGenerator.phaseThreadCount(0, 0.25));
+    assertEquals(10, LoadGenerator.phaseThreadCount(0, 0.5));
+    assertEquals(15, LoadGenerator.phaseThreadCount(0, 1));
+    assertEquals(100, LoadGenerator.phaseRate(0, 0), 1e-9);
+    assertEquals(150, LoadGenerator.phaseRate(0, 0.25), 1e-9);
+    assertEquals(300, LoadGenerator.phaseRate(0, 1), 1e-9);
+    // phases without settings use the command line ones
+    assertEquals(LoadGenerator.numOfThreads,
+        LoadGenerator.phaseThreadCount(1, 0.5));
+    assertEquals(LoadGenerator.targetOpsPerSec,
+        LoadGenerator.phaseRate(1, 0.5), 0);
+  }
+}
@@ -0,0 +1,75 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for MapperThatRunsDataGenerator
+ */
+public class MapperThatRunsDataGeneratorTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static void writeShard(Path file, String... lines)
+      throws IOException {
+    Files.write(new File(file.toUri()).toPath(), Arrays.asList(lines));
+  }
+
+  @Test
+  public void testAShardIsCreatedWithoutTheOthers() throws IOException {
+    Path shardDir = new Path(tmp.newFolder().toURI());
+    // The directory of _file_1 belongs to shard 0, which never runs
+    writeShard(DataGeneratorMR.dirShard(shardDir, 1), "/dir1/dir0");
+    writeShard(DataGeneratorMR.fileShard(shardDir, 1),
+        "/dir0/_file_1 2.0", "/dir1/dir0/_file_2 0.5");
+    File root = tmp.newFolder();
+    JobConf conf = new JobConf();
+    conf.set(LGConstants.DG_SHARDDIR, shardDir.toString());
+    conf.set(LGConstants.DG_ROOT, new Path(root.toURI()).toString());
+    conf.setInt(LGConstants.DG_NUMOFTHREADS, 2);
+    conf.set(LGConstants.DG_FILECONTENT, "random");
+    Reporter reporter = mock(Reporter.class);
+    when(reporter.getInputSplit()).thenReturn(new StructureShardSplit(1, 0));
+
+    MapperThatRunsDataGenerator mapper = new MapperThatRunsDataGenerator();
+    mapper.configure(conf);
+    mapper.map(new LongWritable(0), new Text(),
+        (key, value) -> { }, reporter);
+
+    assertTrue(new File(root, "dir1/dir0").isDirectory());
+    assertEquals(20, new File(root, "dir0/_file_1").length());
+    assertEquals(5, new File(root, "dir1/dir0/_file_2").length());
+    verify(reporter).incrCounter(
+        DataGeneratorMR.Counter.DIRECTORIES_CREATED, 1);
+    verify(reporter).incrCounter(DataGeneratorMR.Counter.FILES_CREATED, 2);
+  }
+
+  @Test(expected = IOException.class)
+  public void testIllegalFileContentFailsTheTask() throws IOException {
+    JobConf conf = new JobConf();
+    conf.set(LGConstants.DG_SHARDDIR, tmp.getRoot().toURI().toString());
+    conf.set(LGConstants.DG_FILECONTENT, "zeros");
+    Reporter reporter = mock(Reporter.class);
+    when(reporter.getInputSplit()).thenReturn(new StructureShardSplit(0, 0));
+    MapperThatRunsDataGenerator mapper = new MapperThatRunsDataGenerator();
+    mapper.configure(conf);
+    mapper.map(new LongWritable(0), new Text(), (key, value) -> { }, reporter);
+  }
+}
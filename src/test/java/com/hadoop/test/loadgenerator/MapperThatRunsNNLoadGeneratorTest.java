@@ -0,0 +1,36 @@
+package com.hadoop.test.loadgenerator;
+
+import org.apache.hadoop.mapred.JobConf;
+import org.junit.Test;
+
+/**
+ * Unit tests for MapperThatRunsNNLoadGenerator
+ */
+public class MapperThatRunsNNLoadGeneratorTest {
+
+  private static void configure(String key, String value) {
+    JobConf conf = new JobConf();
+    conf.set(key, value);
+    new MapperThatRunsNNLoadGenerator().configure(conf);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIllegalFileContentFailsTheTask() {
+    configure(LGConstants.LG_FILECONTENT, "zeros");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIllegalAccessPatternFailsTheTask() {
+    configure(LGConstants.LG_ACCESSPATTERN, "hotset:2,0.5");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIllegalWarmUpFailsTheTask() {
+    configure(LGConstants.LG_WARMUP, "auto:0.1");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIllegalReadModeFailsTheTask() {
+    configure(LGConstants.LG_READMODE, "pread:250");
+  }
+}
@@ -0,0 +1,341 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.apache.hadoop.fs.FileContext;
+import org.apache.hadoop.fs.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for NamespaceTable
+ */
+public class NamespaceTableTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static NamespaceTable sampleTable() {
+    NamespaceTable table = new NamespaceTable(new Path("hdfs://nn:8020/root"));
+    int d0 = table.addDir(NamespaceTable.ROOT, "dir0");
+    int d00 = table.addDir(d0, "dir0");
+    table.addFile(d00, "_file_0");
+    table.addFile(d0, "_file_1");
+    int d1 = table.addDir(NamespaceTable.ROOT, "dir1");
+    table.addFile(d1, "_file_é");
+    table.addFile(NamespaceTable.ROOT, "_file_2");
+    table.freeze();
+    return table;
+  }
+
+  @Test
+  public void testPathsAreRebuiltFromTheTree() {
+    NamespaceTable table = sampleTable();
+    assertEquals(3, table.numDirs());
+    assertEquals(4, table.numFiles());
+    assertEquals(new Path("hdfs://nn:8020/root/dir0/dir0"), table.getDirPath(1));
+    assertEquals(new Path("hdfs://nn:8020/root/dir0/dir0/_file_0"),
+        table.getFilePath(0));
+    assertEquals(new Path("hdfs://nn:8020/root/dir1/_file_é"),
+        table.getFilePath(2));
+    assertEquals(new Path("hdfs://nn:8020/root/_file_2"), table.getFilePath(3));
+    assertSame(table.getDirPath(2), table.getDirPath(2));
+  }
+
+  @Test
+  public void testFindDirAndIsUnder() {
+    NamespaceTable table = sampleTable();
+    assertEquals(NamespaceTable.ROOT, table.findDir(""));
+    assertEquals(0, table.findDir("dir0"));
+    assertEquals(1, table.findDir("dir0/dir0"));
+    assertEquals(2, table.findDir("/dir1/"));
+    assertEquals(-2, table.findDir("dir1/dir0"));
+    assertTrue(table.isUnder(1, 0));
+    assertTrue(table.isUnder(1, NamespaceTable.ROOT));
+    assertFalse(table.isUnder(2, 0));
+  }
+
+  /** Three levels of ten directories, with two files in each leaf */
+  private static NamespaceTable wideTable() {
+    NamespaceTable table = new NamespaceTable(new Path("/r"));
+    for (int i = 0; i < 10; i++) {
+      int a = table.addDir(NamespaceTable.ROOT, "a" + i);
+      for (int j = 0; j < 10; j++) {
+        int b = table.addDir(a, "b" + j);
+        for (int k = 0; k < 10; k++) {
+          int c = table.addDir(b, "c" + k);
+          table.addFile(c, StructureGenerator.FILE_NAME_PREFIX + 0);
+          table.addFile(c, StructureGenerator.FILE_NAME_PREFIX + 1);
+        }
+      }
+    }
+    table.freeze();
+    return table;
+  }
+
+  @Test
+  public void testLookupsInAWideTree() {
+    NamespaceTable table = wideTable();
+    assertEquals(1110, table.numDirs());
+    int a7 = table.findDir("a7");
+    assertEquals(7 * 111, a7);
+    int b3 = table.findDir("a7/b3");
+    assertEquals(a7 + 1 + 3 * 11, b3);
+    assertEquals(b3 + 1 + 9, table.findDir("a7/b3/c9"));
+    assertEquals(-2, table.findDir("a7/b3/c10"));
+    assertEquals(-2, table.findDir("a7/c3"));
+
+    assertEquals(table.numDirs(), table.dirEnd(NamespaceTable.ROOT));
+    assertEquals(a7 + 111, table.dirEnd(a7));
+    assertEquals(b3 + 11, table.dirEnd(b3));
+    assertEquals(b3 + 2, table.dirEnd(b3 + 1));
+    for (int dir = a7; dir < table.dirEnd(a7); dir++) {
+      assertTrue(table.isUnder(dir, a7));
+    }
+    assertFalse(table.isUnder(table.dirEnd(a7), a7));
+
+    int[] files = table.fileRange(b3, table.dirEnd(b3));
+    assertEquals(2, files.length);
+    assertEquals(20, files[1] - files[0]);
+    for (int file = files[0]; file < files[1]; file++) {
+      assertTrue(table.isUnder(table.getFileParent(file), b3));
+    }
+    assertFalse(table.isUnder(table.getFileParent(files[0] - 1), b3));
+    assertFalse(table.isUnder(table.getFileParent(files[1]), b3));
+    // b3 itself holds no files
+    assertNull(table.fileRange(b3, b3 + 1));
+  }
+
+  @Test
+  public void testFileRangeOfFilesOutOfDirOrder() {
+    NamespaceTable table = sampleTable();
+    // _file_1 of dir0 was added after _file_0 of dir0/dir0
+    assertArrayEquals(new int[] {0, 2}, table.fileRange(0, 2));
+    assertArrayEquals(new int[] {0, 1}, table.fileRange(1, 2));
+    assertArrayEquals(new int[] {2, 3}, table.fileRange(2, 3));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDirectoriesMustBeDepthFirst() {
+    NamespaceTable table = new NamespaceTable(new Path("/r"));
+    int d0 = table.addDir(NamespaceTable.ROOT, "dir0");
+    table.addDir(NamespaceTable.ROOT, "dir1");
+    table.addDir(d0, "dir0");
+  }
+
+  @Test
+  public void testFilePathsAreCached() {
+    NamespaceTable table = sampleTable();
+    Path file = table.getFilePath(1);
+    assertEquals(new Path("hdfs://nn:8020/root/dir0/_file_1"), file);
+    assertSame(file, table.getFilePath(1));
+    NamespaceTable rooted = new NamespaceTable(new Path("file:/"));
+    rooted.addFile(NamespaceTable.ROOT, "_file_:0");
+    rooted.freeze();
+    // a colon in a name does not make it a URI of its own
+    assertEquals("file:/_file_:0", rooted.getFilePath(0).toString());
+  }
+
+  @Test
+  public void testManyEntriesGrowTheArrays() {
+    NamespaceTable table = new NamespaceTable(new Path("/r"));
+    int dir = table.addDir(NamespaceTable.ROOT, "d");
+    for (int i = 0; i < 100000; i++) {
+      table.addFile(dir, StructureGenerator.FILE_NAME_PREFIX + i);
+    }
+    table.freeze();
+    assertEquals(100000, table.numFiles());
+    assertEquals(new Path("/r/d/_file_99999"), table.getFilePath(99999));
+    // the names and the file Path cache
+    assertTrue(table.getMemorySize() <
+        100000L * 20 + NamespaceTable.PATH_CACHE_SIZE * 200L);
+  }
+
+  @Test
+  public void testIndexFileRoundTrip() throws IOException {
+    NamespaceTable table = sampleTable();
+    File index = tmp.newFile("namespace.idx");
+    try (DataOutputStream out =
+        new DataOutputStream(new FileOutputStream(index))) {
+      table.write(out);
+    }
+    Path otherRoot = new Path("file:/other");
+    NamespaceTable read;
+    try (DataInputStream in =
+        new DataInputStream(new FileInputStream(index))) {
+      read = NamespaceTable.read(otherRoot, in);
+    }
+    NamespaceTable mapped = NamespaceTable.map(otherRoot, index);
+    for (NamespaceTable t : new NamespaceTable[] {read, mapped}) {
+      assertEquals(table.numDirs(), t.numDirs());
+      assertEquals(table.numFiles(), t.numFiles());
+      assertEquals(new Path("file:/other/dir1/_file_é"), t.getFilePath(2));
+      assertEquals(1, t.findDir("dir0/dir0"));
+    }
+    assertTrue(mapped.getMemorySize() < read.getMemorySize());
+  }
+
+  @Test
+  public void testNamesSpanManySegments() throws IOException {
+    NamespaceTable table = new NamespaceTable(new Path("/r"), 64);
+    int d = NamespaceTable.ROOT;
+    for (int i = 0; i < 20; i++) {
+      d = table.addDir(d, "dir" + i);
+      for (int j = 0; j < 10; j++) {
+        table.addFile(d, StructureGenerator.FILE_NAME_PREFIX + j);
+      }
+    }
+    table.freeze();
+    // 90 bytes of directory names, and nine 7-byte file names per segment
+    assertEquals(2 + 23, table.numSegments());
+    assertEquals(19, table.findDir("dir0/dir1/dir2/dir3/dir4/dir5/dir6/dir7/"
+        + "dir8/dir9/dir10/dir11/dir12/dir13/dir14/dir15/dir16/dir17/dir18/"
+        + "dir19"));
+
+    File index = tmp.newFile("namespace.idx");
+    try (DataOutputStream out =
+        new DataOutputStream(new FileOutputStream(index))) {
+      table.write(out);
+    }
+    NamespaceTable read;
+    try (DataInputStream in =
+        new DataInputStream(new FileInputStream(index))) {
+      read = NamespaceTable.read(new Path("/r"), in);
+    }
+    NamespaceTable mapped = NamespaceTable.map(new Path("/r"), index);
+    for (NamespaceTable t : new NamespaceTable[] {table, read, mapped}) {
+      assertEquals(table.numSegments(), t.numSegments());
+      for (int i = 0; i < 200; i++) {
+        assertEquals(StructureGenerator.FILE_NAME_PREFIX + i % 10,
+            t.getFileName(i));
+        assertEquals("dir" + i / 10, t.getDirName(t.getFileParent(i)));
+      }
+      assertEquals(new Path("/r/dir0/dir1/_file_9"), t.getFilePath(19));
+      assertArrayEquals(new int[] {190, 200}, t.fileRange(19, 20));
+    }
+  }
+
+  @Test
+  public void testOldIndexVersionsAreRejected() throws IOException {
+    File index = tmp.newFile("namespace.idx");
+    try (DataOutputStream out =
+        new DataOutputStream(new FileOutputStream(index))) {
+      out.writeInt(0x4C474E53);
+      out.writeInt(1);
+      for (int i = 0; i < 4; i++) {
+        out.writeInt(0);
+      }
+    }
+    try {
+      NamespaceTable.map(new Path("/r"), index);
+      fail("Version 1 was mapped");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains("version 1"));
+    }
+  }
+
+  @Test
+  public void testStructureFilesAddTheAncestorsOfLeaves() throws IOException {
+    File inDir = tmp.newFolder();
+    Files.write(new File(inDir, StructureGenerator.DIR_STRUCTURE_FILE_NAME)
+        .toPath(), Arrays.asList("/dir0/dir0", "/dir0/dir1", "/dir1"));
+    Files.write(new File(inDir, StructureGenerator.FILE_STRUCTURE_FILE_NAME)
+        .toPath(), Arrays.asList("/dir0/dir1/_file_0 1.5", "/dir1/_file_1 2.0",
+        "/dir1/_file_é 1.0"));
+    NamespaceTable table = NamespaceTable.fromStructure(new Path("/r"), inDir);
+    assertEquals(4, table.numDirs());
+    assertEquals(3, table.numFiles());
+    assertEquals(new Path("/r/dir0/dir1/_file_0"), table.getFilePath(0));
+    assertEquals(new Path("/r/dir1/_file_1"), table.getFilePath(1));
+    // the structure files are UTF-8 whatever the default charset is
+    assertEquals("_file_é", table.getFileName(2));
+    int dir0 = table.findDir("dir0");
+    assertTrue(table.isUnder(table.findDir("dir0/dir0"), dir0));
+    assertTrue(table.isUnder(table.getFileParent(0), dir0));
+    assertFalse(table.isUnder(table.getFileParent(1), dir0));
+  }
+
+  @Test
+  public void testCrawlFindsWhatASequentialListingFinds() throws IOException {
+    File top = tmp.newFolder();
+    for (int i = 0; i < 4; i++) {
+      for (int j = 0; j < 3; j++) {
+        File dir = new File(top, "dir" + i + "/dir" + j);
+        assertTrue(dir.mkdirs());
+        for (int k = 0; k < i * j; k++) {
+          assertTrue(new File(dir,
+              StructureGenerator.FILE_NAME_PREFIX + k).createNewFile());
+        }
+      }
+      assertTrue(new File(top, "dir" + i + "/_file_top").createNewFile());
+    }
+    assertTrue(new File(top, "notes.txt").createNewFile());
+
+    Set<String> dirs = new TreeSet<String>();
+    Set<String> files = new TreeSet<String>();
+    java.nio.file.Path start = top.toPath();
+    try (Stream<java.nio.file.Path> walk = Files.walk(start)) {
+      walk.filter(p -> !p.equals(start)).forEach(p -> {
+        String relative = start.relativize(p).toString();
+        if (Files.isDirectory(p)) {
+          dirs.add(relative);
+        } else if (p.getFileName().toString().startsWith(
+            StructureGenerator.FILE_NAME_PREFIX)) {
+          files.add(relative);
+        }
+      });
+    }
+
+    Path root = new Path(top.toURI());
+    NamespaceTable table = NamespaceTable.crawl(
+        FileContext.getLocalFSFileContext(), root, 4);
+    Set<String> crawledDirs = new TreeSet<String>();
+    for (int i = 0; i < table.numDirs(); i++) {
+      crawledDirs.add(relative(root, table.getDirPath(i)));
+    }
+    Set<String> crawledFiles = new TreeSet<String>();
+    for (int i = 0; i < table.numFiles(); i++) {
+      crawledFiles.add(relative(root, table.getFilePath(i)));
+    }
+    assertEquals(16, dirs.size());
+    assertEquals(4 + 18, files.size());
+    assertEquals(dirs, crawledDirs);
+    assertEquals(files, crawledFiles);
+    assertEquals(files.size(), table.numFiles());
+
+    // everything under a directory is one range
+    int dir2 = table.findDir("dir2");
+    int[] range = table.fileRange(dir2, table.dirEnd(dir2));
+    assertEquals(1 + 2 * 3, range[1] - range[0]);
+    for (int i = range[0]; i < range[1]; i++) {
+      assertTrue(relative(root, table.getFilePath(i)).startsWith("dir2/"));
+    }
+  }
+
+  private static String relative(Path root, Path path) {
+    return root.toUri().relativize(path.toUri()).getPath();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testFrozenTableRejectsEntries() {
+    sampleTable().addDir(NamespaceTable.ROOT, "late");
+  }
+}
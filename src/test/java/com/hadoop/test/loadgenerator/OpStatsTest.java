@@ -0,0 +1,51 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+
+import org.apache.hadoop.ipc.RemoteException;
+import org.apache.hadoop.ipc.RetriableException;
+import org.junit.Test;
+
+/**
+ * Unit tests for OpStats
+ */
+public class OpStatsTest {
+
+  @Test
+  public void testErrorsAreTimedByCause() {
+    OpStats stats = new OpStats(3);
+    stats.record(0, 1000000L);
+    stats.recordError(0, "a", 2000000L);
+    stats.recordError(2, "a", 4000000L);
+    stats.recordError(2, "b", 8000000L);
+    assertEquals(1, stats.getNumOfOps(0));
+    assertEquals(1, stats.getNumOfErrors(0));
+    assertEquals(0, stats.getNumOfErrors(1));
+    assertEquals(2, stats.getNumOfErrors(2));
+    assertEquals(2, stats.getErrorLatencies().get("a").getCount());
+    assertEquals(4000000L, stats.getErrorLatencies().get("a").getMax());
+    assertEquals(1, stats.getErrorLatencies().get("b").getCount());
+  }
+
+  @Test
+  public void testBytesAddUpPerType() {
+    OpStats stats = new OpStats(2);
+    stats.recordBytes(1, 4096);
+    stats.recordBytes(1, 100);
+    assertEquals(0, stats.getNumOfBytes(0));
+    assertEquals(4196, stats.getNumOfBytes(1));
+  }
+
+  @Test
+  public void testRemoteExceptionsAreNamedByTheirServerClass() {
+    IOException remote = new RemoteException(
+        RetriableException.class.getName(), "NameNode still not started");
+    assertEquals("org.apache.hadoop.ipc.RetriableException",
+        LoadGenerator.errorCause(remote));
+    assertEquals("java.net.SocketTimeoutException",
+        LoadGenerator.errorCause(new SocketTimeoutException()));
+  }
+}
@@ -0,0 +1,185 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.apache.hadoop.util.Time;
+import org.junit.Test;
+
+/**
+ * Unit tests for OpenLoopScheduler
+ */
+public class OpenLoopSchedulerTest {
+
+  private static List<OpenLoopScheduler.Arrival> poll(
+      OpenLoopScheduler scheduler, int n) throws InterruptedException {
+    List<OpenLoopScheduler.Arrival> arrivals =
+        new ArrayList<OpenLoopScheduler.Arrival>();
+    while (arrivals.size() < n) {
+      OpenLoopScheduler.Arrival arrival = scheduler.poll(1000);
+      assertNotNull("no arrival within a second", arrival);
+      arrivals.add(arrival);
+    }
+    return arrivals;
+  }
+
+  /** @return everything queued so far */
+  private static List<OpenLoopScheduler.Arrival> drain(
+      OpenLoopScheduler scheduler) throws InterruptedException {
+    List<OpenLoopScheduler.Arrival> arrivals =
+        new ArrayList<OpenLoopScheduler.Arrival>();
+    OpenLoopScheduler.Arrival arrival;
+    while ((arrival = scheduler.poll(0)) != null) {
+      arrivals.add(arrival);
+    }
+    return arrivals;
+  }
+
+  private static long gap(List<OpenLoopScheduler.Arrival> arrivals, int i) {
+    return arrivals.get(i).intendedStart - arrivals.get(i - 1).intendedStart;
+  }
+
+  @Test
+  public void testFixedArrivalsAreEvenlySpaced() throws InterruptedException {
+    double[] opRates = new double[LoadGenerator.OP_KIND_NAMES.length];
+    opRates[LoadGenerator.LIST_OP] = 500;
+    OpenLoopScheduler scheduler = new OpenLoopScheduler(0, opRates, false,
+        new SplittableRandom(1));
+    scheduler.start();
+    try {
+      List<OpenLoopScheduler.Arrival> arrivals = poll(scheduler, 20);
+      for (int i = 1; i < arrivals.size(); i++) {
+        assertEquals(LoadGenerator.LIST_OP, arrivals.get(i).opKind);
+        assertEquals(2000000L, gap(arrivals, i));
+      }
+    } finally {
+      scheduler.shutdown();
+    }
+    assertTrue(scheduler.getScheduledOps() >= 20);
+  }
+
+  @Test
+  public void testPoissonGapsAreExponential() throws InterruptedException {
+    OpenLoopScheduler scheduler = new OpenLoopScheduler(10000, null, true,
+        new SplittableRandom(1));
+    scheduler.start();
+    List<OpenLoopScheduler.Arrival> arrivals;
+    try {
+      arrivals = poll(scheduler, 3001);
+    } finally {
+      scheduler.shutdown();
+    }
+    double sum = 0;
+    double sumOfSquares = 0;
+    for (int i = 1; i < arrivals.size(); i++) {
+      assertEquals(OpenLoopScheduler.ANY_OP, arrivals.get(i).opKind);
+      long gap = gap(arrivals, i);
+      assertTrue(gap >= 0);
+      sum += gap;
+      sumOfSquares += (double) gap * gap;
+    }
+    int n = arrivals.size() - 1;
+    double mean = sum / n;
+    double cv = Math.sqrt(sumOfSquares / n - mean * mean) / mean;
+    assertEquals(100000, mean, 10000);
+    // 1 for an exponential distribution, 0 for fixed gaps
+    assertEquals(1, cv, 0.1);
+  }
+
+  @Test
+  public void testMixRateChangesTheSpacing() throws InterruptedException {
+    OpenLoopScheduler scheduler = new OpenLoopScheduler(0, null, false,
+        new SplittableRandom(1));
+    scheduler.start();
+    try {
+      // a rate of 0 generates nothing
+      assertNull(scheduler.poll(100));
+      assertEquals(0, scheduler.getScheduledOps());
+
+      long start = Time.monotonicNowNanos();
+      scheduler.setMixRate(1000);
+      List<OpenLoopScheduler.Arrival> fast = poll(scheduler, 5);
+      // the stream starts one gap after it was given a rate
+      assertTrue(fast.get(0).intendedStart >= start + 1000000L);
+      for (int i = 1; i < fast.size(); i++) {
+        assertEquals(1000000L, gap(fast, i));
+      }
+
+      scheduler.setMixRate(100);
+      Thread.sleep(100);
+      List<OpenLoopScheduler.Arrival> arrivals = drain(scheduler);
+      // The last arrival at the old rate is followed by the new spacing
+      int slow = 0;
+      for (int i = 1; i < arrivals.size(); i++) {
+        if (gap(arrivals, i) == 10000000L) {
+          slow++;
+        } else {
+          assertEquals("a fast gap after a slow one", 0, slow);
+          assertEquals(1000000L, gap(arrivals, i));
+        }
+      }
+      assertTrue("slow gaps: " + slow, slow >= 3);
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  public void testPauseDropsTheBacklog() throws InterruptedException {
+    OpenLoopScheduler scheduler = new OpenLoopScheduler(1000, null, false,
+        new SplittableRandom(1));
+    scheduler.start();
+    try {
+      Thread.sleep(50);
+      scheduler.setPaused(true);
+      assertEquals(0, scheduler.getBacklog());
+      long scheduled = scheduler.getScheduledOps();
+      assertTrue(scheduled > 0);
+      assertNull(scheduler.poll(100));
+      assertEquals(scheduled, scheduler.getScheduledOps());
+
+      long resumed = Time.monotonicNowNanos();
+      scheduler.setPaused(false);
+      // nothing is made up for the pause
+      OpenLoopScheduler.Arrival arrival = poll(scheduler, 1).get(0);
+      assertTrue(arrival.intendedStart >= resumed);
+    } finally {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  public void testLateArrivalsKeepTheirIntendedStart()
+      throws InterruptedException {
+    OpenLoopScheduler scheduler = new OpenLoopScheduler(1000, null, false,
+        new SplittableRandom(1));
+    long start = Time.monotonicNowNanos();
+    scheduler.start();
+    try {
+      // no worker takes anything for a while
+      Thread.sleep(200);
+      int backlog = scheduler.getBacklog();
+      assertTrue("backlog " + backlog, backlog >= 100);
+      assertTrue(scheduler.getMaxBacklog() >= backlog);
+
+      long polled = Time.monotonicNowNanos();
+      List<OpenLoopScheduler.Arrival> arrivals = poll(scheduler, 50);
+      // due long before they were taken
+      assertTrue(arrivals.get(0).intendedStart < start + 50000000L);
+      assertTrue(arrivals.get(49).intendedStart < polled - 100000000L);
+      for (int i = 1; i < arrivals.size(); i++) {
+        assertEquals(1000000L, gap(arrivals, i));
+      }
+    } finally {
+      scheduler.shutdown();
+    }
+    assertTrue(scheduler.getBacklog() < scheduler.getMaxBacklog());
+    assertEquals(scheduler.getScheduledOps(), scheduler.getBacklog() + 50);
+  }
+}
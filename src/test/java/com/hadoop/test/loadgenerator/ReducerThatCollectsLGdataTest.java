@@ -0,0 +1,92 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for ReducerThatCollectsLGdata
+ */
+public class ReducerThatCollectsLGdataTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static void reduce(ReducerThatCollectsLGdata reducer,
+      Map<Text, Long> output, Text key, long... values) throws IOException {
+    LongWritable[] writables = new LongWritable[values.length];
+    for (int i = 0; i < values.length; i++) {
+      writables[i] = new LongWritable(values[i]);
+    }
+    reducer.reduce(key, Arrays.asList(writables).iterator(),
+        (k, v) -> output.put(new Text(k), v.get()), Reporter.NULL);
+  }
+
+  @Test
+  public void testTheMetricsOfTheMapsAreSummedUp() throws IOException {
+    File outDir = new File(tmp.getRoot(), "out");
+    JobConf conf = new JobConf();
+    conf.set("fs.defaultFS", "file:///");
+    FileOutputFormat.setOutputPath(conf, new Path(outDir.toURI()));
+    conf.set(JobContext.TASK_ATTEMPT_ID, "attempt_1_0001_r_000000_0");
+    ReducerThatCollectsLGdata reducer = new ReducerThatCollectsLGdata();
+    reducer.configure(conf);
+
+    // Three maps, one of which failed, as the mapper emits them: the
+    // failed one sends no results
+    Map<Text, Long> output = new HashMap<Text, Long>();
+    reduce(reducer, output, LGConstants.NUMOPS_OPEN, 300, 100);
+    reduce(reducer, output, LGConstants.OPEN_EXECTIME, 3000000000L,
+        1000000000L);
+    reduce(reducer, output, LGConstants.NUMOPS_LIST, 200, 0);
+    reduce(reducer, output, LGConstants.LIST_EXECTIME, 400000000L, 0);
+    reduce(reducer, output, LGConstants.TOTALOPS, 500, 100);
+    reduce(reducer, output, LGConstants.ELAPSED_TIME, 10, 10);
+    reduce(reducer, output, LGConstants.NUM_MAPS, 1, 1, 1);
+    reduce(reducer, output, LGConstants.NUM_FAILED_MAPS, 0, 0, 1);
+    reducer.close();
+
+    assertEquals(400, (long) output.get(LGConstants.NUMOPS_OPEN));
+    assertEquals(3, (long) output.get(LGConstants.NUM_MAPS));
+    assertEquals(400, LoadGenerator.numOfOps[LoadGenerator.OPEN]);
+    assertEquals(600, LoadGenerator.totalOps);
+    // the maps run at the same time for 10s each; the failed one is left
+    // out of the mean
+    assertEquals(10, LoadGenerator.totalTime);
+
+    // Results is in the work directory of the task attempt
+    java.nio.file.Path resultsFile;
+    try (Stream<java.nio.file.Path> files = Files.walk(outDir.toPath())) {
+      resultsFile = files.filter(
+          f -> f.getFileName().toString().equals("Results")).findFirst().get();
+    }
+    String results = new String(Files.readAllBytes(resultsFile),
+        StandardCharsets.UTF_8);
+    assertTrue(results, results.startsWith(
+        "Number of map tasks: 3 (failed: 1)\n"));
+    assertTrue(results,
+        results.contains("Average open execution time: 10.0ms\n"));
+    assertTrue(results,
+        results.contains("Average list execution time: 2.0ms\n"));
+    assertTrue(results,
+        results.contains("Average operations per second: 60.0ops/s\n"));
+  }
+}
@@ -0,0 +1,79 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for SaturationSearch
+ */
+public class SaturationSearchTest {
+
+  @Test
+  public void testThroughputThatStopsGrowingEndsTheSearch() {
+    // The NameNode scales linearly up to 40 clients at 100 ops/s each
+    SaturationSearch search = SaturationSearch.parse("threads:1,1000", 0);
+    double threads;
+    while ((threads = search.nextLevel()) >= 0) {
+      double opsPerSec = Math.min(threads, 40) * 100;
+      double latencyMillis = threads / opsPerSec * 1000;
+      search.record(true, opsPerSec, latencyMillis, latencyMillis,
+          2 * latencyMillis);
+    }
+    // doubling up to 64, then bisecting between 32 and 64
+    assertEquals(64, search.getSteps().get(6).level, 0);
+    assertEquals("throughput stopped growing",
+        search.getSteps().get(6).limit);
+    assertEquals(48, search.getSteps().get(7).level, 0);
+    assertEquals(48, search.getBest().level, 0);
+    assertEquals(4000, search.getBest().opsPerSec, 0);
+  }
+
+  @Test
+  public void testLatencySloEndsTheSearch() {
+    // Throughput keeps growing, but the p99 in ms equals the clients
+    SaturationSearch search = SaturationSearch.parse("threads:1,1000", 25);
+    double threads;
+    while ((threads = search.nextLevel()) >= 0) {
+      search.record(true, threads * 100, threads / 2, threads / 2, threads);
+    }
+    assertEquals(25, search.getBest().level, 0);
+    assertEquals(2500, search.getBest().opsPerSec, 0);
+    for (SaturationSearch.Step step : search.getSteps()) {
+      assertEquals(step.level <= 25, step.isSustainable());
+    }
+  }
+
+  @Test
+  public void testSearchStopsAtTheMaximum() {
+    SaturationSearch search = SaturationSearch.parse("rate:100,300", 0);
+    assertEquals(100, search.nextLevel(), 0);
+    search.record(true, 100, 1, 1, 2);
+    assertEquals(200, search.nextLevel(), 0);
+    search.record(true, 200, 1, 1, 2);
+    assertEquals(300, search.nextLevel(), 0);
+    search.record(true, 300, 1, 1, 2);
+    assertEquals(-1, search.nextLevel(), 0);
+    assertEquals(300, search.getBest().level, 0);
+  }
+
+  @Test
+  public void testUnsettledFirstStepBisectsDown() {
+    SaturationSearch search = SaturationSearch.parse("threads:2,8", 0);
+    search.record(false, 100, 1, 1, 2);
+    assertEquals(1, search.nextLevel(), 0);
+    search.record(false, 50, 1, 1, 2);
+    assertEquals(-1, search.nextLevel(), 0);
+    assertNull(search.getBest());
+  }
+
+  @Test
+  public void testIllegalSpecs() {
+    assertNull(SaturationSearch.parse("threads:1.5,10", 0));
+    assertNull(SaturationSearch.parse("threads:10,1", 0));
+    assertNull(SaturationSearch.parse("clients:1,10", 0));
+    assertNull(SaturationSearch.parse("rate:0,10", 0));
+    assertNull(SaturationSearch.parse("rate:10", 0));
+  }
+}
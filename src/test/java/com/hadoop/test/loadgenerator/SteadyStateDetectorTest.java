@@ -0,0 +1,50 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for SteadyStateDetector
+ */
+public class SteadyStateDetectorTest {
+
+  @Test
+  public void testSteadyOnlyOnceTheWindowHasSettled() {
+    SteadyStateDetector detector = new SteadyStateDetector(4, 0.02);
+    // ramping up: the throughput still climbs
+    assertFalse(detector.addSample(100, 5));
+    assertFalse(detector.addSample(400, 5));
+    assertFalse(detector.addSample(700, 5));
+    assertFalse(detector.addSample(900, 5));
+    assertTrue(detector.getThroughputCV() > 0.02);
+    assertFalse(detector.addSample(1000, 5));
+    assertFalse(detector.addSample(1010, 5));
+    assertFalse(detector.addSample(990, 5));
+    assertTrue(detector.addSample(1000, 5));
+    assertEquals(0, detector.getLatencyCV(), 1e-12);
+    assertEquals(Math.sqrt(50.0) / 1000, detector.getThroughputCV(), 1e-12);
+  }
+
+  @Test
+  public void testLatencyMustSettleToo() {
+    SteadyStateDetector detector = new SteadyStateDetector(3, 0.1);
+    assertFalse(detector.addSample(500, 20));
+    assertFalse(detector.addSample(500, 10));
+    assertFalse(detector.addSample(500, 5));
+    assertFalse(detector.addSample(500, 5));
+    assertTrue(detector.addSample(500, 5));
+  }
+
+  @Test
+  public void testIdleLoadIsNotSteady() {
+    SteadyStateDetector detector = new SteadyStateDetector(2, 0.1);
+    assertFalse(detector.addSample(0, 0));
+    assertFalse(detector.addSample(0, 0));
+    detector.reset();
+    assertFalse(detector.addSample(10, 1));
+    assertTrue(detector.addSample(10, 1));
+  }
+}
@@ -7,7 +7,11 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.junit.Rule;
 import org.junit.Test;
@@ -67,4 +71,71 @@ public class StructureGeneratorTest {
       assertTrue("Path should not be empty", tokens[0] != null && tokens[0].trim().length() > 0);
     }
   }
+
+  private List<String> generate(File outDir, String seed, String fileName)
+      throws Exception {
+    int rc = new StructureGenerator().run(new String[] {
+        "-maxDepth", "6", "-minWidth", "0", "-maxWidth", "4",
+        "-numOfFiles", "5000", "-outDir", outDir.getAbsolutePath(),
+        "-seed", seed});
+    assertEquals(0, rc);
+    return Files.readAllLines(new File(outDir, fileName).toPath(),
+        StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testFilesArePlacedIntoLeavesReproducibly() throws Exception {
+    File first = tmp.newFolder("first");
+    File second = tmp.newFolder("second");
+    List<String> dirs = generate(first, "42",
+        StructureGenerator.DIR_STRUCTURE_FILE_NAME);
+    List<String> files = generate(first, "42",
+        StructureGenerator.FILE_STRUCTURE_FILE_NAME);
+    assertEquals(dirs, generate(second, "42",
+        StructureGenerator.DIR_STRUCTURE_FILE_NAME));
+    assertEquals(files, generate(second, "42",
+        StructureGenerator.FILE_STRUCTURE_FILE_NAME));
+
+    assertEquals(5000, files.size());
+    Set<String> leaves = new HashSet<String>(dirs);
+    assertEquals("leaf directories are unique", dirs.size(), leaves.size());
+    Set<String> names = new HashSet<String>();
+    for (String line : files) {
+      String file = line.split(" ")[0];
+      String dir = file.substring(0, file.lastIndexOf('/'));
+      assertTrue(file + " is not in a leaf", leaves.contains(dir));
+      assertTrue(file + " is not unique", names.add(file));
+    }
+  }
+
+  private static List<String> readAll(List<File> files) throws IOException {
+    List<String> lines = new ArrayList<String>();
+    for (File file : files) {
+      lines.addAll(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8));
+    }
+    return lines;
+  }
+
+  @Test
+  public void testOutputDoesNotDependOnThreadsOrShards() throws Exception {
+    File single = tmp.newFolder("single");
+    File sharded = tmp.newFolder("sharded");
+    String[] args = {"-maxDepth", "8", "-minWidth", "2", "-maxWidth", "5",
+        "-numOfFiles", "20000", "-seed", "7", "-outDir"};
+    List<String> withOne = new ArrayList<String>(Arrays.asList(args));
+    withOne.add(single.getAbsolutePath());
+    assertEquals(0, new StructureGenerator().run(withOne.toArray(args)));
+    List<String> withMany = new ArrayList<String>(Arrays.asList(args));
+    withMany.addAll(Arrays.asList(sharded.getAbsolutePath(),
+        "-numOfThreads", "4", "-numOfShards", "3"));
+    assertEquals(0, new StructureGenerator().run(withMany.toArray(args)));
+
+    for (String name : new String[] {StructureGenerator.DIR_STRUCTURE_FILE_NAME,
+        StructureGenerator.FILE_STRUCTURE_FILE_NAME}) {
+      List<File> shards = StructureGenerator.structureFiles(sharded, name);
+      assertEquals(3, shards.size());
+      assertEquals(readAll(StructureGenerator.structureFiles(single, name)),
+          readAll(shards));
+    }
+  }
 }
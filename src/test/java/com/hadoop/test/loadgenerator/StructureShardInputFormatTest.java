@@ -0,0 +1,72 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for StructureShardInputFormat and StructureShardSplit
+ */
+public class StructureShardInputFormatTest {
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  private static void writeShard(Path file, String... lines)
+      throws IOException {
+    Files.write(new File(file.toUri()).toPath(), Arrays.asList(lines));
+  }
+
+  @Test
+  public void testOneSplitPerShardAsLongAsItsFiles() throws IOException {
+    Path shardDir = new Path(tmp.newFolder().toURI());
+    writeShard(DataGeneratorMR.dirShard(shardDir, 0), "/dir0", "/dir2");
+    writeShard(DataGeneratorMR.fileShard(shardDir, 0), "/dir0/_file_0 1.0");
+    writeShard(DataGeneratorMR.dirShard(shardDir, 1), "/dir1");
+    writeShard(DataGeneratorMR.fileShard(shardDir, 1));
+    JobConf conf = new JobConf();
+    conf.setInt(LGConstants.DG_NUMMAPTASKS, 2);
+    conf.set(LGConstants.DG_SHARDDIR, shardDir.toString());
+
+    InputSplit[] splits =
+        new StructureShardInputFormat().getSplits(conf, 10);
+    assertEquals(2, splits.length);
+    assertEquals(0, ((StructureShardSplit) splits[0]).getShard());
+    assertEquals(12 + 18, splits[0].getLength());
+    assertEquals(1, ((StructureShardSplit) splits[1]).getShard());
+    assertEquals(6, splits[1].getLength());
+  }
+
+  @Test(expected = IOException.class)
+  public void testMissingShardFails() throws IOException {
+    JobConf conf = new JobConf();
+    conf.setInt(LGConstants.DG_NUMMAPTASKS, 1);
+    conf.set(LGConstants.DG_SHARDDIR, tmp.newFolder().toURI().toString());
+    new StructureShardInputFormat().getSplits(conf, 1);
+  }
+
+  @Test
+  public void testSplitRoundTrip() throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    new StructureShardSplit(7, 1234).write(new DataOutputStream(bytes));
+    StructureShardSplit split = new StructureShardSplit();
+    split.readFields(new DataInputStream(
+        new ByteArrayInputStream(bytes.toByteArray())));
+    assertEquals(7, split.getShard());
+    assertEquals(1234, split.getLength());
+    assertEquals(0, split.getLocations().length);
+  }
+}
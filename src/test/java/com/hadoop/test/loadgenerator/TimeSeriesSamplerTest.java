@@ -0,0 +1,74 @@
+package com.hadoop.test.loadgenerator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit tests for TimeSeriesSampler
+ */
+public class TimeSeriesSamplerTest {
+  private static final String[] OP_NAMES = {"open", "list"};
+  private static final String TASK = "attempt_1_0001_m_000001_0";
+
+  @Rule
+  public TemporaryFolder tmp = new TemporaryFolder();
+
+  /** Sample two opens and a list once and return the lines of the file */
+  private static List<String> sampleOnce(File file, String task)
+      throws IOException, InterruptedException {
+    OpStats stats = new OpStats(OP_NAMES.length);
+    stats.record(0, 1000000L);
+    stats.record(0, 3000000L);
+    stats.record(1, 2000000L);
+    TimeSeriesSampler sampler = new TimeSeriesSampler(
+        new OpStats[] {stats}, OP_NAMES, file, 10, task);
+    Thread.sleep(10);
+    sampler.shutdown();
+    return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testCsvRowsNameTheTask() throws Exception {
+    File file = TimeSeriesSampler.taskFile(tmp.newFile("ts.csv"), TASK);
+    assertEquals("ts_" + TASK + ".csv", file.getName());
+    List<String> lines = sampleOnce(file, TASK);
+    assertEquals(3, lines.size());
+    assertTrue(lines.get(0), lines.get(0).startsWith("task,time,"));
+    assertTrue(lines.get(1), lines.get(1).startsWith(TASK + ","));
+    assertTrue(lines.get(1), lines.get(1).contains(",open,2,"));
+    assertTrue(lines.get(2), lines.get(2).contains(",list,1,"));
+  }
+
+  @Test
+  public void testJsonRowsNameTheTask() throws Exception {
+    File file = TimeSeriesSampler.taskFile(
+        new File(tmp.getRoot(), "ts.jsonl"), TASK);
+    assertEquals("ts_" + TASK + ".jsonl", file.getName());
+    List<String> lines = sampleOnce(file, TASK);
+    assertEquals(2, lines.size());
+    assertTrue(lines.get(0),
+        lines.get(0).startsWith("{\"task\":\"" + TASK + "\",\"time\":"));
+    assertTrue(lines.get(0), lines.get(0).contains("\"op\":\"open\""));
+  }
+
+  @Test
+  public void testNoTaskOutsideMapReduce() throws Exception {
+    File file = new File(tmp.getRoot(), "ts");
+    assertEquals(file, TimeSeriesSampler.taskFile(file, null));
+    assertEquals("ts_" + TASK,
+        TimeSeriesSampler.taskFile(file, TASK).getName());
+    List<String> lines = sampleOnce(file, null);
+    assertTrue(lines.get(0), lines.get(0).startsWith("time,elapsedSecs,"));
+    assertEquals(11, lines.get(1).split(",").length);
+  }
+}